@@ -0,0 +1,82 @@
+package com.testcraftsmanship.awsiotdevice.benchmarks;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBroker;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decision logic of the listener. Messages are delivered through loopback transport, so listener is invoked on
+ * the benchmark thread. Device only subscribes, so no responses are scheduled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=error")
+public class IoTDeviceListenerBenchmark {
+    private static final String SUBSCRIPTION_TOPIC = "tc/bench/#";
+    private static final String TRIGGER_TOPIC = "tc/bench/cmd";
+    private static final String OTHER_TOPIC = "tc/bench/other";
+
+    @Param({"4", "32"})
+    private int fields;
+
+    private IoTDeviceSimulator deviceSimulator;
+    private MqttTransport testedApplication;
+    private byte[] matchingMessage;
+    private byte[] notMatchingMessage;
+
+    @Setup
+    public void setUp() {
+        LoopbackBroker broker = new LoopbackBroker();
+        deviceSimulator = new IoTDeviceSimulator(broker.transportFactory());
+        deviceSimulator
+                .given()
+                .subscribeTo(SUBSCRIPTION_TOPIC)
+                .when()
+                .messageTopic(TRIGGER_TOPIC)
+                .subscribeMessageBody(Payloads.mask(fields, 1));
+        deviceSimulator.start();
+        testedApplication = broker.transportFactory().create();
+        testedApplication.connect();
+        matchingMessage = Payloads.message(fields, 1).getBytes(StandardCharsets.UTF_8);
+        notMatchingMessage = Payloads.message(fields + 1, 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        testedApplication.disconnect();
+        deviceSimulator.stop();
+    }
+
+    @Benchmark
+    public void matchingMessage() {
+        testedApplication.publish(TRIGGER_TOPIC, matchingMessage);
+    }
+
+    @Benchmark
+    public void notMatchingMessage() {
+        testedApplication.publish(TRIGGER_TOPIC, notMatchingMessage);
+    }
+
+    @Benchmark
+    public void notMatchingTopic() {
+        testedApplication.publish(OTHER_TOPIC, matchingMessage);
+    }
+}
@@ -0,0 +1,70 @@
+package com.testcraftsmanship.awsiotdevice.benchmarks;
+
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import com.testcraftsmanship.awsiotdevice.parser.MessageMatcher;
+import com.testcraftsmanship.awsiotdevice.parser.MessageParser;
+import com.testcraftsmanship.awsiotdevice.parser.PayloadMappingException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=error")
+public class MessageParserBenchmark {
+    @Param({"4", "32", "256"})
+    private int fields;
+    @Param({"1", "4"})
+    private int depth;
+
+    private String mask;
+    private String message;
+    private String publication;
+    private MessageParser parser;
+    private MessageMatcher matcher;
+
+    @Setup
+    public void setUp() throws PayloadMappingException {
+        mask = Payloads.mask(fields, depth);
+        message = Payloads.message(fields, depth);
+        publication = Payloads.publication(fields, depth);
+        parser = new MessageParser(mask, message, true);
+        matcher = MessageMatcher.compile(mask, true);
+    }
+
+    @Benchmark
+    public MessageParser constructParser() throws PayloadMappingException {
+        return new MessageParser(mask, message, true);
+    }
+
+    @Benchmark
+    public JSONObject updateJsonParamsWithValues() {
+        return parser.updateJsonParamsWithValues(publication);
+    }
+
+    @Benchmark
+    public boolean containsMaskParams() {
+        return MessageParser.containsMaskParams(publication);
+    }
+
+    @Benchmark
+    public Optional<Map<String, JsonValue>> matchCompiledMask() {
+        return matcher.match(message);
+    }
+}
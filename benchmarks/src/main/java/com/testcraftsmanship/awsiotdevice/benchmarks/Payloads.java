@@ -0,0 +1,51 @@
+package com.testcraftsmanship.awsiotdevice.benchmarks;
+
+import org.json.JSONObject;
+
+/**
+ * Generates messages of the given number of fields per level and nesting depth. Every second field of the mask is
+ * a placeholder, so masks, messages and publications of the same shape can be compared across sizes.
+ */
+final class Payloads {
+    private static final String CHILD = "child";
+
+    private Payloads() {
+    }
+
+    static String mask(int fields, int depth) {
+        return build(fields, depth, Kind.MASK).toString();
+    }
+
+    static String message(int fields, int depth) {
+        return build(fields, depth, Kind.MESSAGE).toString();
+    }
+
+    static String publication(int fields, int depth) {
+        return build(fields, depth, Kind.PUBLICATION).toString();
+    }
+
+    private static JSONObject build(int fields, int depth, Kind kind) {
+        JSONObject level = new JSONObject();
+        for (int i = 0; i < fields; i++) {
+            String name = "field" + i;
+            if (i % 2 == 0) {
+                level.put(name, i);
+            } else {
+                String param = "p" + depth + "_" + i;
+                level.put(name, kind == Kind.MESSAGE ? messageValue(i) : "{" + param + "}");
+            }
+        }
+        if (depth > 1) {
+            level.put(CHILD, build(fields, depth - 1, kind));
+        }
+        return level;
+    }
+
+    private static Object messageValue(int index) {
+        return index % 4 == 1 ? "value" + index : index;
+    }
+
+    private enum Kind {
+        MASK, MESSAGE, PUBLICATION
+    }
+}
@@ -0,0 +1,45 @@
+package com.testcraftsmanship.awsiotdevice.benchmarks;
+
+import com.testcraftsmanship.awsiotdevice.utils.StringOperations;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringOperationsBenchmark {
+    @Param({"4", "256"})
+    private int fields;
+
+    private String prettyMessage;
+
+    @Setup
+    public void setUp() {
+        prettyMessage = new JSONObject(Payloads.message(fields, 1)).toString(2);
+    }
+
+    @Benchmark
+    public String minimize() {
+        return StringOperations.minimize(prettyMessage);
+    }
+
+    @Benchmark
+    public String generateAwsClientId() {
+        return StringOperations.generateAwsClientId();
+    }
+}
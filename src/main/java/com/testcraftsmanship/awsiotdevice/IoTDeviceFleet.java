@@ -0,0 +1,323 @@
+package com.testcraftsmanship.awsiotdevice;
+
+import com.testcraftsmanship.awsiotdevice.device.DeviceState;
+import com.testcraftsmanship.awsiotdevice.device.IoTDevice;
+import com.testcraftsmanship.awsiotdevice.device.IoTDeviceState;
+import com.testcraftsmanship.awsiotdevice.device.LatencyRecorder;
+import com.testcraftsmanship.awsiotdevice.device.LatencySnapshot;
+import com.testcraftsmanship.awsiotdevice.device.LatencyStage;
+import com.testcraftsmanship.awsiotdevice.device.MatchAwaiter;
+import com.testcraftsmanship.awsiotdevice.device.MessageJournal;
+import com.testcraftsmanship.awsiotdevice.device.MqttConnectionPool;
+import com.testcraftsmanship.awsiotdevice.device.transport.AwsIotMqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceIdRange;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceRunnable;
+import com.testcraftsmanship.awsiotdevice.iotsettings.IoTDeviceBehavior;
+import com.testcraftsmanship.awsiotdevice.load.LoadGenerator;
+import com.testcraftsmanship.awsiotdevice.load.LoadReport;
+import com.testcraftsmanship.awsiotdevice.metrics.MetricsRegistry;
+import com.testcraftsmanship.awsiotdevice.startup.FleetConnections;
+import com.testcraftsmanship.awsiotdevice.startup.StartupPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Group of simulated devices which share one behavior. Occurrences of {deviceId} in the topics of the behavior are
+ * replaced with id of the device. Devices are multiplexed over bounded number of MQTT connections, so thousands of them
+ * can be simulated from one JVM.
+ */
+public class IoTDeviceFleet extends IoTDeviceBehavior implements DeviceRunnable {
+    public static final String DEVICE_ID_PLACEHOLDER = FleetConnections.DEVICE_ID_PLACEHOLDER;
+    private static final Logger LOGGER = LoggerFactory.getLogger(IoTDeviceFleet.class);
+    private static final int DEFAULT_MAX_CONNECTIONS = 10;
+    private final List<String> deviceIds;
+    private final FleetConnections connections;
+    private final Map<String, IoTDevice> devices = new ConcurrentHashMap<>();
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private MetricsRegistry metricsRegistry = MetricsRegistry.noop();
+    private MessageJournal messageJournal = new MessageJournal();
+    private final Map<String, MatchAwaiter> matchAwaiters = new ConcurrentHashMap<>();
+    private final Map<String, DeviceState> deviceStates = new ConcurrentHashMap<>();
+    private StartupPolicy startupPolicy;
+
+    /**
+     * Create new fleet of simulated devices which uses AWS credentials(AWS Access Key Id, AWS Secret Access Key)
+     * passed as an arguments of the constructor.
+     *
+     * @param clientEndpoint of IoT service to which devices will be connecting to
+     * @param awsAccessKeyId value of the AWS Access Key Id
+     * @param awsSecretAccessKey value of the AWS Secret Access Key
+     * @param deviceIds ids of the simulated devices
+     * @param maxConnections maximum number of MQTT connections shared by the devices
+     */
+    public IoTDeviceFleet(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey,
+                          DeviceIdRange deviceIds, int maxConnections) {
+        this(AwsIotMqttTransport.factory(clientEndpoint, awsAccessKeyId, awsSecretAccessKey), deviceIds, maxConnections);
+    }
+
+    /**
+     * Create new fleet of simulated devices which connects with transports created by the given factory.
+     *
+     * @param transportFactory factory of the MQTT transports
+     * @param deviceIds ids of the simulated devices
+     * @param maxConnections maximum number of MQTT connections shared by the devices
+     */
+    public IoTDeviceFleet(MqttTransportFactory transportFactory, DeviceIdRange deviceIds, int maxConnections) {
+        this.deviceIds = deviceIds.getDeviceIds();
+        this.connections = new FleetConnections(transportFactory, maxConnections);
+    }
+
+    /**
+     * Create new fleet of simulated devices which leases its connections from the pool shared with other simulators.
+     *
+     * @param connectionPool pool of connections to IoT service
+     * @param deviceIds ids of the simulated devices
+     * @param maxConnections maximum number of MQTT connections leased by the fleet
+     */
+    public IoTDeviceFleet(MqttConnectionPool connectionPool, DeviceIdRange deviceIds, int maxConnections) {
+        this.deviceIds = deviceIds.getDeviceIds();
+        this.connections = new FleetConnections(connectionPool, maxConnections);
+    }
+
+    /**
+     * Create new fleet of simulated devices which shares at most ten MQTT connections.
+     *
+     * @param clientEndpoint of IoT service to which devices will be connecting to
+     * @param awsAccessKeyId value of the AWS Access Key Id
+     * @param awsSecretAccessKey value of the AWS Secret Access Key
+     * @param deviceIds ids of the simulated devices
+     */
+    public IoTDeviceFleet(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey,
+                          DeviceIdRange deviceIds) {
+        this(clientEndpoint, awsAccessKeyId, awsSecretAccessKey, deviceIds, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Connects the fleet connections and starts simulation of all devices.
+     */
+    @Override
+    public synchronized void start() {
+        if (!devices.isEmpty()) {
+            LOGGER.warn("IoT Device Fleet is already running. Staring is redundant.");
+            return;
+        }
+        connections.assertUniquePerDevice(deviceIds.size(), "Subscription topic", getDeviceSubscriptionTopics());
+        connections.assertUniquePerDevice(deviceIds.size(), "Shadow thing name",
+                Arrays.asList(getShadowThingName(), getReportedShadowThingName()));
+        connections.lease(deviceIds.size(), startupPolicy);
+        matchAwaiters.values().forEach(MatchAwaiter::discardUnclaimed);
+        try {
+            for (int i = 0; i < deviceIds.size(); i++) {
+                String deviceId = deviceIds.get(i);
+                IoTDevice device = new IoTDevice(connections.of(i), connections.windowOf(i, getMaxInFlightPublications()));
+                configure(device, topic -> topic.replace(DEVICE_ID_PLACEHOLDER, deviceId));
+                device.setLatencyRecorder(latencyRecorder);
+                device.setMetricsRegistry(metricsRegistry);
+                device.setMessageJournal(messageJournal);
+                device.setMatchAwaiter(matchAwaiters.computeIfAbsent(deviceId, id -> new MatchAwaiter()));
+                device.setDeviceState(deviceStates.computeIfAbsent(deviceId, id -> createDeviceState()));
+                device.startSimulation();
+                devices.put(deviceId, device);
+            }
+        } catch (RuntimeException e) {
+            devices.values().forEach(IoTDevice::stopSimulation);
+            devices.clear();
+            connections.release();
+            throw e;
+        }
+        LOGGER.info("Started IoT Device Fleet of {} devices on {} connections", devices.size(), connections.size());
+    }
+
+    /**
+     * Stops simulation of all devices and closes the fleet connections.
+     */
+    @Override
+    public synchronized void stop() {
+        if (devices.isEmpty()) {
+            LOGGER.info("IoT Device Fleet is not running so it can't be stopped.");
+            return;
+        }
+        devices.values().forEach(IoTDevice::stopSimulation);
+        devices.clear();
+        connections.release();
+        LOGGER.info("IoT Device Fleet stopped");
+    }
+
+    /**
+     * Perform publication of defined message to defined MQTT topic by every device of the fleet.
+     */
+    @Override
+    public void publish() {
+        devices.values().forEach(IoTDevice::publishMessage);
+    }
+
+    /**
+     * Perform publication of defined message to defined MQTT topic by the given device.
+     *
+     * @param deviceId id of the publishing device
+     */
+    public void publish(String deviceId) {
+        getDevice(deviceId).publishMessage();
+    }
+
+    /**
+     * Publishes defined message by every device of the fleet without waiting for the broker.
+     *
+     * @return future completed when messages of all the devices are published
+     */
+    public CompletableFuture<Void> publishAsync() {
+        return CompletableFuture.allOf(devices.values().stream()
+                .map(IoTDevice::publishMessageAsync)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Publishes defined message with the rate defined by publishRate, rampUp and during. Consecutive messages are
+     * published by consecutive devices, so 5000 devices reporting every 2 seconds is the rate of 2500 messages per second.
+     * Fleet has to be started.
+     *
+     * @return requested and achieved rate of the publications
+     */
+    public LoadReport generateLoad() {
+        IoTDevice[] publishers = deviceIds.stream().map(this::getDevice).toArray(IoTDevice[]::new);
+        return new LoadGenerator(getLoadProfile())
+                .run(sequence -> publishers[(int) (sequence % publishers.length)].publishMessageAsync());
+    }
+
+    /**
+     * Method returns true when expected message reaches the expected topic of the given device.
+     *
+     * @param deviceId id of the device
+     * @return information whether expected message reaches correct topic
+     */
+    public boolean doesExpectedMessageReachedSubscribedTopic(String deviceId) {
+        return getDevice(deviceId).isExpectedMessageOnSubscribedTopic();
+    }
+
+    /**
+     * Blocks until the next expected message is received by the given device.
+     *
+     * @param deviceId id of the device
+     * @param timeout maximum time of waiting
+     * @return true when expected message has been received, false when timeout elapsed
+     */
+    public boolean awaitExpectedMessage(String deviceId, Duration timeout) {
+        return getMatchAwaiter(deviceId).await(1, timeout);
+    }
+
+    /**
+     * @param deviceId id of the device
+     * @param count number of awaited messages
+     * @return future completed the moment the next count expected messages are received by the given device
+     */
+    public CompletableFuture<Void> awaitExpectedMessagesAsync(String deviceId, int count) {
+        return getMatchAwaiter(deviceId).awaitAsync(count);
+    }
+
+    /**
+     * Every device has its own state, kept through the starts and stops of the fleet.
+     *
+     * @param deviceId id of the device
+     * @return state of the device read and updated by its rules
+     */
+    public DeviceState getDeviceState(String deviceId) {
+        if (!deviceIds.contains(deviceId)) {
+            throw new IllegalArgumentException("Device " + deviceId + " doesn't belong to the fleet.");
+        }
+        return deviceStates.computeIfAbsent(deviceId, id -> createDeviceState());
+    }
+
+    public List<String> getDeviceIds() {
+        return deviceIds;
+    }
+
+    /**
+     * @return number of devices which simulation is running
+     */
+    public int getRunningDevicesCount() {
+        return (int) devices.values().stream()
+                .filter(device -> device.getState() == IoTDeviceState.RUNNING)
+                .count();
+    }
+
+    /**
+     * @return number of MQTT connections shared by the devices
+     */
+    public int getConnectionsCount() {
+        return connections.size();
+    }
+
+    /**
+     * @param stage measured stage
+     * @return latencies of the stage recorded by all the devices of the fleet
+     */
+    public LatencySnapshot getLatency(LatencyStage stage) {
+        return latencyRecorder.snapshot(stage);
+    }
+
+    public void resetLatencies() {
+        latencyRecorder.reset();
+    }
+
+    /**
+     * Counters and gauges of the fleet are reported to the given registry, e.g. InMemoryMetricsRegistry or adapter of
+     * Micrometer. It has to be set before the fleet is started.
+     *
+     * @param metricsRegistry registry of the metrics
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Journal keeps the last messages received by all the devices of the fleet, through all the starts and stops, e.g.
+     * getMessageJournal().count(message -> message.getTopic().equals("tc/heater/report")).
+     *
+     * @return journal of the received messages
+     */
+    public MessageJournal getMessageJournal() {
+        return messageJournal;
+    }
+
+    /**
+     * Replaces the default journal of the last 1024 messages. It has to be set before the fleet is started.
+     *
+     * @param messageJournal journal of the received messages
+     */
+    public void setMessageJournal(MessageJournal messageJournal) {
+        this.messageJournal = messageJournal;
+    }
+
+    /**
+     * Fleet connections are connected concurrently within the connects per second budget of the policy, with retries,
+     * instead of one after another. It has to be set before the fleet is started.
+     *
+     * @param startupPolicy policy of connecting the fleet connections, null to connect them one by one
+     */
+    public void setStartupPolicy(StartupPolicy startupPolicy) {
+        this.startupPolicy = startupPolicy;
+    }
+
+    private IoTDevice getDevice(String deviceId) {
+        IoTDevice device = devices.get(deviceId);
+        if (device == null) {
+            throw new IllegalArgumentException("Device " + deviceId + " is not running in the fleet.");
+        }
+        return device;
+    }
+
+    private MatchAwaiter getMatchAwaiter(String deviceId) {
+        if (!deviceIds.contains(deviceId)) {
+            throw new IllegalArgumentException("Device " + deviceId + " doesn't belong to the fleet.");
+        }
+        return matchAwaiters.computeIfAbsent(deviceId, id -> new MatchAwaiter());
+    }
+}
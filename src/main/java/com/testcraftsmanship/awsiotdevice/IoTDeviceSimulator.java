@@ -2,26 +2,56 @@ package com.testcraftsmanship.awsiotdevice;
 
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.regions.Regions;
+import com.testcraftsmanship.awsiotdevice.aws.AwsSsmClient;
+import com.testcraftsmanship.awsiotdevice.aws.ParameterResolver;
+import com.testcraftsmanship.awsiotdevice.device.DeviceState;
 import com.testcraftsmanship.awsiotdevice.device.IoTDevice;
 import com.testcraftsmanship.awsiotdevice.device.IoTDeviceState;
+import com.testcraftsmanship.awsiotdevice.device.LatencyRecorder;
+import com.testcraftsmanship.awsiotdevice.device.LatencySnapshot;
+import com.testcraftsmanship.awsiotdevice.device.LatencyStage;
+import com.testcraftsmanship.awsiotdevice.device.MatchAwaiter;
+import com.testcraftsmanship.awsiotdevice.device.MessageJournal;
+import com.testcraftsmanship.awsiotdevice.device.MqttConnectionPool;
+import com.testcraftsmanship.awsiotdevice.device.transport.AwsIotMqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
 import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceRunnable;
 import com.testcraftsmanship.awsiotdevice.iotsettings.IoTDeviceBehavior;
+import com.testcraftsmanship.awsiotdevice.load.LoadGenerator;
+import com.testcraftsmanship.awsiotdevice.load.LoadReport;
+import com.testcraftsmanship.awsiotdevice.metrics.MetricsRegistry;
+import com.testcraftsmanship.awsiotdevice.recording.RecordingTransport;
+import com.testcraftsmanship.awsiotdevice.recording.TrafficRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static com.testcraftsmanship.awsiotdevice.aws.AwsSsmClient.getSsmParameterValue;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
 
 public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(IoTDeviceSimulator.class);
     private IoTDevice iotDevice;
-    private final String mqttClientEndpoint;
-    private final String awsAccessKeyId;
-    private final String awsSecretAccessKey;
+    private final MqttTransportFactory transportFactory;
+    private final MqttConnectionPool connectionPool;
+    private MqttTransport leasedConnection;
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private MetricsRegistry metricsRegistry = MetricsRegistry.noop();
+    private MessageJournal messageJournal = new MessageJournal();
+    private final MatchAwaiter matchAwaiter = new MatchAwaiter();
+    private DeviceState deviceState;
+    private Path trafficLog;
+    private TrafficRecorder trafficRecorder;
 
     /**
      * Create new instance of IoTDeviceSimulator which uses AWS credentials(AWS Access Key Id, AWS Secret Access Key)
      * which are saved in AWS parameter store in parameters passed as an arguments of this constructor. To extract values
-     * of those parameters we are using Default AWS Credential Provider Chain.
+     * of those parameters we are using Default AWS Credential Provider Chain. Both parameters are fetched with single
+     * request and cached, so many simulators created with the same parameters don't query Parameter Store again.
      *
      * @param clientEndpoint of IoT service to which IoTDeviceSimulator will be connecting to
      * @param awsSsmRegion where parameters are stored
@@ -30,9 +60,24 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
      */
     public IoTDeviceSimulator(String clientEndpoint, Regions awsSsmRegion,
                               String awsAccessKeyIdSsmParam, String awsSecretAccessKeySsmParam) {
-        this.mqttClientEndpoint = clientEndpoint;
-        this.awsAccessKeyId = getSsmParameterValue(awsSsmRegion, awsAccessKeyIdSsmParam);
-        this.awsSecretAccessKey = getSsmParameterValue(awsSsmRegion, awsSecretAccessKeySsmParam);
+        this(clientEndpoint, AwsSsmClient.getResolver(awsSsmRegion), awsAccessKeyIdSsmParam, awsSecretAccessKeySsmParam);
+    }
+
+    /**
+     * Create new instance of IoTDeviceSimulator which uses AWS credentials(AWS Access Key Id, AWS Secret Access Key)
+     * resolved from the sources of the passed resolver, e.g. environment, properties file or Parameter Store.
+     *
+     * @param clientEndpoint of IoT service to which IoTDeviceSimulator will be connecting to
+     * @param parameterResolver resolver of the parameters
+     * @param awsAccessKeyIdParam name of the parameter which stores AWS Access Key Id
+     * @param awsSecretAccessKeyParam name of the parameter which stores AWS Secret Access Key
+     */
+    public IoTDeviceSimulator(String clientEndpoint, ParameterResolver parameterResolver,
+                              String awsAccessKeyIdParam, String awsSecretAccessKeyParam) {
+        Map<String, String> credentials = parameterResolver.resolveAll(awsAccessKeyIdParam, awsSecretAccessKeyParam);
+        this.transportFactory = AwsIotMqttTransport.factory(clientEndpoint,
+                credentials.get(awsAccessKeyIdParam), credentials.get(awsSecretAccessKeyParam));
+        this.connectionPool = null;
     }
 
     /**
@@ -44,9 +89,29 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
      * @param awsSecretAccessKey value of the AWS Secret Access Key
      */
     public IoTDeviceSimulator(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey) {
-        this.mqttClientEndpoint = clientEndpoint;
-        this.awsAccessKeyId = awsAccessKeyId;
-        this.awsSecretAccessKey = awsSecretAccessKey;
+        this(AwsIotMqttTransport.factory(clientEndpoint, awsAccessKeyId, awsSecretAccessKey));
+    }
+
+    /**
+     * Create new instance of IoTDeviceSimulator which connects with transports created by the given factory. It allows
+     * to run simulations against local broker, e.g. EmbeddedMqttBroker, without AWS account and network round-trips.
+     *
+     * @param transportFactory factory of the MQTT transports
+     */
+    public IoTDeviceSimulator(MqttTransportFactory transportFactory) {
+        this.transportFactory = transportFactory;
+        this.connectionPool = null;
+    }
+
+    /**
+     * Create new instance of IoTDeviceSimulator which leases already connected MQTT client from the pool when it starts
+     * and returns it to the pool when it stops. Pool can be shared by many simulators and test cases.
+     *
+     * @param connectionPool pool of connections to IoT service
+     */
+    public IoTDeviceSimulator(MqttConnectionPool connectionPool) {
+        this.transportFactory = null;
+        this.connectionPool = connectionPool;
     }
 
     /**
@@ -61,9 +126,10 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
      */
     public IoTDeviceSimulator(String clientEndpoint) {
         ProfileCredentialsProvider credentialsProvider = new ProfileCredentialsProvider();
-        this.mqttClientEndpoint = clientEndpoint;
-        this.awsAccessKeyId = credentialsProvider.getCredentials().getAWSAccessKeyId();
-        this.awsSecretAccessKey = credentialsProvider.getCredentials().getAWSSecretKey();
+        this.transportFactory = AwsIotMqttTransport.factory(clientEndpoint,
+                credentialsProvider.getCredentials().getAWSAccessKeyId(),
+                credentialsProvider.getCredentials().getAWSSecretKey());
+        this.connectionPool = null;
     }
 
     /**
@@ -72,13 +138,21 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
      */
     public void start() {
         if (iotDeviceIsNotRunning()) {
-            iotDevice = new IoTDevice(mqttClientEndpoint, awsAccessKeyId, awsSecretAccessKey);
-            iotDevice.publishMessageTo(getPublishedMessagePayload(), getPublishedMessageTopic());
-            iotDevice.subscribeTriggerTopicCondition(getSubscribedMessageTopic());
-            iotDevice.subscribeTriggerMessageCondition(getSubscribedMessagePayload());
-            iotDevice.subscribeTo(getDeviceSubscriptionTopic());
-            iotDevice.setResponseMessageDelayInSeconds(getResponseDelayInSeconds());
-            iotDevice.startSimulation();
+            iotDevice = createIoTDevice();
+            configure(iotDevice, UnaryOperator.identity());
+            iotDevice.setLatencyRecorder(latencyRecorder);
+            iotDevice.setMetricsRegistry(metricsRegistry);
+            iotDevice.setMessageJournal(messageJournal);
+            matchAwaiter.discardUnclaimed();
+            iotDevice.setMatchAwaiter(matchAwaiter);
+            iotDevice.setDeviceState(getDeviceState());
+            try {
+                iotDevice.startSimulation();
+            } catch (RuntimeException e) {
+                releaseConnection();
+                stopRecording();
+                throw e;
+            }
         } else {
             LOGGER.warn("IoT Simulator is already running. Staring is redundant.");
         }
@@ -92,17 +166,25 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
             LOGGER.info("IoT Simulator is not running so it can't be stopped.");
         } else {
             iotDevice.stopSimulation();
+            releaseConnection();
+            stopRecording();
         }
     }
 
     /**
-     * Stops the IoT device simulator and clear all settings connected to subscribe/publish topic and message.
+     * Stops the IoT device simulator and clear all settings connected to subscribe/publish topic and message, device
+     * state and simulated shadows.
      */
     public void close() {
         if (iotDeviceIsNotRunning()) {
             LOGGER.info("IoT Simulator is not running so it can't be stopped.");
         } else {
             iotDevice.closeSimulation();
+            releaseConnection();
+            stopRecording();
+            deviceState = null;
+            getShadowStore().clear();
+            matchAwaiter.discardUnclaimed();
         }
     }
 
@@ -113,6 +195,37 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
         iotDevice.publishMessage();
     }
 
+    /**
+     * Publishes defined message without waiting for the broker, within the window of withMaxInFlightPublications.
+     *
+     * @return future completed when the message is published
+     */
+    public CompletableFuture<Void> publishAsync() {
+        return iotDevice.publishMessageAsync();
+    }
+
+    /**
+     * Publishes all the messages to the topic defined with publishTo, pipelined within the window of
+     * withMaxInFlightPublications, e.g. 300 reports of the device which has to be running.
+     *
+     * @param messages json messages published in the given order
+     * @return future completed when all the messages are published, or failed when any of them is not
+     */
+    public CompletableFuture<Void> publishAll(Collection<String> messages) {
+        return iotDevice.publishAll(messages);
+    }
+
+    /**
+     * Publishes defined message with the rate defined by publishRate, rampUp and during, blocking until the load ends.
+     * Messages are sent through the publication window, so slow acknowledgements don't delay the next messages.
+     * Simulator has to be started.
+     *
+     * @return requested and achieved rate of the publications
+     */
+    public LoadReport generateLoad() {
+        return new LoadGenerator(getLoadProfile()).run(sequence -> iotDevice.publishMessageAsync());
+    }
+
     /**
      *  Runs the IoT device simulator, publishes the defined message and stops simulator.
      */
@@ -131,6 +244,131 @@ public class IoTDeviceSimulator extends IoTDeviceBehavior implements DeviceRunna
         return iotDevice.isExpectedMessageOnSubscribedTopic();
     }
 
+    /**
+     * Blocks until the next expected message is received. Message received before the method is called counts as well
+     * when it hasn't been awaited yet, e.g. assertTrue(deviceSimulator.awaitExpectedMessage(Duration.ofSeconds(5))).
+     *
+     * @param timeout maximum time of waiting
+     * @return true when expected message has been received, false when timeout elapsed
+     */
+    public boolean awaitExpectedMessage(Duration timeout) {
+        return matchAwaiter.await(1, timeout);
+    }
+
+    /**
+     * Blocks until the next count expected messages are received.
+     *
+     * @param count number of awaited messages
+     * @param timeout maximum time of waiting
+     * @return true when expected messages have been received, false when timeout elapsed
+     */
+    public boolean awaitExpectedMessages(int count, Duration timeout) {
+        return matchAwaiter.await(count, timeout);
+    }
+
+    /**
+     * @param count number of awaited messages
+     * @return future completed the moment the next count expected messages are received, e.g.
+     *         awaitExpectedMessagesAsync(300).orTimeout(1, TimeUnit.MINUTES)
+     */
+    public CompletableFuture<Void> awaitExpectedMessagesAsync(int count) {
+        return matchAwaiter.awaitAsync(count);
+    }
+
+    /**
+     * State is kept through the starts and stops of the simulator and cleared when it is closed.
+     *
+     * @return state of the simulated device read and updated by its rules
+     */
+    public synchronized DeviceState getDeviceState() {
+        if (deviceState == null) {
+            deviceState = createDeviceState();
+        }
+        return deviceState;
+    }
+
+    /**
+     * Latencies are recorded since the simulator is created or latencies are reset, through all the starts and stops.
+     *
+     * @param stage measured stage
+     * @return latencies of the stage, e.g. getLatency(LatencyStage.TRIGGER_TO_RESPONSE).getPercentile(99)
+     */
+    public LatencySnapshot getLatency(LatencyStage stage) {
+        return latencyRecorder.snapshot(stage);
+    }
+
+    public void resetLatencies() {
+        latencyRecorder.reset();
+    }
+
+    /**
+     * Counters and gauges of the simulator are reported to the given registry, e.g. InMemoryMetricsRegistry or adapter of
+     * Micrometer. It has to be set before the simulator is started.
+     *
+     * @param metricsRegistry registry of the metrics
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Journal keeps the last messages received by the simulator, through all the starts and stops, e.g.
+     * getMessageJournal().count(message -> message.getTopic().equals("tc/heater/report")).
+     *
+     * @return journal of the received messages
+     */
+    public MessageJournal getMessageJournal() {
+        return messageJournal;
+    }
+
+    /**
+     * Replaces the default journal of the last 1024 messages. It has to be set before the simulator is started.
+     *
+     * @param messageJournal journal of the received messages
+     */
+    public void setMessageJournal(MessageJournal messageJournal) {
+        this.messageJournal = messageJournal;
+    }
+
+    /**
+     * Every message received and published by the simulator is appended to the given log, which can be replayed with
+     * TrafficReplay. Log is created when the simulator starts and closed when it stops. Log of the previous start is kept
+     * under the name with the number suffix, e.g. heater.log.1, so restart nor retried start doesn't lose it. It has to
+     * be set before the simulator is started.
+     *
+     * @param file path of the traffic log, null when traffic should not be recorded
+     */
+    public void recordTrafficTo(Path file) {
+        this.trafficLog = file;
+    }
+
+    private IoTDevice createIoTDevice() {
+        if (trafficLog != null) {
+            trafficRecorder = TrafficRecorder.createKeepingPrevious(trafficLog);
+        }
+        if (connectionPool == null) {
+            return new IoTDevice(trafficRecorder == null ? transportFactory
+                    : RecordingTransport.factory(transportFactory, trafficRecorder));
+        }
+        leasedConnection = connectionPool.lease();
+        return new IoTDevice(trafficRecorder == null ? leasedConnection
+                : new RecordingTransport(leasedConnection, trafficRecorder));
+    }
+
+    private void stopRecording() {
+        if (trafficRecorder != null) {
+            trafficRecorder.close();
+            trafficRecorder = null;
+        }
+    }
+
+    private void releaseConnection() {
+        if (leasedConnection != null) {
+            connectionPool.release(leasedConnection);
+            leasedConnection = null;
+        }
+    }
+
     private boolean iotDeviceIsNotRunning() {
         return iotDevice == null || iotDevice.getState() != IoTDeviceState.RUNNING;
     }
@@ -1,33 +1,55 @@
 package com.testcraftsmanship.awsiotdevice.aws;
 
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
 import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagementClientBuilder;
-import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
-import com.amazonaws.services.simplesystemsmanagement.model.Parameter;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class AwsSsmClient {
+    private static final Duration PARAMETERS_TIME_TO_LIVE = Duration.ofMinutes(5);
+    private static final Map<Regions, AWSSimpleSystemsManagement> CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<Regions, ParameterResolver> RESOLVERS = new ConcurrentHashMap<>();
+
     private AwsSsmClient() {
     }
 
     /**
-     * Method returns value of the parameter from AWS System Manager Shared Resources Parameter Store
+     * Method returns value of the parameter from AWS System Manager Shared Resources Parameter Store. Values are cached
+     * for five minutes and shared by all callers.
      *
      * @param parameterName name of the parameter in Parameter Store
      * @return value of the parameter in Parameter Store
      */
     public static String getSsmParameterValue(Regions region, String parameterName) {
-        List<Parameter> parameters = AWSSimpleSystemsManagementClientBuilder.standard()
-                .withRegion(region)
-                .build()
-                .getParameters(new GetParametersRequest()
-                        .withWithDecryption(true)
-                        .withNames(parameterName))
-                .getParameters();
-        return parameters.stream()
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Couldn't find parameter with name: " + parameterName))
-                .getValue();
+        return getResolver(region).resolve(parameterName);
+    }
+
+    /**
+     * Method returns values of the parameters from AWS System Manager Shared Resources Parameter Store fetched with
+     * single request. Values are cached for five minutes and shared by all callers.
+     *
+     * @param parameterNames names of the parameters in Parameter Store
+     * @return values of the parameters by their names
+     */
+    public static Map<String, String> getSsmParameterValues(Regions region, String... parameterNames) {
+        return getResolver(region).resolveAll(parameterNames);
+    }
+
+    /**
+     * @param region AWS region of the Parameter Store
+     * @return caching resolver of the parameters stored in the region shared by all callers
+     */
+    public static ParameterResolver getResolver(Regions region) {
+        return RESOLVERS.computeIfAbsent(region,
+                key -> new ParameterResolver(PARAMETERS_TIME_TO_LIVE, new SsmParameterSource(key)));
+    }
+
+    static AWSSimpleSystemsManagement getClient(Regions region) {
+        return CLIENTS.computeIfAbsent(region, key -> AWSSimpleSystemsManagementClientBuilder.standard()
+                .withRegion(key)
+                .build());
     }
 }
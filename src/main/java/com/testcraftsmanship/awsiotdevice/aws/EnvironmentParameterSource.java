@@ -0,0 +1,40 @@
+package com.testcraftsmanship.awsiotdevice.aws;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Takes parameters from environment variables. Parameter testAccessKeyId is searched in variable testAccessKeyId and then
+ * in TEST_ACCESS_KEY_ID, parameter /iot/endpoint in IOT_ENDPOINT.
+ */
+public class EnvironmentParameterSource implements ParameterSource {
+    private final Map<String, String> environment;
+
+    public EnvironmentParameterSource() {
+        this(System.getenv());
+    }
+
+    EnvironmentParameterSource(Map<String, String> environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Map<String, String> fetch(Set<String> names) {
+        Map<String, String> values = new HashMap<>();
+        for (String name : names) {
+            String value = environment.containsKey(name) ? environment.get(name) : environment.get(toVariableName(name));
+            if (value != null) {
+                values.put(name, value);
+            }
+        }
+        return values;
+    }
+
+    static String toVariableName(String parameterName) {
+        String separated = parameterName.replaceAll("([a-z0-9])([A-Z])", "$1_$2");
+        return separated.replaceAll("[^A-Za-z0-9]+", "_")
+                .replaceAll("^_|_$", "")
+                .toUpperCase();
+    }
+}
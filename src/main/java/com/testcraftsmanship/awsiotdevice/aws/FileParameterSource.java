@@ -0,0 +1,39 @@
+package com.testcraftsmanship.awsiotdevice.aws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Takes parameters from properties file, e.g. local stand-in of the AWS Parameter Store used offline.
+ */
+public class FileParameterSource implements ParameterSource {
+    private final Path propertiesFile;
+
+    public FileParameterSource(Path propertiesFile) {
+        this.propertiesFile = propertiesFile;
+    }
+
+    @Override
+    public Map<String, String> fetch(Set<String> names) {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(propertiesFile)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read parameters from file " + propertiesFile, e);
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String name : names) {
+            String value = properties.getProperty(name);
+            if (value != null) {
+                values.put(name, value);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,143 @@
+package com.testcraftsmanship.awsiotdevice.aws;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves parameters from the chain of sources and keeps them in the cache for given time. Parameters missing in
+ * the cache are fetched together, first source which knows the parameter wins. Concurrent resolutions of the parameter
+ * share one lookup.
+ */
+public class ParameterResolver {
+    private final Duration timeToLive;
+    private final List<ParameterSource> sources;
+    private final Map<String, CachedValue> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param timeToLive how long resolved value is kept in the cache
+     * @param sources    sources of the parameters in the order they are asked for values
+     */
+    public ParameterResolver(Duration timeToLive, ParameterSource... sources) {
+        if (sources.length == 0) {
+            throw new IllegalArgumentException("At least one parameter source is required.");
+        }
+        this.timeToLive = timeToLive;
+        this.sources = Collections.unmodifiableList(Arrays.asList(sources));
+    }
+
+    /**
+     * @param name name of the parameter
+     * @return value of the parameter
+     */
+    public String resolve(String name) {
+        return resolveAll(name).get(name);
+    }
+
+    /**
+     * Names missing in the cache are fetched by the calling thread. Names which are being fetched by another thread are
+     * not fetched again, the caller waits for that lookup instead, so parallel cold start sends one request per name.
+     *
+     * @param names names of the parameters
+     * @return values of the parameters by their names
+     */
+    public Map<String, String> resolveAll(String... names) {
+        long now = System.nanoTime();
+        Map<String, CachedValue> lookups = new LinkedHashMap<>();
+        Map<String, CachedValue> fetchedHere = new LinkedHashMap<>();
+        for (String name : names) {
+            lookups.put(name, cache.compute(name, (key, cachedValue) -> {
+                if (cachedValue != null && cachedValue.isValid(now)) {
+                    return cachedValue;
+                }
+                CachedValue lookup = new CachedValue();
+                fetchedHere.put(key, lookup);
+                return lookup;
+            }));
+        }
+        if (!fetchedHere.isEmpty()) {
+            fetch(fetchedHere);
+        }
+        Map<String, String> values = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        lookups.forEach((name, lookup) -> {
+            try {
+                values.put(name, lookup.value.join());
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof IllegalArgumentException)) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+                missing.add(name);
+            }
+        });
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Couldn't find parameter with name: " + String.join(", ", missing));
+        }
+        return values;
+    }
+
+    /**
+     * Removes all cached values so next resolution asks the sources again.
+     */
+    public void invalidate() {
+        cache.clear();
+    }
+
+    /**
+     * Asks the sources for the parameters which lookups are owned by the calling thread. Failed lookups are removed from
+     * the cache, so the next resolution asks the sources again.
+     */
+    private void fetch(Map<String, CachedValue> lookups) {
+        Set<String> missing = new LinkedHashSet<>(lookups.keySet());
+        try {
+            for (ParameterSource source : sources) {
+                if (missing.isEmpty()) {
+                    break;
+                }
+                Map<String, String> fetched = source.fetch(Collections.unmodifiableSet(new LinkedHashSet<>(missing)));
+                long expiresAt = System.nanoTime() + timeToLive.toNanos();
+                fetched.forEach((name, value) -> {
+                    if (missing.remove(name)) {
+                        lookups.get(name).complete(value, expiresAt);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            missing.forEach(name -> fail(name, lookups.get(name), e));
+            throw e;
+        }
+        missing.forEach(name -> fail(name, lookups.get(name),
+                new IllegalArgumentException("Couldn't find parameter with name: " + name)));
+    }
+
+    private void fail(String name, CachedValue lookup, RuntimeException failure) {
+        cache.remove(name, lookup);
+        lookup.value.completeExceptionally(failure);
+    }
+
+    /**
+     * Value of the parameter, or lookup of the value in progress which is valid until it completes.
+     */
+    private static final class CachedValue {
+        private final CompletableFuture<String> value = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        private void complete(String resolvedValue, long resolvedExpiresAt) {
+            this.expiresAt = resolvedExpiresAt;
+            value.complete(resolvedValue);
+        }
+
+        private boolean isValid(long now) {
+            return !value.isDone() || !value.isCompletedExceptionally() && now - expiresAt < 0;
+        }
+    }
+}
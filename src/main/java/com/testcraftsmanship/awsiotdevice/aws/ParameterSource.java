@@ -0,0 +1,18 @@
+package com.testcraftsmanship.awsiotdevice.aws;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Source of named parameters like AWS credentials or IoT endpoint, e.g. AWS Parameter Store, environment or file.
+ */
+@FunctionalInterface
+public interface ParameterSource {
+    /**
+     * Fetches values of the parameters in one go. Parameters unknown to the source are not present in the result.
+     *
+     * @param names names of the parameters
+     * @return values of the parameters found in the source
+     */
+    Map<String, String> fetch(Set<String> names);
+}
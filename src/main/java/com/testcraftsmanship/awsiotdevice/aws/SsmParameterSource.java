@@ -0,0 +1,40 @@
+package com.testcraftsmanship.awsiotdevice.aws;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.simplesystemsmanagement.model.GetParametersRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.Parameter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Takes parameters from AWS System Manager Parameter Store. Names are fetched in batches with single GetParameters
+ * request per ten names, using one SSM client per region.
+ */
+public class SsmParameterSource implements ParameterSource {
+    private static final int MAX_NAMES_PER_REQUEST = 10;
+    private final Regions region;
+
+    public SsmParameterSource(Regions region) {
+        this.region = region;
+    }
+
+    @Override
+    public Map<String, String> fetch(Set<String> names) {
+        List<String> allNames = new ArrayList<>(names);
+        Map<String, String> values = new HashMap<>();
+        for (int from = 0; from < allNames.size(); from += MAX_NAMES_PER_REQUEST) {
+            List<String> batch = allNames.subList(from, Math.min(from + MAX_NAMES_PER_REQUEST, allNames.size()));
+            List<Parameter> parameters = AwsSsmClient.getClient(region)
+                    .getParameters(new GetParametersRequest()
+                            .withWithDecryption(true)
+                            .withNames(batch))
+                    .getParameters();
+            parameters.forEach(parameter -> values.put(parameter.getName(), parameter.getValue()));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,109 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.metrics.Counter;
+import com.testcraftsmanship.awsiotdevice.metrics.Gauge;
+import com.testcraftsmanship.awsiotdevice.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counters and gauges of the device resolved once from the registry, so hot paths don't look them up for every
+ * message.
+ */
+final class DeviceMetrics {
+    static final String MESSAGES_RECEIVED = "iot.device.messages.received";
+    static final String MESSAGES_MATCHED = "iot.device.messages.matched";
+    static final String MESSAGES_NOT_HANDLED = "iot.device.messages.not.handled";
+    static final String PAYLOAD_MAPPING_FAILURES = "iot.device.payload.mapping.failures";
+    static final String RESPONSES_PUBLISHED = "iot.device.responses.published";
+    static final String RESPONSES_IN_FLIGHT = "iot.device.responses.in.flight";
+    static final String PUBLISH_FAILURES = "iot.device.publish.failures";
+    static final String MESSAGES_PUBLISHED = "iot.device.messages.published";
+    static final String PUBLICATIONS_QUEUED = "iot.device.publications.queued";
+    static final String CONNECTION_TRANSITIONS = "iot.device.connection.transitions";
+    static final String CONNECTIONS = "iot.device.connections";
+    private static final String TOPIC_TAG = "topic";
+    private static final String STATE_TAG = "state";
+
+    private final MetricsRegistry registry;
+    private final Map<String, Counter> receivedByTopic = new ConcurrentHashMap<>();
+    private final Counter matched;
+    private final Counter notHandled;
+    private final Counter payloadMappingFailures;
+    private final Counter responsesPublished;
+    private final Gauge responsesInFlight;
+    private final Counter publishFailures;
+    private final Counter messagesPublished;
+    private final Gauge publicationsQueued;
+    private final Counter connected;
+    private final Counter disconnected;
+    private final Gauge connections;
+
+    DeviceMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.matched = registry.counter(MESSAGES_MATCHED);
+        this.notHandled = registry.counter(MESSAGES_NOT_HANDLED);
+        this.payloadMappingFailures = registry.counter(PAYLOAD_MAPPING_FAILURES);
+        this.responsesPublished = registry.counter(RESPONSES_PUBLISHED);
+        this.responsesInFlight = registry.gauge(RESPONSES_IN_FLIGHT);
+        this.publishFailures = registry.counter(PUBLISH_FAILURES);
+        this.messagesPublished = registry.counter(MESSAGES_PUBLISHED);
+        this.publicationsQueued = registry.gauge(PUBLICATIONS_QUEUED);
+        this.connected = registry.counter(CONNECTION_TRANSITIONS, STATE_TAG, "connected");
+        this.disconnected = registry.counter(CONNECTION_TRANSITIONS, STATE_TAG, "disconnected");
+        this.connections = registry.gauge(CONNECTIONS);
+    }
+
+    void received(String topic) {
+        receivedByTopic.computeIfAbsent(topic, name -> registry.counter(MESSAGES_RECEIVED, TOPIC_TAG, name)).increment();
+    }
+
+    void matched() {
+        matched.increment();
+    }
+
+    void notHandled() {
+        notHandled.increment();
+    }
+
+    void payloadMappingFailed() {
+        payloadMappingFailures.increment();
+    }
+
+    void responseScheduled() {
+        responsesInFlight.increment();
+    }
+
+    void responseFinished(boolean published) {
+        responsesInFlight.decrement();
+        if (published) {
+            responsesPublished.increment();
+        }
+    }
+
+    void messagePublished() {
+        messagesPublished.increment();
+    }
+
+    void publishFailed() {
+        publishFailures.increment();
+    }
+
+    /**
+     * @return gauge of the publications waiting for a free slot of the publication window
+     */
+    Gauge publicationsQueued() {
+        return publicationsQueued;
+    }
+
+    void connected() {
+        connected.increment();
+        connections.increment();
+    }
+
+    void disconnected() {
+        disconnected.increment();
+        connections.decrement();
+    }
+}
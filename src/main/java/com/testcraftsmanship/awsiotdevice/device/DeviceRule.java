@@ -0,0 +1,79 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reaction of the device on the message: conditions the message has to meet and the response published when it does.
+ * Rule without publication only reports that the expected message has been received.
+ */
+@Getter
+public class DeviceRule {
+    private final String topicCondition;
+    private final String messageCondition;
+    private final String publicationTopic;
+    private final String publicationMessage;
+    private final Duration responseDelay;
+    private final MqttQos publicationQos;
+    private final List<StateUpdate> stateUpdates;
+
+    /**
+     * @param topicCondition     topic the message has to be received on, null when any subscribed topic is accepted
+     * @param messageCondition   mask the message has to match, null when any message is accepted
+     * @param publicationTopic   topic of the response, null when rule doesn't respond
+     * @param publicationMessage response which can contain placeholders of the mask params
+     * @param responseDelay      delay of the response, null when default delay of the device is used
+     */
+    public DeviceRule(String topicCondition, String messageCondition, String publicationTopic,
+                      String publicationMessage, Duration responseDelay) {
+        this(topicCondition, messageCondition, publicationTopic, publicationMessage, responseDelay, null);
+    }
+
+    /**
+     * @param topicCondition     topic the message has to be received on, null when any subscribed topic is accepted
+     * @param messageCondition   mask the message has to match, null when any message is accepted
+     * @param publicationTopic   topic of the response, null when rule doesn't respond
+     * @param publicationMessage response which can contain placeholders of the mask params
+     * @param responseDelay      delay of the response, null when default delay of the device is used
+     * @param publicationQos     quality of service of the response, null when default QoS of the device is used
+     */
+    public DeviceRule(String topicCondition, String messageCondition, String publicationTopic,
+                      String publicationMessage, Duration responseDelay, MqttQos publicationQos) {
+        this(topicCondition, messageCondition, publicationTopic, publicationMessage, responseDelay, publicationQos,
+                Collections.emptyList());
+    }
+
+    /**
+     * @param topicCondition     topic the message has to be received on, null when any subscribed topic is accepted
+     * @param messageCondition   mask the message has to match, null when any message is accepted
+     * @param publicationTopic   topic of the response, null when rule doesn't respond
+     * @param publicationMessage response which can contain placeholders of the mask params and {state.name} ones
+     * @param responseDelay      delay of the response, null when default delay of the device is used
+     * @param publicationQos     quality of service of the response, null when default QoS of the device is used
+     * @param stateUpdates       changes of the device state made when the rule matches, in the given order
+     */
+    public DeviceRule(String topicCondition, String messageCondition, String publicationTopic,
+                      String publicationMessage, Duration responseDelay, MqttQos publicationQos,
+                      List<StateUpdate> stateUpdates) {
+        this.topicCondition = topicCondition;
+        this.messageCondition = messageCondition;
+        this.publicationTopic = publicationTopic;
+        this.publicationMessage = publicationMessage;
+        this.responseDelay = responseDelay;
+        this.publicationQos = publicationQos;
+        this.stateUpdates = Collections.unmodifiableList(new ArrayList<>(stateUpdates));
+    }
+
+    boolean hasConditions() {
+        return topicCondition != null || messageCondition != null;
+    }
+
+    boolean isResponding() {
+        return publicationTopic != null && publicationMessage != null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValueType;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mutable state of one simulated device, e.g. sequence numbers, counters or last set values, which rules update and
+ * response templates reference with {state.name} placeholders. Values are kept in {@link ConcurrentHashMap}, so reads
+ * never lock and updates lock only the bin of their value, and every device has its own state, so devices never
+ * contend with each other.
+ */
+public final class DeviceState {
+    private final Map<String, JsonValue> values = new ConcurrentHashMap<>();
+
+    public DeviceState() {
+    }
+
+    /**
+     * @param initialValues values the state starts with
+     */
+    public DeviceState(Map<String, JsonValue> initialValues) {
+        values.putAll(initialValues);
+    }
+
+    /**
+     * @param name name of the value
+     * @return current value, empty when it hasn't been set
+     */
+    public Optional<JsonValue> get(String name) {
+        return Optional.ofNullable(values.get(name));
+    }
+
+    /**
+     * @param name  name of the value
+     * @param value new value
+     */
+    public void set(String name, JsonValue value) {
+        values.put(name, value);
+    }
+
+    /**
+     * Atomically adds the delta to the number, missing value is treated as 0, so concurrent increments never return
+     * the same value.
+     *
+     * @param name  name of the value
+     * @param delta added amount
+     * @return value after the increment
+     */
+    public JsonValue increment(String name, long delta) {
+        return values.merge(name, new JsonValue(JsonValueType.NUMBER, Long.toString(delta)), DeviceState::add);
+    }
+
+    /**
+     * @return copy of all the values
+     */
+    public Map<String, JsonValue> snapshot() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    public void clear() {
+        values.clear();
+    }
+
+    private static JsonValue add(JsonValue current, JsonValue delta) {
+        if (current.getType() != JsonValueType.NUMBER) {
+            throw new IllegalStateException("Device state value " + current.getValue() + " is not a number.");
+        }
+        BigDecimal sum = new BigDecimal(current.getValue()).add(new BigDecimal(delta.getValue()));
+        return new JsonValue(JsonValueType.NUMBER, sum.toPlainString());
+    }
+}
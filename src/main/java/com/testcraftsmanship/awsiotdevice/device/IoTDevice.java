@@ -1,36 +1,83 @@
 package com.testcraftsmanship.awsiotdevice.device;
 
-import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
-import com.amazonaws.services.iot.client.AWSIotException;
-import com.amazonaws.services.iot.client.AWSIotMqttClient;
-import com.testcraftsmanship.awsiotdevice.aws.AwsException;
+import com.testcraftsmanship.awsiotdevice.device.transport.AwsIotMqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import com.testcraftsmanship.awsiotdevice.metrics.MetricsRegistry;
 import com.testcraftsmanship.awsiotdevice.parser.MessageParser;
-import com.testcraftsmanship.awsiotdevice.utils.StringOperations;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowReporter;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowStore;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 public class IoTDevice {
     private static final Logger LOGGER = LoggerFactory.getLogger(IoTDevice.class);
-    private AWSIotMqttClient iotActionsTrigger;
+    private static final Duration IN_FLIGHT_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+    private final MqttTransport iotActionsTrigger;
+    private final boolean sharedConnection;
+    private final PublicationWindow sharedWindow;
     private IoTDeviceListener ioTDeviceListener;
+    private PublicationWindow publicationWindow;
     private IoTDeviceData iotDeviceData;
-    private final String mqttClientEndpoint;
-    private final String awsAccessKeyId;
-    private final String awsSecretAccessKey;
+    private DeviceMetrics metrics = new DeviceMetrics(MetricsRegistry.noop());
+    private final MqttTransportFactory transportFactory;
     @Getter
     private IoTDeviceState state;
 
     public IoTDevice(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey) {
-        String awsClientId = StringOperations.generateAwsClientId();
+        this(AwsIotMqttTransport.factory(clientEndpoint, awsAccessKeyId, awsSecretAccessKey));
+    }
+
+    /**
+     * Creates device which owns its connection created by the given factory, e.g. connection to embedded MQTT broker.
+     *
+     * @param transportFactory factory of the device connections
+     */
+    public IoTDevice(MqttTransportFactory transportFactory) {
+        iotDeviceData = new IoTDeviceData();
+        this.transportFactory = transportFactory;
+        this.iotActionsTrigger = transportFactory.create();
+        this.sharedConnection = false;
+        this.sharedWindow = null;
+        LOGGER.info("Created IoTDeviceListener with client id: {}", iotActionsTrigger.getClientId());
+    }
+
+    /**
+     * Creates device which works on the connection shared with other devices. Device neither connects nor disconnects
+     * that connection, it only subscribes, publishes and unsubscribes when simulation is stopped, after its publications
+     * have finished. Responses are published through the shared connection as well.
+     *
+     * @param sharedConnection connected MQTT transport owned by the caller
+     */
+    public IoTDevice(MqttTransport sharedConnection) {
+        this(sharedConnection, null);
+    }
+
+    /**
+     * Creates device which works on the connection shared with other devices and publishes within the publication
+     * window shared by all the devices of the connection, so together they never have more publications in flight than
+     * the window allows.
+     *
+     * @param sharedConnection connected MQTT transport owned by the caller
+     * @param sharedWindow publication window of the shared connection, null when the device has its own window
+     */
+    public IoTDevice(MqttTransport sharedConnection, PublicationWindow sharedWindow) {
         iotDeviceData = new IoTDeviceData();
-        this.mqttClientEndpoint = clientEndpoint;
-        this.awsAccessKeyId = awsAccessKeyId;
-        this.awsSecretAccessKey = awsSecretAccessKey;
-        this.iotActionsTrigger = new AWSIotMqttClient(clientEndpoint, awsClientId,
-                awsAccessKeyId,
-                awsSecretAccessKey);
-        LOGGER.info("Created IoTDeviceListener with client id: {}", awsClientId);
+        this.transportFactory = null;
+        this.iotActionsTrigger = sharedConnection;
+        this.sharedConnection = true;
+        this.sharedWindow = sharedWindow;
     }
 
     public void publishMessageTo(String message, String topic) {
@@ -42,6 +89,69 @@ public class IoTDevice {
         iotDeviceData.setDeviceSubscriptionTopic(topic);
     }
 
+    /**
+     * Subscribes all the topics on the device connection, e.g. command topics of many rules.
+     *
+     * @param topics topics subscribed by the device
+     */
+    public void subscribeTo(List<String> topics) {
+        iotDeviceData.setDeviceSubscriptionTopics(new ArrayList<>(topics));
+    }
+
+    /**
+     * Adds rule evaluated after the rule defined with subscribeTrigger conditions and publishMessageTo.
+     *
+     * @param rule conditions and response of the rule
+     */
+    public void addRule(DeviceRule rule) {
+        iotDeviceData.getAdditionalRules().add(rule);
+    }
+
+    /**
+     * Device answers the requests to the classic and named shadows of the thing like AWS IoT Device Shadow service,
+     * keeping the shadow documents in the given store. Responses are published with the publication QoS of the device.
+     * It can't be used with AWS IoT, which answers the shadow requests itself and doesn't allow clients to publish the
+     * responses on the reserved $aws topics.
+     *
+     * @param thingName   name of the thing which shadow is simulated
+     * @param shadowStore store of the shadow documents, which may be shared by many devices
+     */
+    public void simulateShadow(String thingName, ShadowStore shadowStore) {
+        if (iotActionsTrigger instanceof AwsIotMqttTransport) {
+            throw new IllegalStateException("Device Shadow service of thing " + thingName + " can't be simulated on AWS IoT, "
+                    + "which answers the shadow requests itself. Use reportShadow to simulate the device side.");
+        }
+        iotDeviceData.setShadowThingName(thingName);
+        iotDeviceData.setShadowStore(shadowStore);
+    }
+
+    /**
+     * Device reports the classic shadow of the thing like the real device: it gets the shadow when it starts and reports
+     * the desired state received in delta messages, which it also sets in the device state. It works with AWS IoT as
+     * well as with the device simulating the shadow service.
+     *
+     * @param thingName name of the thing which shadow is reported
+     */
+    public void reportShadow(String thingName) {
+        iotDeviceData.setShadowReporter(new ShadowReporter(thingName));
+    }
+
+    /**
+     * @param stateUpdates changes of the device state made when the message meets the subscribe trigger conditions
+     */
+    public void updateStateOnTrigger(List<StateUpdate> stateUpdates) {
+        iotDeviceData.setStateUpdates(new ArrayList<>(stateUpdates));
+    }
+
+    /**
+     * State is read and updated by the rules of the device, so it can be shared by its restarts.
+     *
+     * @param deviceState state of the device
+     */
+    public void setDeviceState(DeviceState deviceState) {
+        iotDeviceData.setDeviceState(deviceState);
+    }
+
     public void subscribeTriggerMessageCondition(String messageCondition) {
         iotDeviceData.setSubscribeMessageCondition(messageCondition);
     }
@@ -50,57 +160,144 @@ public class IoTDevice {
         iotDeviceData.setSubscribeTopicCondition(topicCondition);
     }
 
+    public void setResponseMessageDelay(Duration delay) {
+        iotDeviceData.setResponseMessageDelay(delay);
+    }
+
+    /**
+     * @param delayInSeconds response delay in seconds
+     * @deprecated use {@link #setResponseMessageDelay(Duration)}
+     */
+    @Deprecated
     public void setResponseMessageDelayInSeconds(int delayInSeconds) {
-        iotDeviceData.setResponseMessageDelayInSeconds(delayInSeconds);
+        setResponseMessageDelay(Duration.ofSeconds(delayInSeconds));
+    }
+
+    /**
+     * By default responses are published through the same connection the device subscribes on. Separate publisher
+     * connection doubles TLS handshakes and broker connections, so it should be used only when publishing can't share
+     * the connection with the subscription, e.g. when IoT policy allows the subscribing client only to receive messages.
+     * It has no effect when device works on the shared connection.
+     *
+     * @param separatePublisherConnection true when responses should be published through separate connection
+     */
+    public void setSeparatePublisherConnection(boolean separatePublisherConnection) {
+        iotDeviceData.setSeparatePublisherConnection(separatePublisherConnection);
+    }
+
+    public void setPublicationQos(MqttQos qos) {
+        iotDeviceData.setPublicationQos(qos);
+    }
+
+    /**
+     * Publications of the device don't wait for the broker, at most the given number of them, and never more than the
+     * in-flight limit of the transport, is in flight on the connection of the device at a time. Publications are
+     * queued when the window is full, so publishers are never blocked. Window given with the shared connection takes
+     * precedence, so devices of one connection share its limit.
+     *
+     * @param maxInFlightPublications size of the publication window
+     */
+    public void setMaxInFlightPublications(int maxInFlightPublications) {
+        iotDeviceData.setMaxInFlightPublications(maxInFlightPublications);
+    }
+
+    /**
+     * Latencies of the device are recorded to the given recorder, so they can be shared by many devices and survive
+     * restarts of the simulation.
+     *
+     * @param latencyRecorder recorder of the latencies
+     */
+    public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+        iotDeviceData.setLatencyRecorder(latencyRecorder);
+    }
+
+    /**
+     * Messages received by the device are recorded in the given journal. Messages are not recorded when there is none.
+     *
+     * @param messageJournal journal of the received messages
+     */
+    public void setMessageJournal(MessageJournal messageJournal) {
+        iotDeviceData.setMessageJournal(messageJournal);
+    }
+
+    /**
+     * Awaiter is notified about every message matched by the device.
+     *
+     * @param matchAwaiter awaiter of the expected messages
+     */
+    public void setMatchAwaiter(MatchAwaiter matchAwaiter) {
+        iotDeviceData.setMatchAwaiter(matchAwaiter);
+    }
+
+    public LatencyRecorder getLatencyRecorder() {
+        return iotDeviceData.getLatencyRecorder();
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        iotDeviceData.setMetricsRegistry(metricsRegistry);
+        metrics = new DeviceMetrics(metricsRegistry);
     }
 
     public synchronized void startSimulation() {
-        if (iotActionsTrigger.getConnectionStatus().equals(AWSIotConnectionStatus.CONNECTED)) {
+        if (isRunning()) {
             LOGGER.info("IoT Device with id {} is already running.", iotActionsTrigger.getClientId());
             return;
         }
         try {
-            iotActionsTrigger.connect();
+            if (sharedConnection) {
+                assertSharedConnectionEstablished();
+            } else {
+                iotActionsTrigger.connect();
+                metrics.connected();
+            }
+            publicationWindow = sharedWindow != null ? sharedWindow
+                    : new PublicationWindow(iotActionsTrigger, iotDeviceData.getMaxInFlightPublications());
             if (isDeviceRespondingOnMessage()) {
-                ioTDeviceListener = new IoTDeviceListener(iotDeviceData,
-                        mqttClientEndpoint, awsAccessKeyId, awsSecretAccessKey);
-                iotActionsTrigger.subscribe(ioTDeviceListener);
+                subscribeListener();
                 ioTDeviceListener.connectPublisher();
+                ioTDeviceListener.requestShadow();
                 state = IoTDeviceState.RUNNING;
                 LOGGER.info("Start IoT Device simulation in Subscribe-Publish mode");
             } else if (isDevicePublishingOnly()) {
                 state = IoTDeviceState.RUNNING;
                 LOGGER.info("Start IoT Device simulation in Publish mode");
             } else if (isDeviceSubscribedOnly()) {
-                ioTDeviceListener = new IoTDeviceListener(iotDeviceData,
-                        mqttClientEndpoint, awsAccessKeyId, awsSecretAccessKey);
-                iotActionsTrigger.subscribe(ioTDeviceListener);
+                subscribeListener();
                 state = IoTDeviceState.RUNNING;
                 LOGGER.info("Start IoT Device simulation in Subscribing mode");
             }
-        } catch (AWSIotException e) {
-            throw new AwsException("Exception while stopping IoT Device simulator", e);
+        } catch (RuntimeException e) {
+            rollBackStart(e);
+            throw e;
         }
     }
 
     public synchronized void stopSimulation() {
-        try {
-            if (ioTDeviceListener != null) {
-                ioTDeviceListener.disconnectPublisher();
+        if (ioTDeviceListener != null) {
+            ioTDeviceListener.disconnectPublisher();
+        }
+        if (!iotActionsTrigger.isConnected()) {
+            LOGGER.debug("Connection of IoT Device with id {} is already closed.", iotActionsTrigger.getClientId());
+        } else if (sharedConnection) {
+            if (sharedWindow == null) {
+                drainPublications();
             }
-            if (iotActionsTrigger.getConnectionStatus().equals(AWSIotConnectionStatus.CONNECTED)) {
-                iotActionsTrigger.disconnect();
+            if (ioTDeviceListener != null) {
+                ioTDeviceListener.getSubscriptionTopics().forEach(iotActionsTrigger::unsubscribe);
             }
-            state = IoTDeviceState.STOPPED;
-            LOGGER.info("IoT Device simulation stopped");
-        } catch (AWSIotException e) {
-            throw new AwsException("Exception while stopping IoT Device simulator", e);
+        } else {
+            drainPublications();
+            iotActionsTrigger.disconnect();
+            metrics.disconnected();
         }
+        state = IoTDeviceState.STOPPED;
+        LOGGER.info("IoT Device simulation stopped");
     }
 
     public void closeSimulation() {
         stopSimulation();
         this.iotDeviceData = new IoTDeviceData();
+        this.metrics = new DeviceMetrics(MetricsRegistry.noop());
     }
 
     public void publishMessage() {
@@ -108,13 +305,46 @@ public class IoTDevice {
             throw new IllegalStateException(
                     "Device has not defined publication message/topic or publication message is parametrized.");
         }
+        long publishNanos = System.nanoTime();
         try {
-            iotActionsTrigger.publish(iotDeviceData.getPublicationTopic(), iotDeviceData.getPublicationMessage());
-            LOGGER.info("Publishing message {} on topic: {}",
-                    iotDeviceData.getPublicationMessage(), iotDeviceData.getPublicationTopic());
-        } catch (AWSIotException e) {
-            throw new AwsException("Unable to publish message to topic: " + iotDeviceData.getPublicationTopic(), e);
+            iotActionsTrigger.publish(iotDeviceData.getPublicationTopic(),
+                    iotDeviceData.getPublicationMessage().getBytes(StandardCharsets.UTF_8), iotDeviceData.getPublicationQos());
+        } catch (RuntimeException e) {
+            metrics.publishFailed();
+            throw e;
+        }
+        recordPublishLatency(iotDeviceData.getPublicationQos(), publishNanos);
+        metrics.messagePublished();
+        LOGGER.debug("Publishing message {} on topic: {}",
+                iotDeviceData.getPublicationMessage(), iotDeviceData.getPublicationTopic());
+    }
+
+    /**
+     * Publishes defined message without waiting for the broker. Device has to be running.
+     *
+     * @return future completed when the message is published
+     */
+    public CompletableFuture<Void> publishMessageAsync() {
+        if (!canPublishOnDemand()) {
+            throw new IllegalStateException(
+                    "Device has not defined publication message/topic or publication message is parametrized.");
+        }
+        return publishAsync(iotDeviceData.getPublicationMessage());
+    }
+
+    /**
+     * Publishes all the messages to the publication topic of the device, pipelined within the publication window.
+     * Device has to be running.
+     *
+     * @param messages json messages published in the given order
+     * @return future completed when all the messages are published, or failed when any of them is not
+     */
+    public CompletableFuture<Void> publishAll(Collection<String> messages) {
+        if (iotDeviceData.getPublicationTopic() == null) {
+            throw new IllegalStateException("Device has not defined publication topic.");
         }
+        CompletableFuture<?>[] publications = messages.stream().map(this::publishAsync).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(publications);
     }
 
     public boolean isExpectedMessageOnSubscribedTopic() {
@@ -125,13 +355,104 @@ public class IoTDevice {
         }
     }
 
+    private CompletableFuture<Void> publishAsync(String message) {
+        if (!isRunning()) {
+            throw new IllegalStateException("Device " + iotActionsTrigger.getClientId() + " is not running.");
+        }
+        long publishNanos = System.nanoTime();
+        CompletableFuture<Void> publication = publicationWindow.publish(iotDeviceData.getPublicationTopic(),
+                message.getBytes(StandardCharsets.UTF_8), iotDeviceData.getPublicationQos(), metrics.publicationsQueued());
+        publication.whenComplete((result, failure) -> {
+            if (failure == null) {
+                recordPublishLatency(iotDeviceData.getPublicationQos(), publishNanos);
+                metrics.messagePublished();
+            } else {
+                metrics.publishFailed();
+            }
+        });
+        return publication;
+    }
+
+    /**
+     * Only publication with QoS 1 waits for the broker, QoS 0 one finishes when it is handed over to the client, so
+     * mixing them would hide how long the broker takes.
+     */
+    private void recordPublishLatency(MqttQos qos, long publishNanos) {
+        if (qos == MqttQos.AT_LEAST_ONCE) {
+            iotDeviceData.getLatencyRecorder().record(LatencyStage.PUBLISH, System.nanoTime() - publishNanos);
+        }
+    }
+
+    private void drainPublications() {
+        if (publicationWindow != null && !publicationWindow.drain(IN_FLIGHT_DRAIN_TIMEOUT)) {
+            LOGGER.warn("{} publications of device {} are still in flight when it is disconnected.",
+                    publicationWindow.getInFlightCount(), iotActionsTrigger.getClientId());
+        }
+    }
+
+    /**
+     * Undoes the failed start, e.g. when subscription is throttled, so the device doesn't stay subscribed and react
+     * to the triggers while the start is retried with the new device.
+     */
+    private void rollBackStart(RuntimeException failure) {
+        try {
+            if (ioTDeviceListener != null) {
+                ioTDeviceListener.disconnectPublisher();
+            }
+            if (sharedConnection) {
+                if (ioTDeviceListener != null) {
+                    Set<String> subscribedTopics = iotActionsTrigger.getSubscribedTopics();
+                    ioTDeviceListener.getSubscriptionTopics().stream()
+                            .filter(subscribedTopics::contains)
+                            .collect(Collectors.toList())
+                            .forEach(iotActionsTrigger::unsubscribe);
+                }
+            } else if (iotActionsTrigger.isConnected()) {
+                iotActionsTrigger.disconnect();
+                metrics.disconnected();
+            }
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+        ioTDeviceListener = null;
+        state = IoTDeviceState.STOPPED;
+        LOGGER.warn("Start of IoT Device with id {} failed and has been rolled back.", iotActionsTrigger.getClientId());
+    }
+
+    private boolean isRunning() {
+        return state == IoTDeviceState.RUNNING;
+    }
+
+    private void assertSharedConnectionEstablished() {
+        if (!iotActionsTrigger.isConnected()) {
+            throw new IllegalStateException("Shared connection with id " + iotActionsTrigger.getClientId()
+                    + " has to be connected before device simulation is started.");
+        }
+    }
+
+    private void subscribeListener() {
+        ioTDeviceListener = createListener();
+        for (String topic : ioTDeviceListener.getSubscriptionTopics()) {
+            iotActionsTrigger.subscribe(topic, ioTDeviceListener);
+        }
+    }
+
+    private IoTDeviceListener createListener() {
+        if (!sharedConnection && iotDeviceData.isSeparatePublisherConnection()) {
+            PublicationWindow separatePublisher =
+                    new PublicationWindow(transportFactory.create(), iotDeviceData.getMaxInFlightPublications());
+            return new IoTDeviceListener(iotDeviceData, separatePublisher, false);
+        }
+        return new IoTDeviceListener(iotDeviceData, publicationWindow, true);
+    }
+
     private boolean canPublishOnDemand() {
-        return (isDeviceRespondingOnMessage() || isDevicePublishingOnly())
+        return isDevicePublishingOnTopic()
                 && !MessageParser.containsMaskParams(iotDeviceData.getPublicationMessage());
     }
 
     private boolean isDeviceRespondingOnMessage() {
-        return isDeviceSubscribedOnTopic() && isDevicePublishingOnTopic();
+        return isDeviceSubscribedOnTopic() && hasRespondingRule();
     }
 
     private boolean isDevicePublishingOnly() {
@@ -139,11 +460,21 @@ public class IoTDevice {
     }
 
     private boolean isDeviceSubscribedOnly() {
-        return isDeviceSubscribedOnTopic() && !isDevicePublishingOnTopic();
+        return isDeviceSubscribedOnTopic() && !hasRespondingRule();
+    }
+
+    private boolean hasRespondingRule() {
+        return isDevicePublishingOnTopic() || hasShadow()
+                || iotDeviceData.getAdditionalRules().stream().anyMatch(DeviceRule::isResponding);
     }
 
     private boolean isDeviceSubscribedOnTopic() {
-        return iotDeviceData.getDeviceSubscriptionTopic() != null;
+        return !iotDeviceData.getDeviceSubscriptionTopics().isEmpty() || hasShadow();
+    }
+
+    private boolean hasShadow() {
+        return iotDeviceData.getShadowThingName() != null && iotDeviceData.getShadowStore() != null
+                || iotDeviceData.getShadowReporter() != null;
     }
 
     private boolean isDevicePublishingOnTopic() {
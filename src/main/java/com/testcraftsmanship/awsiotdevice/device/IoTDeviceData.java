@@ -1,18 +1,97 @@
 package com.testcraftsmanship.awsiotdevice.device;
 
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.metrics.MetricsRegistry;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowReporter;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowStore;
 import lombok.Getter;
 import lombok.Setter;
 import org.json.JSONObject;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 @Getter
 @Setter
 public class IoTDeviceData {
-    private String deviceSubscriptionTopic = null;
+    public static final int DEFAULT_MAX_IN_FLIGHT_PUBLICATIONS = 10;
+    private List<String> deviceSubscriptionTopics = Collections.emptyList();
     private String publicationTopic = null;
     private String publicationMessage = null;
     private String subscribeTopicCondition = null;
     private String subscribeMessageCondition = null;
-    private int responseMessageDelayInSeconds = 0;
+    private Duration responseMessageDelay = Duration.ZERO;
+    private boolean separatePublisherConnection = false;
+    private MqttQos publicationQos = MqttQos.AT_MOST_ONCE;
+    private int maxInFlightPublications = DEFAULT_MAX_IN_FLIGHT_PUBLICATIONS;
+    private LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private MetricsRegistry metricsRegistry = MetricsRegistry.noop();
+    private MessageJournal messageJournal = null;
+    private MatchAwaiter matchAwaiter = null;
+    private List<DeviceRule> additionalRules = new ArrayList<>();
+    private String shadowThingName = null;
+    private ShadowStore shadowStore = null;
+    private ShadowReporter shadowReporter = null;
+    private DeviceState deviceState = new DeviceState();
+    private List<StateUpdate> stateUpdates = new ArrayList<>();
+
+    public String getDeviceSubscriptionTopic() {
+        return deviceSubscriptionTopics.isEmpty() ? null : deviceSubscriptionTopics.get(0);
+    }
+
+    public void setDeviceSubscriptionTopic(String topic) {
+        deviceSubscriptionTopics = topic == null ? Collections.emptyList() : Collections.singletonList(topic);
+    }
+
+    /**
+     * @return response delay in whole seconds
+     * @deprecated use {@link #getResponseMessageDelay()}, which keeps the fraction of the second
+     */
+    @Deprecated
+    public int getResponseMessageDelayInSeconds() {
+        return (int) responseMessageDelay.getSeconds();
+    }
+
+    /**
+     * @param seconds response delay in seconds
+     * @deprecated use {@link #setResponseMessageDelay(Duration)}
+     */
+    @Deprecated
+    public void setResponseMessageDelayInSeconds(int seconds) {
+        responseMessageDelay = Duration.ofSeconds(seconds);
+    }
+
+    /**
+     * @return device topics followed by topics of the shadow requests when the device simulates shadow of the thing, and
+     *         by topics of the shadow responses when the device reports its shadow
+     */
+    public List<String> getListenerSubscriptionTopics() {
+        boolean simulatingShadow = shadowThingName != null && shadowStore != null;
+        if (!simulatingShadow && shadowReporter == null) {
+            return deviceSubscriptionTopics;
+        }
+        List<String> topics = new ArrayList<>(deviceSubscriptionTopics);
+        if (simulatingShadow) {
+            topics.addAll(ShadowStore.requestTopicsOf(shadowThingName));
+        }
+        if (shadowReporter != null) {
+            topics.addAll(shadowReporter.getResponseTopics());
+        }
+        return topics;
+    }
+
+    /**
+     * @return rule defined with subscribe conditions and publication of the device followed by additional rules
+     */
+    public List<DeviceRule> getRules() {
+        List<DeviceRule> rules = new ArrayList<>(additionalRules.size() + 1);
+        rules.add(new DeviceRule(subscribeTopicCondition, subscribeMessageCondition, publicationTopic, publicationMessage,
+                responseMessageDelay, null, stateUpdates));
+        rules.addAll(additionalRules);
+        return rules;
+    }
 
     public void setPublicationMessage(String message) {
         if (message != null) {
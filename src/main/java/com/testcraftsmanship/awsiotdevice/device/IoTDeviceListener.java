@@ -1,64 +1,125 @@
 package com.testcraftsmanship.awsiotdevice.device;
 
-import com.amazonaws.services.iot.client.AWSIotException;
-import com.amazonaws.services.iot.client.AWSIotMqttClient;
-import com.amazonaws.services.iot.client.AWSIotTopic;
-import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
-import com.amazonaws.services.iot.client.AWSIotMessage;
-import com.testcraftsmanship.awsiotdevice.aws.AwsException;
-import com.testcraftsmanship.awsiotdevice.parser.MessageParser;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttMessageHandler;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.ResponseRules.CompiledRule;
+import com.testcraftsmanship.awsiotdevice.device.ResponseRules.RuleMatch;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
 import com.testcraftsmanship.awsiotdevice.parser.PayloadMappingException;
-import com.testcraftsmanship.awsiotdevice.utils.StringOperations;
-import org.json.JSONObject;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowReporter;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.testcraftsmanship.awsiotdevice.utils.StringOperations.minimize;
 
-public class IoTDeviceListener extends AWSIotTopic {
+public class IoTDeviceListener implements MqttMessageHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(IoTDeviceListener.class);
-    private AWSIotMqttClient iotPublisher;
-    private IoTDeviceData iotDeviceData;
-    private boolean expectedInformationReceived = false;
-
-    IoTDeviceListener(IoTDeviceData deviceData, String clientEndpoint,
-                      String keyStoreSsmParamValue, String keyPasswordSsmParamValue) {
-        super(deviceData.getDeviceSubscriptionTopic());
-        this.iotDeviceData = deviceData;
-        String awsClientId = StringOperations.generateAwsClientId();
-        this.iotPublisher = new AWSIotMqttClient(clientEndpoint, awsClientId,
-                keyStoreSsmParamValue,
-                keyPasswordSsmParamValue);
-        LOGGER.info("Created IoTDeviceListener with client id: {}", awsClientId);
+    private static final int RESPONSE_PUBLISHER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final ScheduledExecutorService RESPONSE_PUBLISHER =
+            Executors.newScheduledThreadPool(RESPONSE_PUBLISHER_THREADS, new ResponsePublisherThreadFactory());
+    private static final Duration IN_FLIGHT_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+    private final List<String> subscriptionTopics;
+    private final PublicationWindow iotPublisher;
+    private final boolean publisherShared;
+    private final ResponseRules responseRules;
+    private final LatencyRecorder latencyRecorder;
+    private final DeviceMetrics metrics;
+    private final MessageJournal messageJournal;
+    private final MatchAwaiter matchAwaiter;
+    private final ShadowStore shadowStore;
+    private final ShadowReporter shadowReporter;
+    private final MqttQos shadowQos;
+    private final DeviceState deviceState;
+    private final AtomicInteger pendingResponses = new AtomicInteger();
+    private volatile boolean publishingResponses = true;
+    private final AtomicBoolean expectedInformationReceived = new AtomicBoolean(false);
+
+    /**
+     * Creates listener which publishes responses through the connection it has been subscribed on, or through its own
+     * separate connection. Listener connects and disconnects the publisher only when it is not the subscribing one.
+     * Responses are published asynchronously within the publication window of the connection.
+     *
+     * @param deviceData settings of the device
+     * @param iotPublisher publication window of MQTT transport used for publication of responses
+     * @param publisherShared true when publisher is the connection the listener is subscribed on
+     */
+    IoTDeviceListener(IoTDeviceData deviceData, PublicationWindow iotPublisher, boolean publisherShared) {
+        this.subscriptionTopics = deviceData.getListenerSubscriptionTopics();
+        this.iotPublisher = iotPublisher;
+        this.publisherShared = publisherShared;
+        this.responseRules = ResponseRules.compile(deviceData.getRules(), deviceData.getResponseMessageDelay(),
+                deviceData.getPublicationQos());
+        this.latencyRecorder = deviceData.getLatencyRecorder();
+        this.metrics = new DeviceMetrics(deviceData.getMetricsRegistry());
+        this.messageJournal = deviceData.getMessageJournal();
+        this.matchAwaiter = deviceData.getMatchAwaiter();
+        this.shadowStore = deviceData.getShadowThingName() == null ? null : deviceData.getShadowStore();
+        this.shadowReporter = deviceData.getShadowReporter();
+        this.shadowQos = deviceData.getPublicationQos();
+        this.deviceState = deviceData.getDeviceState();
+    }
+
+    List<String> getSubscriptionTopics() {
+        return subscriptionTopics;
     }
 
     @Override
-    public synchronized void onMessage(AWSIotMessage message) {
-        if (MessageParser.containsMaskParams(iotDeviceData.getSubscribeMessageCondition()) && publicationConditionsMet()) {
-            try {
-                MessageParser messageParser = new MessageParser(iotDeviceData.getSubscribeMessageCondition(),
-                        message.getStringPayload(), true);
-                String updatedPublicationMessage = messageParser
-                        .updateJsonParamsWithValues(iotDeviceData.getPublicationMessage()).toString();
-                waitForPublishingResponse();
-                publishIotDeviceData(iotDeviceData.getPublicationTopic(), updatedPublicationMessage);
-            } catch (PayloadMappingException e) {
-                LOGGER.warn(e.getMessage());
+    public void onMessage(String topic, byte[] message) {
+        long receivedNanos = System.nanoTime();
+        metrics.received(topic);
+        if (shadowStore != null && ShadowStore.isRequestTopic(topic)) {
+            handleShadowRequest(topic, message, receivedNanos);
+            return;
+        }
+        if (shadowReporter != null && shadowReporter.isResponseTopic(topic)) {
+            handleShadowResponse(topic, message, receivedNanos);
+            return;
+        }
+        Optional<RuleMatch> ruleMatch = matchRules(topic, message);
+        latencyRecorder.record(LatencyStage.MATCHING, System.nanoTime() - receivedNanos);
+        if (messageJournal != null) {
+            messageJournal.record(topic, message, receivedNanos,
+                    ruleMatch.isPresent() ? ruleMatch.get().getRule().getDeviceRule() : null);
+        }
+        if (!ruleMatch.isPresent()) {
+            metrics.notHandled();
+            LOGGER.warn("Not handled message of {} bytes received on topic {}.", message.length, topic);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Not handled message {} received on topic {}.",
+                        minimize(new String(message, StandardCharsets.UTF_8)), topic);
             }
-        } else if (subscriptionConditionsMet(message) && publicationConditionsMet()) {
-            LOGGER.info("Subscribed on topic {}, has received the message {}",
-                    message.getTopic(), minimize(message.getStringPayload()));
-            waitForPublishingResponse();
-            publishIotDeviceData();
-        } else if (subscriptionConditionsMet(message) && !publicationConditionsMet()) {
-            LOGGER.info("Subscribed on topic {}, has received the message {}",
-                    message.getTopic(), minimize(message.getStringPayload()));
-        } else {
-            LOGGER.warn("Not handled message {} received on topic {}.",
-                    minimize(message.getStringPayload()), message.getTopic());
             return;
         }
-        expectedInformationReceived = true;
+        metrics.matched();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Subscribed on topic {}, has received the message {}",
+                    topic, minimize(new String(message, StandardCharsets.UTF_8)));
+        }
+        CompiledRule rule = ruleMatch.get().getRule();
+        Map<String, JsonValue> params = rule.updateState(deviceState, ruleMatch.get().getParams());
+        if (rule.isResponding()) {
+            byte[] response = rule.render(params).getBytes(StandardCharsets.UTF_8);
+            scheduleResponse(rule.getPublicationTopic(), response, rule.getPublicationQos(), rule.getDelayMillis(),
+                    receivedNanos);
+        }
+        expectedInformationReceived.set(true);
+        if (matchAwaiter != null) {
+            matchAwaiter.matched();
+        }
     }
 
     /**
@@ -67,95 +128,141 @@ public class IoTDeviceListener extends AWSIotTopic {
      *
      * @return true if message has been received, false if not
      */
-    synchronized boolean expectedMessageHasBeenPublished() {
-        if (expectedInformationReceived) {
-            expectedInformationReceived = false;
-            return true;
-        }
-        return false;
+    boolean expectedMessageHasBeenPublished() {
+        return expectedInformationReceived.getAndSet(false);
     }
 
-    void connectPublisher() throws AWSIotException {
-        if (!iotPublisher.getConnectionStatus().equals(AWSIotConnectionStatus.CONNECTED)) {
-            iotPublisher.connect();
+    void connectPublisher() {
+        if (!publisherShared && !iotPublisher.getTransport().isConnected()) {
+            iotPublisher.getTransport().connect();
+            metrics.connected();
         }
     }
 
-    void disconnectPublisher() throws AWSIotException {
-        if (iotPublisher.getConnectionStatus().equals(AWSIotConnectionStatus.CONNECTED)) {
-            iotPublisher.disconnect();
+    void disconnectPublisher() {
+        publishingResponses = false;
+        if (pendingResponses.get() > 0) {
+            LOGGER.warn("{} delayed responses will not be published as device stopped.", pendingResponses.get());
         }
-    }
-
-    private void waitForPublishingResponse() {
-        try {
-            Thread.sleep(iotDeviceData.getResponseMessageDelayInSeconds());
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        if (!publisherShared && iotPublisher.getTransport().isConnected()) {
+            if (!iotPublisher.drain(IN_FLIGHT_DRAIN_TIMEOUT)) {
+                LOGGER.warn("{} responses are still in flight when publisher is disconnected.", iotPublisher.getInFlightCount());
+            }
+            iotPublisher.getTransport().disconnect();
+            metrics.disconnected();
         }
     }
 
-    private boolean publicationConditionsMet() {
-        return iotDeviceData.getPublicationTopic() != null && iotDeviceData.getPublicationMessage() != null;
+    /**
+     * Shadow request is answered by the shadow store without delay and it is not matched with the rules of the device.
+     */
+    private void handleShadowRequest(String topic, byte[] request, long receivedNanos) {
+        if (messageJournal != null) {
+            messageJournal.record(topic, request, receivedNanos, null);
+        }
+        metrics.matched();
+        shadowStore.handle(topic, request,
+                (responseTopic, response) -> scheduleResponse(responseTopic, response, shadowQos, 0, receivedNanos));
     }
 
-    private boolean subscriptionConditionsMet(AWSIotMessage message) {
-        return expectReceiveMessageOnTopic(message)
-                || expectReceiveMessageOnly(message)
-                || expectReceiveOnTopicOnly(message);
+    /**
+     * Desired state of the reported shadow is set in the device state, so responses of the rules can reference it.
+     */
+    private void handleShadowResponse(String topic, byte[] response, long receivedNanos) {
+        if (messageJournal != null) {
+            messageJournal.record(topic, response, receivedNanos, null);
+        }
+        metrics.matched();
+        shadowReporter.handle(topic, response,
+                (updateTopic, update) -> scheduleResponse(updateTopic, update, shadowQos, 0, receivedNanos))
+                .forEach((name, value) -> deviceState.set(name, JsonValue.of(value)));
     }
 
-    private boolean expectReceiveMessageOnTopic(AWSIotMessage message) {
-        return messageFromExpectedTopic(message) && messageWithExpectedPayload(message);
+    /**
+     * Publishes the get request of the reported shadow, so the device takes over the desired state set while it was
+     * offline.
+     */
+    void requestShadow() {
+        if (shadowReporter != null) {
+            shadowReporter.requestShadow((topic, request) -> scheduleResponse(topic, request, shadowQos, 0, System.nanoTime()));
+        }
     }
 
-    private boolean expectReceiveOnTopicOnly(AWSIotMessage message) {
-        return messageFromExpectedTopic(message) && iotDeviceData.getSubscribeMessageCondition() == null;
+    /**
+     * Hands the response over to the scheduler shared by all listeners so the MQTT callback thread is released
+     * immediately and many delayed responses can wait for publication at the same time.
+     */
+    private void scheduleResponse(String topic, byte[] payload, MqttQos qos, long delayMillis, long receivedNanos) {
+        pendingResponses.incrementAndGet();
+        metrics.responseScheduled();
+        RESPONSE_PUBLISHER.schedule(() -> publishResponse(topic, payload, qos, receivedNanos),
+                delayMillis, TimeUnit.MILLISECONDS);
     }
 
-    private boolean expectReceiveMessageOnly(AWSIotMessage message) {
-        return messageWithExpectedPayload(message) && iotDeviceData.getSubscribeTopicCondition() == null;
+    /**
+     * Response is finished when the publication completes. Publication window queues the response when it is full,
+     * so the scheduler thread shared by all the devices never waits, neither for free slot of the window nor for the
+     * broker.
+     */
+    private void publishResponse(String topic, byte[] payload, MqttQos qos, long receivedNanos) {
+        if (!publishingResponses) {
+            finishResponse(false);
+            return;
+        }
+        long publishNanos = System.nanoTime();
+        CompletableFuture<Void> publication;
+        try {
+            publication = iotPublisher.publish(topic, payload, qos, metrics.publicationsQueued());
+        } catch (RuntimeException e) {
+            responseFailed(e);
+            return;
+        }
+        publication.whenComplete((result, failure) -> {
+            if (failure == null) {
+                long publishedNanos = System.nanoTime();
+                if (qos == MqttQos.AT_LEAST_ONCE) {
+                    latencyRecorder.record(LatencyStage.PUBLISH, publishedNanos - publishNanos);
+                }
+                latencyRecorder.record(LatencyStage.TRIGGER_TO_RESPONSE, publishedNanos - receivedNanos);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Message {} published to topic {}",
+                            minimize(new String(payload, StandardCharsets.UTF_8)), topic);
+                }
+                finishResponse(true);
+            } else {
+                responseFailed(failure);
+            }
+        });
     }
 
-
-    private boolean messageFromExpectedTopic(AWSIotMessage message) {
-        return iotDeviceData.getSubscribeTopicCondition() != null
-                && iotDeviceData.getSubscribeTopicCondition().equals(message.getTopic());
+    private void responseFailed(Throwable failure) {
+        metrics.publishFailed();
+        LOGGER.error(failure.getMessage(), failure);
+        finishResponse(false);
     }
 
-    private boolean messageWithExpectedPayload(AWSIotMessage message) {
-        if (iotDeviceData.getSubscribeMessageCondition() == null) {
-            return false;
-        }
-        String formattedActualPayload = new JSONObject(message.getStringPayload()).toString();
-        String formattedExpectedPayload = new JSONObject(iotDeviceData.getSubscribeMessageCondition()).toString();
-        if (MessageParser.containsMaskParams(formattedExpectedPayload)) {
-            try {
-                MessageParser messageParser = new MessageParser(formattedExpectedPayload, formattedActualPayload, true);
-                String expectedPayloadWithUpdatedParams = messageParser
-                        .updateJsonParamsWithValues(formattedExpectedPayload).toString();
-                return formattedActualPayload.equals(expectedPayloadWithUpdatedParams);
-            } catch (PayloadMappingException e) {
-                LOGGER.info(e.getMessage());
-                return false;
-            }
-        }
-
-        return formattedExpectedPayload.equals(formattedActualPayload);
+    private void finishResponse(boolean published) {
+        pendingResponses.decrementAndGet();
+        metrics.responseFinished(published);
     }
 
-    private void publishIotDeviceData(String topic, String payload) {
+    private Optional<RuleMatch> matchRules(String topic, byte[] payload) {
         try {
-            iotPublisher.publish(topic, payload);
-            LOGGER.info("Message {} published to topic {}",
-                    minimize(payload), topic);
-        } catch (AWSIotException e) {
-            throw new AwsException("Exception while publishing message from IoTGateway", e);
+            return responseRules.match(topic, payload);
+        } catch (PayloadMappingException e) {
+            metrics.payloadMappingFailed();
+            return Optional.empty();
         }
     }
 
-    private void publishIotDeviceData() {
-        publishIotDeviceData(iotDeviceData.getPublicationTopic(), iotDeviceData.getPublicationMessage());
+    private static final class ResponsePublisherThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "iot-device-response-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
-
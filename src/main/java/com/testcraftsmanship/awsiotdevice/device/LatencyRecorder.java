@@ -0,0 +1,55 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Records latencies of the device stages in nanoseconds. Recording is wait-free, so it can be done on MQTT callback
+ * threads. Readers accumulate recorded intervals into histogram of the stage when snapshot is taken.
+ */
+public class LatencyRecorder {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final Map<LatencyStage, StageHistogram> stages = new EnumMap<>(LatencyStage.class);
+
+    public LatencyRecorder() {
+        for (LatencyStage stage : LatencyStage.values()) {
+            stages.put(stage, new StageHistogram());
+        }
+    }
+
+    public void record(LatencyStage stage, long nanos) {
+        stages.get(stage).recorder.recordValue(Math.max(0, nanos));
+    }
+
+    /**
+     * @param stage measured stage
+     * @return copy of all the latencies recorded for the stage since creation or last reset
+     */
+    public LatencySnapshot snapshot(LatencyStage stage) {
+        return stages.get(stage).snapshot();
+    }
+
+    public void reset() {
+        stages.values().forEach(StageHistogram::reset);
+    }
+
+    private static final class StageHistogram {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram accumulated = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        private synchronized LatencySnapshot snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            accumulated.add(interval);
+            return new LatencySnapshot(accumulated.copy());
+        }
+
+        private synchronized void reset() {
+            interval = recorder.getIntervalHistogram(interval);
+            accumulated.reset();
+        }
+    }
+}
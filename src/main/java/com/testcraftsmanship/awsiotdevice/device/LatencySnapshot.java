@@ -0,0 +1,54 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable copy of the latencies recorded for one stage.
+ */
+public final class LatencySnapshot {
+    private static final double MEDIAN = 50;
+    private static final double P99 = 99;
+    private static final double P999 = 99.9;
+    private final Histogram histogram;
+
+    LatencySnapshot(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100, e.g. 99.9
+     * @return latency below which given percent of the recorded latencies is
+     */
+    public Duration getPercentile(double percentile) {
+        return Duration.ofNanos(histogram.getValueAtPercentile(percentile));
+    }
+
+    public Duration getMin() {
+        return Duration.ofNanos(getCount() == 0 ? 0 : histogram.getMinValue());
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(histogram.getMaxValue());
+    }
+
+    public Duration getMean() {
+        return Duration.ofNanos((long) histogram.getMean());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count %d, p50 %d us, p99 %d us, p99.9 %d us, max %d us", getCount(),
+                micros(getPercentile(MEDIAN)), micros(getPercentile(P99)), micros(getPercentile(P999)), micros(getMax()));
+    }
+
+    private static long micros(Duration duration) {
+        return TimeUnit.NANOSECONDS.toMicros(duration.toNanos());
+    }
+}
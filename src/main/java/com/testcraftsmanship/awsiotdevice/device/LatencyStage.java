@@ -0,0 +1,28 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+/**
+ * Measured parts of the message handling.
+ */
+public enum LatencyStage {
+    /**
+     * From receiving the message until the decision whether it meets subscription conditions.
+     */
+    MATCHING,
+    /**
+     * From receiving the trigger message until the response has been published, including response delay.
+     */
+    TRIGGER_TO_RESPONSE,
+    /**
+     * From publishing the message with QoS 1 until the broker acknowledges it. Publications with QoS 0 are not recorded,
+     * as they finish when the client takes the message over.
+     */
+    PUBLISH,
+    /**
+     * From the first attempt to start the device until it is started, including retries and backoff.
+     */
+    STARTUP,
+    /**
+     * Duration of stopping the device by the bulk shutdown.
+     */
+    SHUTDOWN
+}
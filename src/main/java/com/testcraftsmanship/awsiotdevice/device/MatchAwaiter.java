@@ -0,0 +1,116 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Completes futures of the awaited messages the moment listener of the device records the match, so tests don't need
+ * to poll. Every await claims the next messages which haven't been claimed by previous awaits yet, so message matched
+ * before the await is called is not lost, and consecutive awaits wait for consecutive messages. Await which times out
+ * or is cancelled gives its messages back when no later await has claimed messages in the meantime. Matches nobody has
+ * claimed are discarded when the simulation is started again, so they don't satisfy awaits of the next scenario.
+ */
+public class MatchAwaiter {
+    private final AtomicLong matchedCount = new AtomicLong();
+    private final AtomicLong claimedCount = new AtomicLong();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    void matched() {
+        long count = matchedCount.incrementAndGet();
+        if (waiters.isEmpty()) {
+            return;
+        }
+        Iterator<Waiter> iterator = waiters.iterator();
+        while (iterator.hasNext()) {
+            Waiter waiter = iterator.next();
+            if (waiter.target <= count) {
+                iterator.remove();
+                waiter.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * @return number of messages matched since the awaiter has been created
+     */
+    public long getMatchedCount() {
+        return matchedCount.get();
+    }
+
+    /**
+     * Claims all the messages matched so far, so next awaits wait only for the messages matched from now on. Pending
+     * awaits keep waiting for their messages.
+     */
+    public void discardUnclaimed() {
+        claimedCount.accumulateAndGet(matchedCount.get(), Math::max);
+    }
+
+    /**
+     * @param count number of awaited messages
+     * @return future completed when the next count messages are matched
+     */
+    public CompletableFuture<Void> awaitAsync(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Number of awaited messages has to be positive.");
+        }
+        long target = claimedCount.addAndGet(count);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (matchedCount.get() >= target) {
+            future.complete(null);
+            return future;
+        }
+        Waiter waiter = new Waiter(target, future);
+        waiters.add(waiter);
+        if (matchedCount.get() >= target && waiters.remove(waiter)) {
+            future.complete(null);
+        }
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                waiters.remove(waiter);
+                claimedCount.compareAndSet(target, target - count);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Blocks until the next count messages are matched or timeout elapses.
+     *
+     * @param count number of awaited messages
+     * @param timeout maximum time of waiting
+     * @return true when messages have been matched, false when timeout elapsed
+     */
+    public boolean await(int count, Duration timeout) {
+        CompletableFuture<Void> future = awaitAsync(count);
+        try {
+            future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            return future.isDone() && !future.isCancelled();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for expected message.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Waiting for expected message failed.", e.getCause());
+        }
+    }
+
+    private static final class Waiter {
+        private final long target;
+        private final CompletableFuture<Void> future;
+
+        private Waiter(long target, CompletableFuture<Void> future) {
+            this.target = target;
+            this.future = future;
+        }
+    }
+}
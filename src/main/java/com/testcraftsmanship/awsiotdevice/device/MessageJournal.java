@@ -0,0 +1,164 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Bounded journal of the messages received by the devices. Messages are kept in a ring buffer, so when it is full
+ * the oldest message is overwritten. Recording claims the slot with single atomic increment and never blocks the MQTT
+ * callback thread. The slot is written with compare-and-set, so a writer delayed by a full lap of the ring never replaces
+ * the newer message of its slot. Queries read the slots in place in the order of arrival and skip the slots being overwritten.
+ * Payloads are kept as the received bytes, or not kept at all when only topics and timings are needed.
+ */
+public class MessageJournal {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private final AtomicReferenceArray<ReceivedMessage> slots;
+    private final int mask;
+    private final boolean keepingPayloads;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile long firstSequence;
+
+    /**
+     * Creates journal of the last 1024 messages together with their payloads.
+     */
+    public MessageJournal() {
+        this(DEFAULT_CAPACITY, true);
+    }
+
+    /**
+     * @param capacity maximum number of kept messages, rounded up to the power of two
+     * @param keepingPayloads false when payloads of the messages should not be kept
+     */
+    public MessageJournal(int capacity, boolean keepingPayloads) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Journal capacity has to be positive.");
+        }
+        int roundedCapacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new AtomicReferenceArray<>(roundedCapacity);
+        this.mask = roundedCapacity - 1;
+        this.keepingPayloads = keepingPayloads;
+    }
+
+    void record(String topic, byte[] payload, long receivedNanos, DeviceRule matchedRule) {
+        long sequence = nextSequence.getAndIncrement();
+        int slot = slotOf(sequence);
+        ReceivedMessage message =
+                new ReceivedMessage(sequence, topic, keepingPayloads ? payload : null, receivedNanos, matchedRule);
+        ReceivedMessage current = slots.get(slot);
+        while (current == null || current.getSequence() < sequence) {
+            if (slots.compareAndSet(slot, current, message)) {
+                return;
+            }
+            current = slots.get(slot);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    public boolean isKeepingPayloads() {
+        return keepingPayloads;
+    }
+
+    /**
+     * @return number of messages recorded since the journal is created or cleared, including the overwritten ones
+     */
+    public long getReceivedCount() {
+        return nextSequence.get() - firstSequence;
+    }
+
+    /**
+     * @return number of messages which have been overwritten as the journal was full
+     */
+    public long getOverwrittenCount() {
+        return Math.max(0, getReceivedCount() - getCapacity());
+    }
+
+    /**
+     * @return number of messages kept in the journal
+     */
+    public int size() {
+        return (int) Math.min(getReceivedCount(), getCapacity());
+    }
+
+    /**
+     * @param condition condition of the counted messages
+     * @return number of kept messages meeting the condition
+     */
+    public int count(Predicate<ReceivedMessage> condition) {
+        int[] count = new int[1];
+        forEach(message -> {
+            if (condition.test(message)) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @param condition condition of the returned messages
+     * @return kept messages meeting the condition in the order of arrival
+     */
+    public List<ReceivedMessage> filter(Predicate<ReceivedMessage> condition) {
+        List<ReceivedMessage> messages = new ArrayList<>();
+        forEach(message -> {
+            if (condition.test(message)) {
+                messages.add(message);
+            }
+        });
+        return messages;
+    }
+
+    /**
+     * Reads only the slots of the returned messages.
+     *
+     * @param count maximum number of returned messages
+     * @return last received messages in the order of arrival
+     */
+    public List<ReceivedMessage> last(int count) {
+        List<ReceivedMessage> messages = new ArrayList<>(Math.min(count, getCapacity()));
+        long end = nextSequence.get();
+        for (long sequence = end - 1; sequence >= oldestSequence(end) && messages.size() < count; sequence--) {
+            ReceivedMessage message = slots.get(slotOf(sequence));
+            if (message != null && message.getSequence() == sequence) {
+                messages.add(message);
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * @param consumer consumer of the kept messages, called in the order of arrival
+     */
+    public void forEach(Consumer<ReceivedMessage> consumer) {
+        long end = nextSequence.get();
+        for (long sequence = oldestSequence(end); sequence < end; sequence++) {
+            ReceivedMessage message = slots.get(slotOf(sequence));
+            if (message != null && message.getSequence() == sequence) {
+                consumer.accept(message);
+            }
+        }
+    }
+
+    /**
+     * Forgets all the messages received so far.
+     */
+    public void clear() {
+        firstSequence = nextSequence.get();
+    }
+
+    private long oldestSequence(long end) {
+        return Math.max(firstSequence, end - getCapacity());
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -0,0 +1,223 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.AwsIotMqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of warm, already connected MQTT transports which can be shared by many simulators and test cases. Simulators lease
+ * a connection when they start and return it when they stop, so short scenarios don't pay for TLS handshake each time.
+ */
+public class MqttConnectionPool implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MqttConnectionPool.class);
+    private static final Duration DEFAULT_LEASE_TIMEOUT = Duration.ofSeconds(30);
+    private final MqttTransportFactory transportFactory;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Deque<MqttTransport> idleConnections = new ConcurrentLinkedDeque<>();
+    private final Set<MqttTransport> leasedConnections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Creates empty pool. Connections are established on demand or with {@link #warmUp(int)}.
+     *
+     * @param clientEndpoint of IoT service to which connections will be established
+     * @param awsAccessKeyId value of the AWS Access Key Id
+     * @param awsSecretAccessKey value of the AWS Secret Access Key
+     * @param maxSize maximum number of connections kept by the pool
+     */
+    public MqttConnectionPool(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey, int maxSize) {
+        this(AwsIotMqttTransport.factory(clientEndpoint, awsAccessKeyId, awsSecretAccessKey), maxSize);
+    }
+
+    /**
+     * Creates empty pool of connections created by the given factory, e.g. connections to embedded MQTT broker.
+     *
+     * @param transportFactory factory of the pooled connections
+     * @param maxSize maximum number of connections kept by the pool
+     */
+    public MqttConnectionPool(MqttTransportFactory transportFactory, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Connection pool size has to be positive.");
+        }
+        this.transportFactory = transportFactory;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Establishes connections in advance so they are ready when simulators start.
+     *
+     * @param connectionsCount number of connections which should be idle in the pool
+     */
+    public void warmUp(int connectionsCount) {
+        List<MqttTransport> warmedUp = new ArrayList<>();
+        try {
+            int toBeLeased = Math.min(connectionsCount, permits.availablePermits());
+            for (int i = 0; i < toBeLeased; i++) {
+                warmedUp.add(lease(Duration.ZERO));
+            }
+        } finally {
+            warmedUp.forEach(this::release);
+        }
+    }
+
+    /**
+     * Leases connected MQTT transport waiting at most 30 seconds when all the connections are in use.
+     *
+     * @return connected MQTT transport
+     */
+    public MqttTransport lease() {
+        return lease(DEFAULT_LEASE_TIMEOUT);
+    }
+
+    /**
+     * Leases connected MQTT transport. Idle connection is reused when it is still healthy, otherwise new one is
+     * established.
+     *
+     * @param timeout maximum time of waiting when all the connections are in use
+     * @return connected MQTT transport
+     */
+    public MqttTransport lease(Duration timeout) {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed.");
+        }
+        acquirePermit(timeout);
+        try {
+            MqttTransport connection = pollHealthyConnection();
+            if (connection == null) {
+                connection = connect();
+            }
+            leasedConnections.add(connection);
+            return connection;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns leased connection to the pool. All subscriptions made on the connection are cancelled.
+     *
+     * @param connection previously leased MQTT transport
+     */
+    public void release(MqttTransport connection) {
+        if (!leasedConnections.remove(connection)) {
+            throw new IllegalArgumentException("Connection " + connection.getClientId() + " is not leased from the pool.");
+        }
+        try {
+            unsubscribeAll(connection);
+            if (!closed && isHealthy(connection)) {
+                idleConnections.push(connection);
+            } else {
+                disconnect(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Disconnects idle connections which are no longer connected.
+     *
+     * @return number of evicted connections
+     */
+    public int evictUnhealthy() {
+        int evicted = 0;
+        for (MqttTransport connection : idleConnections) {
+            if (!isHealthy(connection) && idleConnections.remove(connection)) {
+                disconnect(connection);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getLeasedCount() {
+        return leasedConnections.size();
+    }
+
+    /**
+     * Disconnects idle connections. Leased connections are disconnected when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        MqttTransport connection = idleConnections.poll();
+        while (connection != null) {
+            disconnect(connection);
+            connection = idleConnections.poll();
+        }
+    }
+
+    private void acquirePermit(Duration timeout) {
+        try {
+            if (!permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("All " + maxSize + " connections of the pool are in use.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for connection from the pool.", e);
+        }
+    }
+
+    private MqttTransport pollHealthyConnection() {
+        MqttTransport connection = idleConnections.poll();
+        while (connection != null && !isHealthy(connection)) {
+            disconnect(connection);
+            connection = idleConnections.poll();
+        }
+        return connection;
+    }
+
+    private MqttTransport connect() {
+        MqttTransport connection = transportFactory.create();
+        connection.connect();
+        LOGGER.info("Pooled connection with client id {} established", connection.getClientId());
+        return connection;
+    }
+
+    private static boolean isHealthy(MqttTransport connection) {
+        return connection.isConnected();
+    }
+
+    private static void unsubscribeAll(MqttTransport connection) {
+        for (String topic : new ArrayList<>(connection.getSubscribedTopics())) {
+            try {
+                connection.unsubscribe(topic);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to unsubscribe topic {} of pooled connection {}", topic, connection.getClientId(), e);
+            }
+        }
+    }
+
+    private static void disconnect(MqttTransport connection) {
+        try {
+            if (isHealthy(connection)) {
+                connection.disconnect();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to disconnect pooled connection {}", connection.getClientId(), e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.metrics.Gauge;
+import com.testcraftsmanship.awsiotdevice.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded window of the publications which are in flight on one transport, shared by all the devices of the transport
+ * and never bigger than the in-flight limit of the transport. Publication doesn't wait for the broker nor for a free
+ * slot of the window: when the window is full it is queued and sent the moment a publication in flight finishes, so on
+ * high latency link many messages are sent in one round trip while slow broker still pushes back on the publishers
+ * without blocking their threads. The queue is bounded too, publication which doesn't fit in it fails right away instead
+ * of piling up in memory while the broker is slow.
+ */
+public final class PublicationWindow {
+    public static final int DEFAULT_MAX_QUEUED = 10_000;
+    private static final Gauge NOT_MEASURED = MetricsRegistry.noop().gauge(DeviceMetrics.PUBLICATIONS_QUEUED);
+
+    private final MqttTransport transport;
+    private final int size;
+    private final int maxQueued;
+    private final Semaphore slots;
+    private final Queue<Publication> queued = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final Object finished = new Object();
+
+    /**
+     * @param transport transport of the publications
+     * @param size maximum number of the publications in flight, limited to the in-flight limit of the transport
+     */
+    public PublicationWindow(MqttTransport transport, int size) {
+        this(transport, size, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param transport transport of the publications
+     * @param size maximum number of the publications in flight, limited to the in-flight limit of the transport
+     * @param maxQueued maximum number of the publications waiting for a free slot of the window
+     */
+    public PublicationWindow(MqttTransport transport, int size, int maxQueued) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Publication window needs at least one slot.");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("Queue of publication window can't have negative size.");
+        }
+        this.transport = transport;
+        this.size = Math.min(size, transport.getMaxInFlight());
+        this.maxQueued = maxQueued;
+        this.slots = new Semaphore(this.size);
+    }
+
+    MqttTransport getTransport() {
+        return transport;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    CompletableFuture<Void> publish(String topic, byte[] payload, MqttQos qos) {
+        return publish(topic, payload, qos, NOT_MEASURED);
+    }
+
+    /**
+     * Sends the publication right away when the window has a free slot and no publication is queued, otherwise queues
+     * it behind the earlier ones. Publication is rejected when the queue is full.
+     *
+     * @param queuedGauge gauge of the publisher which follows its publications waiting in the queue
+     * @return future completed when the message is published, or failed when it is not or it doesn't fit in the queue
+     */
+    CompletableFuture<Void> publish(String topic, byte[] payload, MqttQos qos, Gauge queuedGauge) {
+        if (queued.isEmpty() && slots.tryAcquire()) {
+            Publication publication = new Publication(topic, payload, qos, queuedGauge);
+            unfinished.incrementAndGet();
+            send(publication);
+            return publication.result;
+        }
+        if (queuedCount.incrementAndGet() > maxQueued) {
+            queuedCount.decrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("Publication to topic " + topic
+                    + " rejected, " + maxQueued + " publications are already queued on " + transport.getClientId() + "."));
+        }
+        Publication publication = new Publication(topic, payload, qos, queuedGauge);
+        unfinished.incrementAndGet();
+        queuedGauge.increment();
+        queued.add(publication);
+        dispatchQueued();
+        return publication.result;
+    }
+
+    /**
+     * @return number of the publications in flight
+     */
+    public int getInFlightCount() {
+        return size - slots.availablePermits();
+    }
+
+    /**
+     * @return number of the publications waiting for a free slot of the window
+     */
+    int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Waits until queued publications and publications in flight are finished, e.g. before the connection is closed.
+     *
+     * @param timeout maximum time of waiting
+     * @return true when all the publications have finished
+     */
+    public boolean drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (finished) {
+            long remaining = deadline - System.nanoTime();
+            while (unfinished.get() > 0 && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(finished, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            return unfinished.get() == 0;
+        }
+    }
+
+    /**
+     * Sends queued publications while the window has free slots. Only one thread dispatches at a time and the others
+     * just ask it for one more round, so publications finished synchronously by the transport don't nest the calls.
+     */
+    private void dispatchQueued() {
+        if (dispatchRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int requests = 1;
+        do {
+            while (!queued.isEmpty() && slots.tryAcquire()) {
+                Publication publication = queued.poll();
+                if (publication == null) {
+                    slots.release();
+                    break;
+                }
+                queuedCount.decrementAndGet();
+                publication.queuedGauge.decrement();
+                send(publication);
+            }
+            requests = dispatchRequests.addAndGet(-requests);
+        } while (requests != 0);
+    }
+
+    private void send(Publication publication) {
+        CompletableFuture<Void> sent;
+        try {
+            sent = transport.publishAsync(publication.topic, publication.payload, publication.qos);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((result, failure) -> {
+            slots.release();
+            dispatchQueued();
+            finish();
+            if (failure == null) {
+                publication.result.complete(null);
+            } else {
+                publication.result.completeExceptionally(failure);
+            }
+        });
+    }
+
+    private void finish() {
+        if (unfinished.decrementAndGet() == 0) {
+            synchronized (finished) {
+                finished.notifyAll();
+            }
+        }
+    }
+
+    private static final class Publication {
+        private final String topic;
+        private final byte[] payload;
+        private final MqttQos qos;
+        private final Gauge queuedGauge;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Publication(String topic, byte[] payload, MqttQos qos, Gauge queuedGauge) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.queuedGauge = queuedGauge;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message recorded in {@link MessageJournal}. Payload is kept as received bytes and decoded only when it is read.
+ */
+@Getter
+public final class ReceivedMessage {
+    private final long sequence;
+    private final String topic;
+    @Getter(lombok.AccessLevel.NONE)
+    private final byte[] payload;
+    private final long receivedNanos;
+    private final DeviceRule matchedRule;
+
+    ReceivedMessage(long sequence, String topic, byte[] payload, long receivedNanos, DeviceRule matchedRule) {
+        this.sequence = sequence;
+        this.topic = topic;
+        this.payload = payload;
+        this.receivedNanos = receivedNanos;
+        this.matchedRule = matchedRule;
+    }
+
+    /**
+     * @return payload decoded as UTF-8 text, null when journal doesn't keep payloads
+     */
+    public String getPayload() {
+        return payload == null ? null : new String(payload, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true when message matched one of the rules of the device
+     */
+    public boolean isMatched() {
+        return matchedRule != null;
+    }
+}
@@ -0,0 +1,211 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.TopicTrie;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import com.testcraftsmanship.awsiotdevice.parser.MessageMatcher;
+import com.testcraftsmanship.awsiotdevice.parser.PayloadMappingException;
+import com.testcraftsmanship.awsiotdevice.parser.PublicationTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compiled rules of the device indexed by their topic conditions in {@link TopicTrie}, so topic conditions can contain
+ * + and # wildcards. Message is evaluated only against the rules which topic condition matches its topic and then
+ * against the rules accepting any topic, in the order the rules were defined. First matching rule wins. Each rule
+ * streams over the raw payload only until its first mismatch, and payload which is not a json object is not evaluated
+ * by the following rules.
+ */
+final class ResponseRules {
+    static final String STATE_PREFIX = "state.";
+    private static final Comparator<CompiledRule> DEFINITION_ORDER = Comparator.comparingInt(rule -> rule.order);
+    private final TopicTrie<CompiledRule> rulesByTopic;
+    private final List<CompiledRule> anyTopicRules;
+
+    private ResponseRules(TopicTrie<CompiledRule> rulesByTopic, List<CompiledRule> anyTopicRules) {
+        this.rulesByTopic = rulesByTopic;
+        this.anyTopicRules = anyTopicRules;
+    }
+
+    static ResponseRules compile(List<DeviceRule> rules, Duration defaultDelay, MqttQos defaultQos) {
+        TopicTrie<CompiledRule> rulesByTopic = new TopicTrie<>();
+        List<CompiledRule> anyTopicRules = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            DeviceRule rule = rules.get(i);
+            if (!rule.hasConditions()) {
+                continue;
+            }
+            CompiledRule compiledRule = new CompiledRule(rule, i, defaultDelay, defaultQos);
+            if (rule.getTopicCondition() == null) {
+                anyTopicRules.add(compiledRule);
+            } else {
+                rulesByTopic.add(rule.getTopicCondition(), compiledRule);
+            }
+        }
+        return new ResponseRules(rulesByTopic, anyTopicRules);
+    }
+
+    /**
+     * @return first rule matching the message together with values of its mask params, empty when there is none
+     * @throws PayloadMappingException when no rule matches and some of them couldn't be evaluated as message is not
+     *                                 a json object
+     */
+    Optional<RuleMatch> match(String topic, byte[] payload) throws PayloadMappingException {
+        EvaluatedMessage message = new EvaluatedMessage(payload);
+        Optional<RuleMatch> match = match(rulesOfTopic(topic), message);
+        if (!match.isPresent()) {
+            match = match(anyTopicRules, message);
+        }
+        if (!match.isPresent() && message.mappingFailure != null) {
+            throw message.mappingFailure;
+        }
+        return match;
+    }
+
+    private List<CompiledRule> rulesOfTopic(String topic) {
+        List<CompiledRule> rules = new ArrayList<>();
+        rulesByTopic.forEachMatch(topic, rules::add);
+        if (rules.size() > 1) {
+            rules.sort(DEFINITION_ORDER);
+        }
+        return rules;
+    }
+
+    private static Optional<RuleMatch> match(List<CompiledRule> rules, EvaluatedMessage message) {
+        for (CompiledRule rule : rules) {
+            if (rule.matcher == null) {
+                return Optional.of(new RuleMatch(rule, Collections.emptyMap()));
+            }
+            Optional<Map<String, JsonValue>> params = message.match(rule.matcher);
+            if (params.isPresent()) {
+                return Optional.of(new RuleMatch(rule, params.get()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    static final class CompiledRule {
+        private final int order;
+        private final DeviceRule deviceRule;
+        private final MessageMatcher matcher;
+        private final String publicationTopic;
+        private final PublicationTemplate publicationTemplate;
+        private final long delayMillis;
+        private final MqttQos publicationQos;
+        private final List<StateUpdate> stateUpdates;
+        private final List<String> referencedState = new ArrayList<>();
+
+        private CompiledRule(DeviceRule rule, int order, Duration defaultDelay, MqttQos defaultQos) {
+            this.order = order;
+            this.deviceRule = rule;
+            this.matcher = rule.getMessageCondition() == null ? null : MessageMatcher.compile(rule.getMessageCondition(), true);
+            this.publicationTopic = rule.getPublicationTopic();
+            this.publicationTemplate = rule.isResponding() ? PublicationTemplate.compile(rule.getPublicationMessage()) : null;
+            this.delayMillis = (rule.getResponseDelay() == null ? defaultDelay : rule.getResponseDelay()).toMillis();
+            this.publicationQos = rule.getPublicationQos() == null ? defaultQos : rule.getPublicationQos();
+            this.stateUpdates = rule.getStateUpdates();
+            if (publicationTemplate != null) {
+                for (String placeholder : publicationTemplate.getPlaceholderNames()) {
+                    if (placeholder.startsWith(STATE_PREFIX)) {
+                        referencedState.add(placeholder.substring(STATE_PREFIX.length()));
+                    }
+                }
+            }
+        }
+
+        DeviceRule getDeviceRule() {
+            return deviceRule;
+        }
+
+        boolean isResponding() {
+            return publicationTemplate != null;
+        }
+
+        String getPublicationTopic() {
+            return publicationTopic;
+        }
+
+        long getDelayMillis() {
+            return delayMillis;
+        }
+
+        MqttQos getPublicationQos() {
+            return publicationQos;
+        }
+
+        /**
+         * Applies the state updates of the rule and adds the state values referenced by the response to the params,
+         * taking the updated values as they were set by this message, not by the concurrent ones.
+         *
+         * @return params of the response
+         */
+        Map<String, JsonValue> updateState(DeviceState state, Map<String, JsonValue> params) {
+            if (stateUpdates.isEmpty() && referencedState.isEmpty()) {
+                return params;
+            }
+            Map<String, JsonValue> values = new HashMap<>(params);
+            for (StateUpdate update : stateUpdates) {
+                JsonValue value = update.apply(state, params);
+                if (value != null) {
+                    values.put(STATE_PREFIX + update.getName(), value);
+                }
+            }
+            for (String name : referencedState) {
+                if (!values.containsKey(STATE_PREFIX + name)) {
+                    state.get(name).ifPresent(value -> values.put(STATE_PREFIX + name, value));
+                }
+            }
+            return values;
+        }
+
+        String render(Map<String, JsonValue> params) {
+            return publicationTemplate.render(params);
+        }
+    }
+
+    static final class RuleMatch {
+        private final CompiledRule rule;
+        private final Map<String, JsonValue> params;
+
+        private RuleMatch(CompiledRule rule, Map<String, JsonValue> params) {
+            this.rule = rule;
+            this.params = params;
+        }
+
+        CompiledRule getRule() {
+            return rule;
+        }
+
+        Map<String, JsonValue> getParams() {
+            return params;
+        }
+    }
+
+    private static final class EvaluatedMessage {
+        private final byte[] payload;
+        private PayloadMappingException mappingFailure;
+
+        private EvaluatedMessage(byte[] payload) {
+            this.payload = payload;
+        }
+
+        private Optional<Map<String, JsonValue>> match(MessageMatcher matcher) {
+            if (mappingFailure != null) {
+                return Optional.empty();
+            }
+            try {
+                return matcher.matchPayload(payload);
+            } catch (PayloadMappingException e) {
+                mappingFailure = e;
+                return Optional.empty();
+            }
+        }
+    }
+}
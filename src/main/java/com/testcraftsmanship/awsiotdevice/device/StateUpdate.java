@@ -0,0 +1,89 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Change of the {@link DeviceState} made by the rule when it matches the message, before its response is rendered.
+ */
+public final class StateUpdate {
+    private static final Pattern PARAM_PATTERN = Pattern.compile("^\\{([^\\s{}:,'\"]+)\\}$");
+    private final String name;
+    private final String param;
+    private final JsonValue value;
+    private final long delta;
+
+    private StateUpdate(String name, String param, JsonValue value, long delta) {
+        this.name = name;
+        this.param = param;
+        this.value = value;
+        this.delta = delta;
+    }
+
+    /**
+     * @param name  name of the state value
+     * @param value single json value, e.g. 'eco', 21 or {'fan': 2}, or {param} of the subscribed message mask
+     * @return update setting the value
+     * @throws IllegalArgumentException when the value is not a single json value
+     */
+    public static StateUpdate set(String name, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value of device state " + name + " can't be null.");
+        }
+        Matcher matcher = PARAM_PATTERN.matcher(value.trim());
+        if (matcher.find()) {
+            return new StateUpdate(name, matcher.group(1), null, 0);
+        }
+        return new StateUpdate(name, null, parseValue(name, value), 0);
+    }
+
+    /**
+     * @param name  name of the numeric state value
+     * @param delta added amount
+     * @return update incrementing the value
+     */
+    public static StateUpdate increment(String name, long delta) {
+        return new StateUpdate(name, null, null, delta);
+    }
+
+    private static JsonValue parseValue(String name, String value) {
+        JSONTokener tokener = new JSONTokener(value);
+        try {
+            Object parsed = tokener.nextValue();
+            if (tokener.nextClean() != 0) {
+                throw new IllegalArgumentException("Value " + value + " of device state " + name
+                        + " has to be a single json value.");
+            }
+            return JsonValue.of(parsed);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Value " + value + " of device state " + name + " is not a json value.", e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return new value of the state, null when the param is not present in the message
+     */
+    JsonValue apply(DeviceState state, Map<String, JsonValue> params) {
+        if (param != null) {
+            JsonValue paramValue = params.get(param);
+            if (paramValue != null) {
+                state.set(name, paramValue);
+            }
+            return paramValue;
+        }
+        if (value != null) {
+            state.set(name, value);
+            return value;
+        }
+        return state.increment(name, delta);
+    }
+}
@@ -0,0 +1,167 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
+import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotMqttClient;
+import com.amazonaws.services.iot.client.AWSIotQos;
+import com.amazonaws.services.iot.client.AWSIotTopic;
+import com.testcraftsmanship.awsiotdevice.aws.AwsException;
+import com.testcraftsmanship.awsiotdevice.utils.StringOperations;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport which connects to AWS IoT with AWS IoT Device SDK.
+ */
+public class AwsIotMqttTransport implements MqttTransport {
+    /**
+     * AWS IoT Device SDK connects its Paho client with the default limit of the publications in flight.
+     */
+    public static final int MAX_IN_FLIGHT = 10;
+    private static final long PUBLISH_TIMEOUT_MILLIS = 30_000;
+    private final AWSIotMqttClient client;
+
+    public AwsIotMqttTransport(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey) {
+        this(new AWSIotMqttClient(clientEndpoint, StringOperations.generateAwsClientId(),
+                awsAccessKeyId, awsSecretAccessKey));
+    }
+
+    public AwsIotMqttTransport(AWSIotMqttClient client) {
+        this.client = client;
+    }
+
+    /**
+     * @param clientEndpoint of IoT service to which transports will be connecting to
+     * @param awsAccessKeyId value of the AWS Access Key Id
+     * @param awsSecretAccessKey value of the AWS Secret Access Key
+     * @return factory of the AWS IoT transports
+     */
+    public static MqttTransportFactory factory(String clientEndpoint, String awsAccessKeyId, String awsSecretAccessKey) {
+        return () -> new AwsIotMqttTransport(clientEndpoint, awsAccessKeyId, awsSecretAccessKey);
+    }
+
+    @Override
+    public String getClientId() {
+        return client.getClientId();
+    }
+
+    @Override
+    public void connect() {
+        try {
+            client.connect();
+        } catch (AWSIotException e) {
+            throw new AwsException("Unable to connect client " + client.getClientId(), e);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        try {
+            client.disconnect();
+        } catch (AWSIotException e) {
+            throw new AwsException("Unable to disconnect client " + client.getClientId(), e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.getConnectionStatus().equals(AWSIotConnectionStatus.CONNECTED);
+    }
+
+    @Override
+    public void subscribe(String topicFilter, MqttMessageHandler handler) {
+        try {
+            client.subscribe(new TopicHandler(topicFilter, handler));
+        } catch (AWSIotException e) {
+            throw new AwsException("Unable to subscribe topic " + topicFilter, e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+        try {
+            client.unsubscribe(topicFilter);
+        } catch (AWSIotException e) {
+            throw new AwsException("Unable to unsubscribe topic " + topicFilter, e);
+        }
+    }
+
+    @Override
+    public Set<String> getSubscribedTopics() {
+        return client.getSubscriptions().keySet();
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, MqttQos qos) {
+        try {
+            client.publish(topic, toAwsQos(qos), payload);
+        } catch (AWSIotException e) {
+            throw new AwsException("Unable to publish message to topic: " + topic, e);
+        }
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return MAX_IN_FLIGHT;
+    }
+
+    /**
+     * Hands the message over to the client which reports result of the publication with callbacks of the message.
+     */
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, byte[] payload, MqttQos qos) {
+        CompletableFuture<Void> publication = new CompletableFuture<>();
+        try {
+            client.publish(new PublicationCallback(topic, toAwsQos(qos), payload, publication), PUBLISH_TIMEOUT_MILLIS);
+        } catch (AWSIotException e) {
+            publication.completeExceptionally(new AwsException("Unable to publish message to topic: " + topic, e));
+        }
+        return publication;
+    }
+
+    private static AWSIotQos toAwsQos(MqttQos qos) {
+        return qos == MqttQos.AT_LEAST_ONCE ? AWSIotQos.QOS1 : AWSIotQos.QOS0;
+    }
+
+    private static final class PublicationCallback extends AWSIotMessage {
+        private final CompletableFuture<Void> publication;
+
+        private PublicationCallback(String topic, AWSIotQos qos, byte[] payload, CompletableFuture<Void> publication) {
+            super(topic, qos, payload);
+            this.publication = publication;
+        }
+
+        @Override
+        public void onSuccess() {
+            publication.complete(null);
+        }
+
+        @Override
+        public void onFailure() {
+            publication.completeExceptionally(new AwsException("Unable to publish message to topic: " + getTopic()
+                    + ", error " + getErrorCode() + ": " + getErrorMessage(), null));
+        }
+
+        @Override
+        public void onTimeout() {
+            publication.completeExceptionally(new AwsException("Publication of message to topic " + getTopic()
+                    + " timed out", null));
+        }
+    }
+
+    private static final class TopicHandler extends AWSIotTopic {
+        private final MqttMessageHandler handler;
+
+        private TopicHandler(String topicFilter, MqttMessageHandler handler) {
+            super(topicFilter);
+            this.handler = handler;
+        }
+
+        @Override
+        public void onMessage(AWSIotMessage message) {
+            handler.onMessage(message.getTopic(), message.getPayload());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * MQTT broker running inside the JVM, so simulators and tested application can talk without network round-trips to
+ * AWS. Requires optional io.moquette:moquette-broker dependency on the classpath.
+ */
+public class EmbeddedMqttBroker implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedMqttBroker.class);
+    private static final String HOST = "localhost";
+    private final int port;
+    private Server server;
+
+    /**
+     * @param port TCP port the broker listens on
+     */
+    public EmbeddedMqttBroker(int port) {
+        this.port = port;
+    }
+
+    public EmbeddedMqttBroker() {
+        this(BrokerConstants.PORT);
+    }
+
+    public synchronized void start() {
+        if (server != null) {
+            LOGGER.warn("Embedded MQTT broker is already running. Staring is redundant.");
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, HOST);
+        properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, String.valueOf(port));
+        properties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND);
+        properties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, Boolean.TRUE.toString());
+        Server embeddedServer = new Server();
+        try {
+            embeddedServer.startServer(new MemoryConfig(properties));
+        } catch (IOException e) {
+            throw new MqttTransportException("Unable to start embedded MQTT broker on port " + port, e);
+        }
+        server = embeddedServer;
+        LOGGER.info("Embedded MQTT broker started on {}", getServerUri());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stopServer();
+            server = null;
+            LOGGER.info("Embedded MQTT broker stopped");
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public String getServerUri() {
+        return "tcp://" + HOST + ":" + port;
+    }
+
+    /**
+     * @return factory of the transports connecting to this broker
+     */
+    public MqttTransportFactory transportFactory() {
+        return PahoMqttTransport.factory(getServerUri());
+    }
+}
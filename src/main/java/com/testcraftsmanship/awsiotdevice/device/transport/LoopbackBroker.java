@@ -0,0 +1,59 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MQTT broker living in the memory of the JVM. Transports created by {@link #transportFactory()} exchange messages
+ * without sockets, threads nor copying of the payloads, so simulators and tested client running in the same JVM can
+ * exchange millions of messages per second. Topic filters support + and # wildcards, indexed by {@link TopicTrie}.
+ * Payloads are passed by reference and must not be modified after publication.
+ */
+public class LoopbackBroker {
+    private final Map<String, Set<LoopbackTransport>> exactSubscriptions = new ConcurrentHashMap<>();
+    private final TopicTrie<LoopbackTransport> wildcardSubscriptions = new TopicTrie<>();
+
+    /**
+     * @return factory of the transports connected through this broker
+     */
+    public MqttTransportFactory transportFactory() {
+        return () -> new LoopbackTransport(this);
+    }
+
+    void subscribe(String topicFilter, LoopbackTransport subscriber) {
+        if (TopicTrie.isWildcard(topicFilter)) {
+            wildcardSubscriptions.add(topicFilter, subscriber);
+        } else {
+            exactSubscriptions.computeIfAbsent(topicFilter, filter -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+    }
+
+    void unsubscribe(String topicFilter, LoopbackTransport subscriber) {
+        if (TopicTrie.isWildcard(topicFilter)) {
+            wildcardSubscriptions.remove(topicFilter, subscriber);
+        } else {
+            exactSubscriptions.computeIfPresent(topicFilter, (filter, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    void publish(String topic, byte[] payload) {
+        Set<LoopbackTransport> exact = exactSubscriptions.get(topic);
+        if (wildcardSubscriptions.isEmpty()) {
+            if (exact != null) {
+                exact.forEach(subscriber -> subscriber.deliver(topic, payload));
+            }
+            return;
+        }
+        Set<LoopbackTransport> subscribers = new LinkedHashSet<>();
+        if (exact != null) {
+            subscribers.addAll(exact);
+        }
+        wildcardSubscriptions.forEachMatch(topic, subscribers::add);
+        subscribers.forEach(subscriber -> subscriber.deliver(topic, payload));
+    }
+}
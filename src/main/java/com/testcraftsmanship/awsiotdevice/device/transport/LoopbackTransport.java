@@ -0,0 +1,134 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.testcraftsmanship.awsiotdevice.utils.StringOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport connected to {@link LoopbackBroker}. Delivered messages are put into lock-free inbox and drained by the
+ * thread which published them. Only one thread drains the inbox at a time, so handlers of the transport receive
+ * messages one by one in the order of publication, and publishing from inside the handler doesn't recurse. Handlers are
+ * indexed like subscriptions of the broker, so delivery doesn't depend on the number of devices sharing the transport.
+ */
+public class LoopbackTransport implements MqttTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackTransport.class);
+    private final LoopbackBroker broker;
+    private final String clientId = StringOperations.generateAwsClientId();
+    private final Map<String, MqttMessageHandler> handlers = new ConcurrentHashMap<>();
+    private final TopicTrie<String> wildcardFilters = new TopicTrie<>();
+    private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+    private volatile boolean connected;
+
+    LoopbackTransport(LoopbackBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public String getClientId() {
+        return clientId;
+    }
+
+    @Override
+    public void connect() {
+        connected = true;
+    }
+
+    @Override
+    public void disconnect() {
+        connected = false;
+        handlers.keySet().forEach(this::unsubscribe);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void subscribe(String topicFilter, MqttMessageHandler handler) {
+        assertConnected();
+        handlers.put(topicFilter, handler);
+        if (TopicTrie.isWildcard(topicFilter)) {
+            wildcardFilters.add(topicFilter, topicFilter);
+        }
+        broker.subscribe(topicFilter, this);
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+        handlers.remove(topicFilter);
+        if (TopicTrie.isWildcard(topicFilter)) {
+            wildcardFilters.remove(topicFilter, topicFilter);
+        }
+        broker.unsubscribe(topicFilter, this);
+    }
+
+    @Override
+    public Set<String> getSubscribedTopics() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, MqttQos qos) {
+        assertConnected();
+        broker.publish(topic, payload);
+    }
+
+    void deliver(String topic, byte[] payload) {
+        inbox.add(new Message(topic, payload));
+        if (pendingMessages.getAndIncrement() == 0) {
+            drainInbox();
+        }
+    }
+
+    private void drainInbox() {
+        do {
+            Message message = inbox.poll();
+            dispatch(message.topic, message.payload);
+        } while (pendingMessages.decrementAndGet() > 0);
+    }
+
+    private void dispatch(String topic, byte[] payload) {
+        dispatch(topic, topic, payload);
+        if (!wildcardFilters.isEmpty()) {
+            wildcardFilters.forEachMatch(topic, topicFilter -> dispatch(topicFilter, topic, payload));
+        }
+    }
+
+    private void dispatch(String topicFilter, String topic, byte[] payload) {
+        MqttMessageHandler handler = handlers.get(topicFilter);
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.onMessage(topic, payload);
+        } catch (RuntimeException e) {
+            LOGGER.error("Handler of topic {} of client {} failed", topicFilter, clientId, e);
+        }
+    }
+
+    private void assertConnected() {
+        if (!connected) {
+            throw new IllegalStateException("Loopback client " + clientId + " is not connected.");
+        }
+    }
+
+    private static final class Message {
+        private final String topic;
+        private final byte[] payload;
+
+        private Message(String topic, byte[] payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+}
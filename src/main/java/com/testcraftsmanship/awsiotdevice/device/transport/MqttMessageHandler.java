@@ -0,0 +1,6 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+@FunctionalInterface
+public interface MqttMessageHandler {
+    void onMessage(String topic, byte[] payload);
+}
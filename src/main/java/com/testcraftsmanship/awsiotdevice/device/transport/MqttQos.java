@@ -0,0 +1,15 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+/**
+ * Quality of service of the publication.
+ */
+public enum MqttQos {
+    /**
+     * Fire and forget, publish returns when message is handed over to the client.
+     */
+    AT_MOST_ONCE,
+    /**
+     * Publish returns when broker acknowledges the message.
+     */
+    AT_LEAST_ONCE
+}
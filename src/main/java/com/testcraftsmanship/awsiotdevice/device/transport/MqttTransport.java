@@ -0,0 +1,72 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connection to MQTT broker used by simulated devices. Implementations report failures with unchecked exceptions,
+ * {@link com.testcraftsmanship.awsiotdevice.aws.AwsException} for AWS IoT and {@link MqttTransportException} for others.
+ */
+public interface MqttTransport {
+    String getClientId();
+
+    void connect();
+
+    void disconnect();
+
+    boolean isConnected();
+
+    /**
+     * Subscribes the topic filter. Messages are passed to the handler on the thread of the transport, so handler
+     * should return quickly.
+     *
+     * @param topicFilter MQTT topic filter
+     * @param handler     handler of the received messages
+     */
+    void subscribe(String topicFilter, MqttMessageHandler handler);
+
+    void unsubscribe(String topicFilter);
+
+    /**
+     * @return topic filters subscribed on this connection
+     */
+    Set<String> getSubscribedTopics();
+
+    default void publish(String topic, byte[] payload) {
+        publish(topic, payload, MqttQos.AT_MOST_ONCE);
+    }
+
+    /**
+     * Publishes the message blocking until it is acknowledged by the broker when QoS 1 is used.
+     *
+     * @param topic   topic of the message
+     * @param payload payload of the message
+     * @param qos     quality of service
+     */
+    void publish(String topic, byte[] payload, MqttQos qos);
+
+    /**
+     * @return maximum number of the publications which the client keeps in flight on the connection at the same time
+     */
+    default int getMaxInFlight() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Publishes the message without waiting for the broker, so many publications can be in flight on one connection.
+     * Transports without asynchronous client publish synchronously and return completed future.
+     *
+     * @param topic   topic of the message
+     * @param payload payload of the message
+     * @param qos     quality of service
+     * @return future completed when the message is sent, or acknowledged by the broker when QoS 1 is used
+     */
+    default CompletableFuture<Void> publishAsync(String topic, byte[] payload, MqttQos qos) {
+        try {
+            publish(topic, payload, qos);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+/**
+ * Thrown when something wrong occurs during communication with MQTT broker.
+ */
+public class MqttTransportException extends RuntimeException {
+
+    /**
+     * Creates MQTT transport related exception.
+     *
+     * @param message message
+     * @param cause   cause
+     */
+    public MqttTransportException(String message, Exception cause) {
+        super(message, cause);
+    }
+}
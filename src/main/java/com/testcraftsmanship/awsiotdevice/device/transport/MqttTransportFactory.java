@@ -0,0 +1,9 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+/**
+ * Creates new, not connected transport with unique client id on every call.
+ */
+@FunctionalInterface
+public interface MqttTransportFactory {
+    MqttTransport create();
+}
@@ -0,0 +1,142 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.testcraftsmanship.awsiotdevice.utils.StringOperations;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport which connects to plain MQTT broker, e.g. {@link EmbeddedMqttBroker} or local mosquitto. Publications
+ * are pipelined by asynchronous client which keeps at most {@link #MAX_IN_FLIGHT} of them in flight.
+ */
+public class PahoMqttTransport implements MqttTransport {
+    public static final int MAX_IN_FLIGHT = 1000;
+    private static final int AT_MOST_ONCE = 0;
+    private final MqttAsyncClient client;
+    private final Set<String> subscribedTopics = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param serverUri URI of the broker e.g. tcp://localhost:1883
+     */
+    public PahoMqttTransport(String serverUri) {
+        try {
+            this.client = new MqttAsyncClient(serverUri, StringOperations.generateAwsClientId(), new MemoryPersistence());
+        } catch (MqttException e) {
+            throw new MqttTransportException("Unable to create MQTT client for " + serverUri, e);
+        }
+    }
+
+    /**
+     * @param serverUri URI of the broker e.g. tcp://localhost:1883
+     * @return factory of the plain MQTT transports
+     */
+    public static MqttTransportFactory factory(String serverUri) {
+        return () -> new PahoMqttTransport(serverUri);
+    }
+
+    @Override
+    public String getClientId() {
+        return client.getClientId();
+    }
+
+    @Override
+    public void connect() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(MAX_IN_FLIGHT);
+        try {
+            client.connect(options).waitForCompletion();
+        } catch (MqttException e) {
+            throw new MqttTransportException("Unable to connect client " + client.getClientId(), e);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        try {
+            client.disconnect().waitForCompletion();
+            subscribedTopics.clear();
+        } catch (MqttException e) {
+            throw new MqttTransportException("Unable to disconnect client " + client.getClientId(), e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void subscribe(String topicFilter, MqttMessageHandler handler) {
+        try {
+            client.subscribe(topicFilter, AT_MOST_ONCE, (topic, message) -> handler.onMessage(topic, message.getPayload()))
+                    .waitForCompletion();
+            subscribedTopics.add(topicFilter);
+        } catch (MqttException e) {
+            throw new MqttTransportException("Unable to subscribe topic " + topicFilter, e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+        try {
+            client.unsubscribe(topicFilter).waitForCompletion();
+            subscribedTopics.remove(topicFilter);
+        } catch (MqttException e) {
+            throw new MqttTransportException("Unable to unsubscribe topic " + topicFilter, e);
+        }
+    }
+
+    @Override
+    public Set<String> getSubscribedTopics() {
+        return Collections.unmodifiableSet(subscribedTopics);
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, MqttQos qos) {
+        try {
+            client.publish(topic, payload, qos.ordinal(), false).waitForCompletion();
+        } catch (MqttException e) {
+            throw new MqttTransportException("Unable to publish message to topic: " + topic, e);
+        }
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return MAX_IN_FLIGHT;
+    }
+
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, byte[] payload, MqttQos qos) {
+        CompletableFuture<Void> publication = new CompletableFuture<>();
+        try {
+            client.publish(topic, payload, qos.ordinal(), false, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    publication.complete(null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable failure) {
+                    publication.completeExceptionally(
+                            new MqttTransportException("Unable to publish message to topic: " + topic, toException(failure)));
+                }
+            });
+        } catch (MqttException e) {
+            publication.completeExceptionally(new MqttTransportException("Unable to publish message to topic: " + topic, e));
+        }
+        return publication;
+    }
+
+    private static Exception toException(Throwable failure) {
+        return failure instanceof Exception ? (Exception) failure : new IllegalStateException(failure);
+    }
+}
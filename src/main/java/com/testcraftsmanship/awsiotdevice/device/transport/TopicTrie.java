@@ -0,0 +1,168 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Values indexed by MQTT topic filters, one trie level per topic level. Finding values of all the filters matching
+ * the topic costs O(topic depth) whatever the number of filters is. Filters support + and # wildcards, which don't
+ * match topics starting with $ on the first level, e.g. reserved $aws topics. Values are looked up without locking,
+ * so trie can be modified while messages are being dispatched.
+ *
+ * @param <V> type of the indexed values
+ */
+public final class TopicTrie<V> {
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+    private static final char LEVEL_SEPARATOR = '/';
+    private static final char RESERVED_TOPIC_PREFIX = '$';
+    private final Node<V> root = new Node<>();
+
+    /**
+     * Adds value to the filter. Value already added to the filter is not added again.
+     *
+     * @param topicFilter MQTT topic filter
+     * @param value added value
+     */
+    public synchronized void add(String topicFilter, V value) {
+        Node<V> node = root;
+        int levelStart = 0;
+        while (true) {
+            int levelEnd = levelEnd(topicFilter, levelStart);
+            node = node.children.computeIfAbsent(topicFilter.substring(levelStart, levelEnd), level -> new Node<>());
+            if (levelEnd == topicFilter.length()) {
+                break;
+            }
+            levelStart = levelEnd + 1;
+        }
+        node.values.addIfAbsent(value);
+    }
+
+    /**
+     * Removes value from the filter. Levels left without values are removed.
+     *
+     * @param topicFilter MQTT topic filter
+     * @param value removed value
+     * @return true when value has been added to the filter before
+     */
+    public synchronized boolean remove(String topicFilter, V value) {
+        return remove(root, topicFilter, 0, value);
+    }
+
+    /**
+     * Passes values of all the filters matching the topic to the consumer. Value added to many matching filters is
+     * passed many times.
+     *
+     * @param topic topic of the message, without wildcards
+     * @param consumer consumer of the matching values
+     */
+    public void forEachMatch(String topic, Consumer<? super V> consumer) {
+        boolean wildcardsAllowed = topic.isEmpty() || topic.charAt(0) != RESERVED_TOPIC_PREFIX;
+        collect(root, topic, 0, wildcardsAllowed, consumer);
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    /**
+     * @param topicFilter MQTT topic filter
+     * @return true when filter contains + or # wildcard
+     */
+    public static boolean isWildcard(String topicFilter) {
+        return topicFilter.indexOf('+') >= 0 || topicFilter.indexOf('#') >= 0;
+    }
+
+    /**
+     * Matches topic with single MQTT topic filter level by level without splitting any of them. Multi-level wildcard
+     * matches the parent level as well, so a/# matches a.
+     *
+     * @param topicFilter MQTT topic filter
+     * @param topic topic of the message
+     * @return true when topic matches the filter
+     */
+    public static boolean matches(String topicFilter, String topic) {
+        if (!topic.isEmpty() && topic.charAt(0) == RESERVED_TOPIC_PREFIX && !topicFilter.isEmpty()
+                && (topicFilter.charAt(0) == '+' || topicFilter.charAt(0) == '#')) {
+            return false;
+        }
+        int filterIndex = 0;
+        int topicIndex = 0;
+        while (filterIndex < topicFilter.length()) {
+            char character = topicFilter.charAt(filterIndex);
+            if (character == '#') {
+                return true;
+            } else if (character == '+') {
+                while (topicIndex < topic.length() && topic.charAt(topicIndex) != LEVEL_SEPARATOR) {
+                    topicIndex++;
+                }
+                filterIndex++;
+            } else if (topicIndex < topic.length() && topic.charAt(topicIndex) == character) {
+                filterIndex++;
+                topicIndex++;
+            } else {
+                return topicIndex == topic.length() && topicFilter.startsWith("/#", filterIndex)
+                        && filterIndex + 2 == topicFilter.length();
+            }
+        }
+        return topicIndex == topic.length();
+    }
+
+    private void collect(Node<V> node, String topic, int levelStart, boolean wildcardsAllowed,
+                         Consumer<? super V> consumer) {
+        int levelEnd = levelEnd(topic, levelStart);
+        boolean lastLevel = levelEnd == topic.length();
+        if (wildcardsAllowed) {
+            Node<V> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+            if (multiLevel != null) {
+                multiLevel.values.forEach(consumer);
+            }
+        }
+        visit(node.children.get(topic.substring(levelStart, levelEnd)), topic, levelEnd, lastLevel, consumer);
+        if (wildcardsAllowed) {
+            visit(node.children.get(SINGLE_LEVEL_WILDCARD), topic, levelEnd, lastLevel, consumer);
+        }
+    }
+
+    private void visit(Node<V> node, String topic, int levelEnd, boolean lastLevel, Consumer<? super V> consumer) {
+        if (node == null) {
+            return;
+        }
+        if (lastLevel) {
+            node.values.forEach(consumer);
+            Node<V> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+            if (multiLevel != null) {
+                multiLevel.values.forEach(consumer);
+            }
+        } else {
+            collect(node, topic, levelEnd + 1, true, consumer);
+        }
+    }
+
+    private boolean remove(Node<V> node, String topicFilter, int levelStart, V value) {
+        int levelEnd = levelEnd(topicFilter, levelStart);
+        String level = topicFilter.substring(levelStart, levelEnd);
+        Node<V> child = node.children.get(level);
+        if (child == null) {
+            return false;
+        }
+        boolean removed = levelEnd == topicFilter.length() ? child.values.remove(value)
+                : remove(child, topicFilter, levelEnd + 1, value);
+        if (child.values.isEmpty() && child.children.isEmpty()) {
+            node.children.remove(level);
+        }
+        return removed;
+    }
+
+    private static int levelEnd(String topic, int levelStart) {
+        int separator = topic.indexOf(LEVEL_SEPARATOR, levelStart);
+        return separator < 0 ? topic.length() : separator;
+    }
+
+    private static final class Node<V> {
+        private final Map<String, Node<V>> children = new ConcurrentHashMap<>();
+        private final CopyOnWriteArrayList<V> values = new CopyOnWriteArrayList<>();
+    }
+}
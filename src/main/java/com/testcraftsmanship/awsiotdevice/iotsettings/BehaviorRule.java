@@ -0,0 +1,26 @@
+package com.testcraftsmanship.awsiotdevice.iotsettings;
+
+import com.testcraftsmanship.awsiotdevice.device.StateUpdate;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One when-then rule of the device behavior.
+ */
+@Getter
+@Setter(lombok.AccessLevel.PACKAGE)
+public class BehaviorRule {
+    private String subscribedMessageTopic;
+    private String subscribedMessagePayload;
+    private String publishedMessageTopic;
+    private String publishedMessagePayload;
+    private Duration responseDelay;
+    private MqttQos publicationQos;
+    private boolean thenDefined;
+    private final List<StateUpdate> stateUpdates = new ArrayList<>();
+}
@@ -0,0 +1,47 @@
+package com.testcraftsmanship.awsiotdevice.iotsettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Range of simulated device ids built from common prefix and consecutive numbers e.g. flat1, flat2, ..., flat100.
+ */
+public final class DeviceIdRange {
+    private final String prefix;
+    private final int first;
+    private final int last;
+
+    private DeviceIdRange(String prefix, int first, int last) {
+        if (last < first) {
+            throw new IllegalArgumentException("Last device number " + last + " is lower than the first one " + first);
+        }
+        this.prefix = prefix;
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Creates range of device ids.
+     *
+     * @param prefix common part of the device ids
+     * @param first  number of the first device (inclusive)
+     * @param last   number of the last device (inclusive)
+     * @return range of device ids
+     */
+    public static DeviceIdRange of(String prefix, int first, int last) {
+        return new DeviceIdRange(prefix, first, last);
+    }
+
+    public int size() {
+        return last - first + 1;
+    }
+
+    public List<String> getDeviceIds() {
+        List<String> deviceIds = new ArrayList<>(size());
+        for (int number = first; number <= last; number++) {
+            deviceIds.add(prefix + number);
+        }
+        return Collections.unmodifiableList(deviceIds);
+    }
+}
@@ -1,9 +1,51 @@
 package com.testcraftsmanship.awsiotdevice.iotsettings;
 
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+
+import java.time.Duration;
+
 public interface DeviceSpecification {
     DeviceSpecification subscribeTo(String topic);
 
     SubscriptionMessageSpecification when();
 
     DeviceSpecification withResponseDelay(int seconds);
+
+    DeviceSpecification withResponseDelay(Duration delay);
+
+    DeviceSpecification withSeparatePublisherConnection();
+
+    DeviceSpecification withPublicationQos(MqttQos qos);
+
+    /**
+     * Devices of a fleet sharing one connection share the window of the connection, and the window is never bigger than
+     * the in-flight limit of the transport.
+     *
+     * @param publications number of publications of the device which can wait for the broker at the same time
+     * @return specification of the device
+     */
+    DeviceSpecification withMaxInFlightPublications(int publications);
+
+    /**
+     * Device simulates AWS IoT Device Shadow service of the thing, so it can't be used with AWS IoT.
+     *
+     * @param thingName name of the thing which Device Shadow requests are answered by the device
+     * @return specification of the device
+     */
+    DeviceSpecification withShadow(String thingName);
+
+    /**
+     * Device reports the desired state of the classic shadow of the thing like the real device.
+     *
+     * @param thingName name of the thing which shadow is reported by the device
+     * @return specification of the device
+     */
+    DeviceSpecification withReportedShadow(String thingName);
+
+    /**
+     * @param name  name of the device state value
+     * @param value initial value of every device, e.g. 100 or "eco"
+     * @return specification of the device
+     */
+    DeviceSpecification withState(String name, Object value);
 }
@@ -1,45 +1,174 @@
 package com.testcraftsmanship.awsiotdevice.iotsettings;
 
+import com.testcraftsmanship.awsiotdevice.device.DeviceRule;
+import com.testcraftsmanship.awsiotdevice.device.DeviceState;
+import com.testcraftsmanship.awsiotdevice.device.IoTDevice;
+import com.testcraftsmanship.awsiotdevice.device.IoTDeviceData;
+import com.testcraftsmanship.awsiotdevice.device.StateUpdate;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.load.LoadProfile;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import com.testcraftsmanship.awsiotdevice.shadow.ShadowStore;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
 @Getter
 public class IoTDeviceBehavior implements DeviceSpecification, PublicationMessageSpecification, SubscriptionMessageSpecification {
     private static final Logger LOGGER = LoggerFactory.getLogger(IoTDeviceBehavior.class);
     private String deviceSubscriptionTopic;
-    private String publishedMessageTopic;
-    private String publishedMessagePayload;
-    private String subscribedMessageTopic;
-    private String subscribedMessagePayload;
-    private int responseDelayInSeconds;
+    @Getter(lombok.AccessLevel.NONE)
+    private final List<BehaviorRule> rules = new ArrayList<>();
+    @Getter(lombok.AccessLevel.NONE)
+    private BehaviorRule currentRule = newRule();
+    private Duration responseDelay = Duration.ZERO;
+    private boolean separatePublisherConnection;
+    private MqttQos publicationQos = MqttQos.AT_MOST_ONCE;
+    private int maxInFlightPublications = IoTDeviceData.DEFAULT_MAX_IN_FLIGHT_PUBLICATIONS;
+    private double publishRate;
+    private Duration rampUp = Duration.ZERO;
+    private Duration loadDuration;
+    private int publishConcurrency = 1;
+    private String shadowThingName;
+    private String reportedShadowThingName;
+    private final ShadowStore shadowStore = new ShadowStore();
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, JsonValue> initialState = new LinkedHashMap<>();
 
     public DeviceSpecification given() {
         return this;
     }
 
+    /**
+     * Starts conditions of the rule. When conditions are defined after then() new rule is started, so one device can
+     * react on many messages, e.g. on every command of its firmware.
+     *
+     * @return specification of the conditions
+     */
+    @Override
     public SubscriptionMessageSpecification when() {
+        if (currentRule.isThenDefined()) {
+            currentRule = newRule();
+        }
         return this;
     }
 
     public PublicationMessageSpecification then() {
+        currentRule.setThenDefined(true);
         return this;
     }
 
     public String getDeviceSubscriptionTopic() {
-        if (deviceSubscriptionTopic != null) {
-            return deviceSubscriptionTopic;
-        } else if (subscribedMessageTopic != null) {
-            return subscribedMessageTopic;
-        } else {
+        List<String> topics = getDeviceSubscriptionTopics();
+        if (topics.isEmpty()) {
             LOGGER.info("There is no subscription topic so device is run in publishing only mode.");
             return null;
         }
+        return topics.get(0);
+    }
+
+    /**
+     * @return topic defined with subscribeTo or distinct topics of all the rules when it is not defined
+     */
+    public List<String> getDeviceSubscriptionTopics() {
+        if (deviceSubscriptionTopic != null) {
+            return Collections.singletonList(deviceSubscriptionTopic);
+        }
+        Set<String> topics = new LinkedHashSet<>();
+        for (BehaviorRule rule : rules) {
+            if (rule.getSubscribedMessageTopic() != null) {
+                topics.add(rule.getSubscribedMessageTopic());
+            }
+        }
+        return new ArrayList<>(topics);
+    }
+
+    public List<BehaviorRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    public String getSubscribedMessageTopic() {
+        return rules.get(0).getSubscribedMessageTopic();
+    }
+
+    public String getSubscribedMessagePayload() {
+        return rules.get(0).getSubscribedMessagePayload();
+    }
+
+    public String getPublishedMessageTopic() {
+        return rules.get(0).getPublishedMessageTopic();
+    }
+
+    public String getPublishedMessagePayload() {
+        return rules.get(0).getPublishedMessagePayload();
     }
 
     @Override
     public DeviceSpecification withResponseDelay(int seconds) {
-        this.responseDelayInSeconds = seconds;
+        return withResponseDelay(Duration.ofSeconds(seconds));
+    }
+
+    @Override
+    public DeviceSpecification withResponseDelay(Duration delay) {
+        this.responseDelay = delay;
+        return this;
+    }
+
+    /**
+     * @return default response delay in whole seconds
+     * @deprecated use {@link #getResponseDelay()}, which keeps the fraction of the second
+     */
+    @Deprecated
+    public int getResponseDelayInSeconds() {
+        return (int) responseDelay.getSeconds();
+    }
+
+    @Override
+    public DeviceSpecification withSeparatePublisherConnection() {
+        this.separatePublisherConnection = true;
+        return this;
+    }
+
+    @Override
+    public DeviceSpecification withPublicationQos(MqttQos qos) {
+        this.publicationQos = qos;
+        return this;
+    }
+
+    @Override
+    public DeviceSpecification withMaxInFlightPublications(int publications) {
+        if (publications < 1) {
+            throw new IllegalArgumentException("At least one publication has to be allowed in flight.");
+        }
+        this.maxInFlightPublications = publications;
+        return this;
+    }
+
+    @Override
+    public DeviceSpecification withShadow(String thingName) {
+        this.shadowThingName = thingName;
+        return this;
+    }
+
+    @Override
+    public DeviceSpecification withReportedShadow(String thingName) {
+        this.reportedShadowThingName = thingName;
+        return this;
+    }
+
+    @Override
+    public DeviceSpecification withState(String name, Object value) {
+        initialState.put(name, JsonValue.of(value));
         return this;
     }
 
@@ -51,13 +180,37 @@ public class IoTDeviceBehavior implements DeviceSpecification, PublicationMessag
 
     @Override
     public PublicationMessageSpecification publishTo(String topic) {
-        this.publishedMessageTopic = topic;
+        currentRule.setPublishedMessageTopic(topic);
         return this;
     }
 
     @Override
     public PublicationMessageSpecification publishMessageBody(String body) {
-        this.publishedMessagePayload = body;
+        currentRule.setPublishedMessagePayload(body);
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification respondAfter(Duration delay) {
+        currentRule.setResponseDelay(delay);
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification publishWithQos(MqttQos qos) {
+        currentRule.setPublicationQos(qos);
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification setState(String name, String value) {
+        currentRule.getStateUpdates().add(StateUpdate.set(name, value));
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification incrementState(String name) {
+        currentRule.getStateUpdates().add(StateUpdate.increment(name, 1));
         return this;
     }
 
@@ -66,15 +219,49 @@ public class IoTDeviceBehavior implements DeviceSpecification, PublicationMessag
         return null;
     }
 
+    @Override
+    public PublicationMessageSpecification publishRate(double messagesPerSecond) {
+        this.publishRate = messagesPerSecond;
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification rampUp(Duration rampUpDuration) {
+        this.rampUp = rampUpDuration;
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification during(Duration duration) {
+        this.loadDuration = duration;
+        return this;
+    }
+
+    @Override
+    public PublicationMessageSpecification publishConcurrency(int threads) {
+        this.publishConcurrency = threads;
+        return this;
+    }
+
+    /**
+     * @return profile of the load defined with publishRate and during
+     */
+    public LoadProfile getLoadProfile() {
+        if (publishRate <= 0 || loadDuration == null) {
+            throw new IllegalStateException("Load needs publication rate and duration to be defined.");
+        }
+        return new LoadProfile(publishRate, rampUp, loadDuration, publishConcurrency);
+    }
+
     @Override
     public SubscriptionMessageSpecification messageTopic(String topic) {
-        this.subscribedMessageTopic = topic;
+        currentRule.setSubscribedMessageTopic(topic);
         return this;
     }
 
     @Override
     public SubscriptionMessageSpecification subscribeMessageBody(String body) {
-        this.subscribedMessagePayload = body;
+        currentRule.setSubscribedMessagePayload(body);
         return this;
     }
 
@@ -82,4 +269,62 @@ public class IoTDeviceBehavior implements DeviceSpecification, PublicationMessag
     public SubscriptionMessageSpecification triggered() {
         return this;
     }
+
+    /**
+     * Applies the rules to the device. First rule defines the message published on demand, the default response delay
+     * and QoS, next ones are added as additional rules of the device.
+     *
+     * @param device      configured device
+     * @param topicMapper mapping of the topics, e.g. replacing device id placeholder
+     */
+    protected void configure(IoTDevice device, UnaryOperator<String> topicMapper) {
+        BehaviorRule firstRule = rules.get(0);
+        device.publishMessageTo(firstRule.getPublishedMessagePayload(), map(topicMapper, firstRule.getPublishedMessageTopic()));
+        device.subscribeTriggerTopicCondition(map(topicMapper, firstRule.getSubscribedMessageTopic()));
+        device.subscribeTriggerMessageCondition(firstRule.getSubscribedMessagePayload());
+        device.setResponseMessageDelay(delayOf(firstRule));
+        device.setPublicationQos(qosOf(firstRule));
+        device.updateStateOnTrigger(firstRule.getStateUpdates());
+        for (BehaviorRule rule : rules.subList(1, rules.size())) {
+            device.addRule(new DeviceRule(map(topicMapper, rule.getSubscribedMessageTopic()),
+                    rule.getSubscribedMessagePayload(), map(topicMapper, rule.getPublishedMessageTopic()),
+                    rule.getPublishedMessagePayload(), delayOf(rule), qosOf(rule), rule.getStateUpdates()));
+        }
+        List<String> topics = new ArrayList<>();
+        getDeviceSubscriptionTopics().forEach(topic -> topics.add(topicMapper.apply(topic)));
+        device.subscribeTo(topics);
+        device.setSeparatePublisherConnection(separatePublisherConnection);
+        device.setMaxInFlightPublications(maxInFlightPublications);
+        if (shadowThingName != null) {
+            device.simulateShadow(topicMapper.apply(shadowThingName), shadowStore);
+        }
+        if (reportedShadowThingName != null) {
+            device.reportShadow(topicMapper.apply(reportedShadowThingName));
+        }
+    }
+
+    /**
+     * @return state of one device starting with the values defined with withState
+     */
+    protected DeviceState createDeviceState() {
+        return new DeviceState(initialState);
+    }
+
+    private Duration delayOf(BehaviorRule rule) {
+        return rule.getResponseDelay() == null ? responseDelay : rule.getResponseDelay();
+    }
+
+    private MqttQos qosOf(BehaviorRule rule) {
+        return rule.getPublicationQos() == null ? publicationQos : rule.getPublicationQos();
+    }
+
+    private BehaviorRule newRule() {
+        BehaviorRule rule = new BehaviorRule();
+        rules.add(rule);
+        return rule;
+    }
+
+    private static String map(UnaryOperator<String> topicMapper, String topic) {
+        return topic == null ? null : topicMapper.apply(topic);
+    }
 }
@@ -1,9 +1,48 @@
 package com.testcraftsmanship.awsiotdevice.iotsettings;
 
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+
+import java.time.Duration;
+
 public interface PublicationMessageSpecification {
     PublicationMessageSpecification publishTo(String topic);
 
     PublicationMessageSpecification publishMessageBody(String body);
 
     PublicationMessageSpecification inform();
+
+    /**
+     * @param delay delay of the response of this rule overriding the default response delay of the device
+     * @return specification of the publication
+     */
+    PublicationMessageSpecification respondAfter(Duration delay);
+
+    /**
+     * @param qos quality of service of the response of this rule overriding the publication QoS of the device
+     * @return specification of the publication
+     */
+    PublicationMessageSpecification publishWithQos(MqttQos qos);
+
+    /**
+     * @param name  name of the device state value, which responses reference with {state.name} placeholder
+     * @param value json value, e.g. 'eco' or 21, or {param} of the subscribed message mask
+     * @return specification of the publication
+     */
+    PublicationMessageSpecification setState(String name, String value);
+
+    /**
+     * @param name name of the numeric device state value incremented by one when this rule matches, e.g. sequence id
+     * @return specification of the publication
+     */
+    PublicationMessageSpecification incrementState(String name);
+
+    SubscriptionMessageSpecification when();
+
+    PublicationMessageSpecification publishRate(double messagesPerSecond);
+
+    PublicationMessageSpecification rampUp(Duration rampUp);
+
+    PublicationMessageSpecification during(Duration duration);
+
+    PublicationMessageSpecification publishConcurrency(int threads);
 }
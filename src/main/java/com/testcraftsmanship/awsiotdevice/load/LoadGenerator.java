@@ -0,0 +1,164 @@
+package com.testcraftsmanship.awsiotdevice.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Open-loop load generator. Scheduling threads take consecutive sequence numbers and start sending each message at the
+ * time planned by {@link LoadProfile}, without waiting for the previous publications to finish. Slow acknowledgement
+ * delays only the message being acknowledged, the following ones keep their planned times, so the schedule is never
+ * stretched. Schedule lag shows how late the sends were started, e.g. when the sender can't take more messages.
+ */
+public final class LoadGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+    private final LoadProfile profile;
+
+    public LoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Runs the load blocking the calling thread until all planned messages are sent and their publications finished.
+     *
+     * @param sender action starting to send the message with the given sequence number, returns future completed when
+     *               the message is published, or failed when it is not
+     * @return report of the load
+     */
+    public LoadReport run(LongFunction<? extends CompletableFuture<?>> sender) {
+        Load load = new Load(sender);
+        ExecutorService publishers = Executors.newFixedThreadPool(profile.getConcurrency(), new LoadThreadFactory());
+        LOGGER.info("Starting load of {} messages at {} msg/s", profile.getMessagesCount(), profile.getMessagesPerSecond());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < profile.getConcurrency(); i++) {
+                futures.add(publishers.submit(load::publish));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            load.awaitPublications();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Load interrupted after {} messages", load.sent.sum());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load generation failed", e.getCause());
+        } finally {
+            publishers.shutdownNow();
+        }
+        LoadReport report = load.report();
+        LOGGER.info("Load finished: {}", report);
+        return report;
+    }
+
+    private final class Load {
+        private final LongFunction<? extends CompletableFuture<?>> sender;
+        private final long messagesCount = profile.getMessagesCount();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong nextSequence = new AtomicLong();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalLagNanos = new LongAdder();
+        private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+        private final Object finished = new Object();
+        private long unfinished;
+
+        private Load(LongFunction<? extends CompletableFuture<?>> sender) {
+            this.sender = sender;
+        }
+
+        private void publish() {
+            long sequence = nextSequence.getAndIncrement();
+            while (sequence < messagesCount && !Thread.currentThread().isInterrupted()) {
+                long plannedNanos = startNanos + profile.sendOffsetNanos(sequence);
+                if (waitUntil(plannedNanos)) {
+                    send(sequence, System.nanoTime() - plannedNanos);
+                }
+                sequence = nextSequence.getAndIncrement();
+            }
+        }
+
+        private void send(long sequence, long lagNanos) {
+            totalLagNanos.add(lagNanos);
+            maxLagNanos.accumulate(lagNanos);
+            CompletableFuture<?> publication;
+            try {
+                publication = sender.apply(sequence);
+            } catch (RuntimeException e) {
+                publication = CompletableFuture.failedFuture(e);
+            }
+            synchronized (finished) {
+                unfinished++;
+            }
+            publication.whenComplete((result, failure) -> finish(sequence, failure));
+        }
+
+        private void finish(long sequence, Throwable failure) {
+            if (failure == null) {
+                sent.increment();
+            } else {
+                failed.increment();
+                LOGGER.debug("Publication of message {} failed", sequence, failure);
+            }
+            synchronized (finished) {
+                unfinished--;
+                if (unfinished == 0) {
+                    finished.notifyAll();
+                }
+            }
+        }
+
+        private void awaitPublications() throws InterruptedException {
+            synchronized (finished) {
+                while (unfinished > 0) {
+                    finished.wait();
+                }
+            }
+        }
+
+        private boolean waitUntil(long plannedNanos) {
+            long remaining = plannedNanos - System.nanoTime();
+            while (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                remaining = plannedNanos - System.nanoTime();
+            }
+            return true;
+        }
+
+        private LoadReport report() {
+            long attempted = sent.sum() + failed.sum();
+            Duration meanLag = Duration.ofNanos(attempted == 0 ? 0 : totalLagNanos.sum() / attempted);
+            return new LoadReport(profile.getRequestedRate(), messagesCount, sent.sum(), failed.sum(),
+                    Duration.ofNanos(System.nanoTime() - startNanos), Duration.ofNanos(maxLagNanos.get()), meanLag);
+        }
+    }
+
+    private static final class LoadThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "iot-device-load-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.testcraftsmanship.awsiotdevice.load;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Planned publication schedule: rate grows linearly from zero to the target rate during ramp-up and then stays
+ * constant until the end of the load duration. Send times are derived from the sequence number of the message only,
+ * so they don't depend on how long previous publications took.
+ */
+@Getter
+public final class LoadProfile {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private final double messagesPerSecond;
+    private final Duration rampUp;
+    private final Duration duration;
+    private final int concurrency;
+
+    /**
+     * @param messagesPerSecond target publication rate reached after ramp-up
+     * @param rampUp            time of linear growth of the rate, included in the duration
+     * @param duration          total time of the load
+     * @param concurrency       number of threads starting the sends of the messages
+     */
+    public LoadProfile(double messagesPerSecond, Duration rampUp, Duration duration, int concurrency) {
+        if (messagesPerSecond <= 0) {
+            throw new IllegalArgumentException("Publication rate has to be positive.");
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Load duration has to be positive.");
+        }
+        if (rampUp.isNegative() || rampUp.compareTo(duration) > 0) {
+            throw new IllegalArgumentException("Ramp-up has to be between zero and load duration.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Load needs at least one publishing thread.");
+        }
+        this.messagesPerSecond = messagesPerSecond;
+        this.rampUp = rampUp;
+        this.duration = duration;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @return number of messages planned for the whole duration
+     */
+    public long getMessagesCount() {
+        double rampUpSeconds = seconds(rampUp);
+        double rampUpMessages = messagesPerSecond * rampUpSeconds / 2;
+        return (long) (rampUpMessages + messagesPerSecond * (seconds(duration) - rampUpSeconds));
+    }
+
+    /**
+     * @return average requested rate including ramp-up
+     */
+    public double getRequestedRate() {
+        return getMessagesCount() / seconds(duration);
+    }
+
+    /**
+     * @param sequence number of the message starting from zero
+     * @return planned time of sending the message counted from the start of the load
+     */
+    public long sendOffsetNanos(long sequence) {
+        double rampUpSeconds = seconds(rampUp);
+        double rampUpMessages = messagesPerSecond * rampUpSeconds / 2;
+        double offsetSeconds;
+        if (sequence < rampUpMessages) {
+            offsetSeconds = Math.sqrt(2 * rampUpSeconds * sequence / messagesPerSecond);
+        } else {
+            offsetSeconds = rampUpSeconds + (sequence - rampUpMessages) / messagesPerSecond;
+        }
+        return (long) (offsetSeconds * NANOS_PER_SECOND);
+    }
+
+    private static double seconds(Duration duration) {
+        return duration.toNanos() / NANOS_PER_SECOND;
+    }
+}
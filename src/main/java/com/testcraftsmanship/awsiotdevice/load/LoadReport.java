@@ -0,0 +1,47 @@
+package com.testcraftsmanship.awsiotdevice.load;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Outcome of the load: requested and achieved rate, and how late the publications were started comparing to the plan.
+ * Growing schedule lag means publishing threads were not able to keep up with the requested rate.
+ */
+@Getter
+public final class LoadReport {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private final double requestedRate;
+    private final long requestedMessages;
+    private final long sentMessages;
+    private final long failedMessages;
+    private final Duration elapsed;
+    private final Duration maxScheduleLag;
+    private final Duration meanScheduleLag;
+
+    LoadReport(double requestedRate, long requestedMessages, long sentMessages, long failedMessages,
+               Duration elapsed, Duration maxScheduleLag, Duration meanScheduleLag) {
+        this.requestedRate = requestedRate;
+        this.requestedMessages = requestedMessages;
+        this.sentMessages = sentMessages;
+        this.failedMessages = failedMessages;
+        this.elapsed = elapsed;
+        this.maxScheduleLag = maxScheduleLag;
+        this.meanScheduleLag = meanScheduleLag;
+    }
+
+    /**
+     * @return number of successfully sent messages per second of the load
+     */
+    public double getAchievedRate() {
+        return elapsed.isZero() ? 0 : sentMessages / (elapsed.toNanos() / NANOS_PER_SECOND);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requested %.1f msg/s, achieved %.1f msg/s, sent %d of %d messages, %d failed, "
+                        + "elapsed %d ms, schedule lag mean %d ms max %d ms",
+                requestedRate, getAchievedRate(), sentMessages, requestedMessages, failedMessages,
+                elapsed.toMillis(), meanScheduleLag.toMillis(), maxScheduleLag.toMillis());
+    }
+}
@@ -0,0 +1,6 @@
+package com.testcraftsmanship.awsiotdevice.metrics;
+
+@FunctionalInterface
+public interface Counter {
+    void increment();
+}
@@ -0,0 +1,7 @@
+package com.testcraftsmanship.awsiotdevice.metrics;
+
+public interface Gauge {
+    void increment();
+
+    void decrement();
+}
@@ -0,0 +1,75 @@
+package com.testcraftsmanship.awsiotdevice.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry keeping the metrics in memory, so tests can assert on them directly. Metrics are identified by the name
+ * followed by tags in braces, e.g. iot.device.messages.received{topic=flat/cmd}.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        return counters.computeIfAbsent(id(name, tags), id -> new LongAdder())::increment;
+    }
+
+    @Override
+    public Gauge gauge(String name, String... tags) {
+        AtomicLong value = gauges.computeIfAbsent(id(name, tags), id -> new AtomicLong());
+        return new Gauge() {
+            @Override
+            public void increment() {
+                value.incrementAndGet();
+            }
+
+            @Override
+            public void decrement() {
+                value.decrementAndGet();
+            }
+        };
+    }
+
+    public long getCount(String name, String... tags) {
+        LongAdder counter = counters.get(id(name, tags));
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long getValue(String name, String... tags) {
+        AtomicLong gauge = gauges.get(id(name, tags));
+        return gauge == null ? 0 : gauge.get();
+    }
+
+    /**
+     * @return current values of all the counters and gauges sorted by their ids
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((id, counter) -> snapshot.put(id, counter.sum()));
+        gauges.forEach((id, gauge) -> snapshot.put(id, gauge.get()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static String id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags of metric " + name + " have to be name and value pairs.");
+        }
+        if (tags.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.testcraftsmanship.awsiotdevice.metrics;
+
+/**
+ * Registry the simulators report their counters and gauges to. It can be backed by any metrics library, e.g.
+ * Micrometer, or by {@link InMemoryMetricsRegistry}. Tags are given as name and value pairs.
+ */
+public interface MetricsRegistry {
+    /**
+     * @param name name of the counter
+     * @param tags pairs of tag name and tag value
+     * @return monotonic counter, the same one for the same name and tags
+     */
+    Counter counter(String name, String... tags);
+
+    /**
+     * @param name name of the gauge
+     * @param tags pairs of tag name and tag value
+     * @return gauge which value can go up and down, the same one for the same name and tags
+     */
+    Gauge gauge(String name, String... tags);
+
+    /**
+     * @return registry which ignores all the measurements
+     */
+    static MetricsRegistry noop() {
+        return NoopMetricsRegistry.INSTANCE;
+    }
+}
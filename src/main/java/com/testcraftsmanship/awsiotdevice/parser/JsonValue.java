@@ -1,6 +1,7 @@
 package com.testcraftsmanship.awsiotdevice.parser;
 
 import lombok.Getter;
+import org.json.JSONObject;
 
 @Getter
 public class JsonValue {
@@ -11,4 +12,13 @@ public class JsonValue {
         this.type = type;
         this.value = value;
     }
+
+    /**
+     * @param object value created by org.json parser
+     * @return json value of the object, string values are kept without quotes
+     */
+    public static JsonValue of(Object object) {
+        JsonValueType type = JsonValueType.of(object);
+        return new JsonValue(type, type == JsonValueType.STRING ? (String) object : JSONObject.valueToString(object));
+    }
 }
@@ -1,5 +1,32 @@
 package com.testcraftsmanship.awsiotdevice.parser;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 public enum JsonValueType {
-    STRING, NUMBER, BOOLEAN, ARRAY, OBJECT;
+    STRING, NUMBER, BOOLEAN, ARRAY, OBJECT, NULL;
+
+    /**
+     * Recognises the Json value type of the object created by org.json parser.
+     *
+     * @param object value of the json attribute
+     * @return type of the value
+     */
+    public static JsonValueType of(Object object) {
+        if (object instanceof String) {
+            return STRING;
+        } else if (object instanceof Number) {
+            return NUMBER;
+        } else if (object instanceof Boolean) {
+            return BOOLEAN;
+        } else if (object instanceof JSONObject) {
+            return OBJECT;
+        } else if (object instanceof JSONArray) {
+            return ARRAY;
+        } else if (JSONObject.NULL.equals(object)) {
+            return NULL;
+        } else {
+            throw new IllegalArgumentException("Can't recognise the Json value type in the passed object");
+        }
+    }
 }
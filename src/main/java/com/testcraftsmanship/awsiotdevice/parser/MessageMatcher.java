@@ -0,0 +1,381 @@
+package com.testcraftsmanship.awsiotdevice.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Subscription message condition compiled once into a tree of matching nodes. Placeholder paths and literal values are
+ * resolved at compile time, so matching is a single pass of the streaming tokenizer over the raw payload, which stops
+ * at the first mismatch. Parts of the message not present in the mask are skipped without being materialized and only
+ * the values of the placeholders are copied out of the payload. Strict mask without placeholders is also fingerprinted,
+ * so the message which differs from it is rejected by comparing fingerprints, which reads at most as many tokens as
+ * the mask has, and the structural comparison runs only when the fingerprints are equal.
+ */
+public final class MessageMatcher {
+    private static final Pattern JSON_VALUE_PARAM_PATTERN = Pattern.compile("^\\{(.*?)\\}$");
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+            .enable(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES)
+            .build();
+
+    private final Node root;
+    private final boolean strict;
+    private final boolean maskParams;
+    private final PayloadFingerprint fingerprint;
+
+    private MessageMatcher(Node root, boolean strict, boolean maskParams, PayloadFingerprint fingerprint) {
+        this.root = root;
+        this.strict = strict;
+        this.maskParams = maskParams;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Compiles json mask into the matcher. String values in form of {name} are treated as placeholders which values
+     * are extracted from matched message.
+     *
+     * @param jsonMask json message which can contain placeholders
+     * @param strict   when true message has to have exactly the same keys and arrays lengths as the mask
+     * @return compiled matcher
+     */
+    public static MessageMatcher compile(String jsonMask, boolean strict) {
+        Compiler compiler = new Compiler();
+        JSONObject mask = new JSONObject(jsonMask);
+        Node root = compiler.compile(mask);
+        PayloadFingerprint fingerprint = strict && !compiler.paramsFound ? fingerprintOf(mask) : null;
+        return new MessageMatcher(root, strict, compiler.paramsFound, fingerprint);
+    }
+
+    /**
+     * @return true when compiled mask contains at least one placeholder
+     */
+    public boolean containsMaskParams() {
+        return maskParams;
+    }
+
+    /**
+     * Matches the message against compiled mask.
+     *
+     * @param jsonMessage message to be matched
+     * @return values of the placeholders when message matches the mask, empty when it does not
+     */
+    public Optional<Map<String, JsonValue>> match(String jsonMessage) {
+        return match(jsonMessage.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Matches the UTF-8 encoded message against compiled mask.
+     *
+     * @param jsonMessage message to be matched
+     * @return values of the placeholders when message matches the mask, empty when it does not
+     */
+    public Optional<Map<String, JsonValue>> match(byte[] jsonMessage) {
+        try {
+            return matchPayload(jsonMessage);
+        } catch (PayloadMappingException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Matches the message against compiled mask reporting payloads which are not json objects.
+     *
+     * @param jsonMessage message to be matched
+     * @return values of the placeholders when message matches the mask, empty when it does not
+     * @throws PayloadMappingException when message is not a json object
+     */
+    public Optional<Map<String, JsonValue>> matchPayload(String jsonMessage) throws PayloadMappingException {
+        return matchPayload(jsonMessage.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Matches the UTF-8 encoded message against compiled mask reporting payloads which are not json objects. Malformed
+     * part of the message which follows the first mismatch is not read, so such message is reported as not matching.
+     *
+     * @param jsonMessage message to be matched
+     * @return values of the placeholders when message matches the mask, empty when it does not
+     * @throws PayloadMappingException when message is not a json object
+     */
+    public Optional<Map<String, JsonValue>> matchPayload(byte[] jsonMessage) throws PayloadMappingException {
+        if (fingerprint != null && !hasExpectedFingerprint(jsonMessage)) {
+            return Optional.empty();
+        }
+        try (JsonParser parser = openObject(jsonMessage)) {
+            Map<String, JsonValue> params = maskParams ? new HashMap<>() : Collections.emptyMap();
+            if (root.matches(new Match(parser, params, strict))) {
+                return Optional.of(params);
+            }
+            return Optional.empty();
+        } catch (JsonProcessingException e) {
+            throw new PayloadMappingException("Message is not a json object: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the message", e);
+        }
+    }
+
+    private boolean hasExpectedFingerprint(byte[] jsonMessage) throws PayloadMappingException {
+        try (JsonParser parser = openObject(jsonMessage)) {
+            return fingerprint.isMatchedBy(parser);
+        } catch (JsonProcessingException e) {
+            throw new PayloadMappingException("Message is not a json object: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the message", e);
+        }
+    }
+
+    private static JsonParser openObject(byte[] jsonMessage) throws IOException, PayloadMappingException {
+        JsonParser parser = JSON_FACTORY.createParser(jsonMessage);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new PayloadMappingException("Message is not a json object.");
+        }
+        return parser;
+    }
+
+    private static PayloadFingerprint fingerprintOf(JSONObject mask) {
+        try (JsonParser parser = JSON_FACTORY.createParser(mask.toString())) {
+            parser.nextToken();
+            return PayloadFingerprint.of(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to fingerprint the mask " + mask, e);
+        }
+    }
+
+    /**
+     * State of matching one message. Node is called with the parser at the first token of its value and, when the value
+     * matches, leaves the parser at the last token of the value.
+     */
+    private static final class Match {
+        private final JsonParser parser;
+        private final Map<String, JsonValue> params;
+        private final boolean strict;
+
+        private Match(JsonParser parser, Map<String, JsonValue> params, boolean strict) {
+            this.parser = parser;
+            this.params = params;
+            this.strict = strict;
+        }
+    }
+
+    private interface Node {
+        boolean matches(Match match) throws IOException;
+    }
+
+    private static final class Compiler {
+        private boolean paramsFound;
+
+        private Node compile(Object maskPart) {
+            if (maskPart instanceof JSONObject) {
+                JSONObject jsonObject = (JSONObject) maskPart;
+                String[] keys = jsonObject.keySet().toArray(new String[0]);
+                Node[] children = new Node[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    children[i] = compile(jsonObject.get(keys[i]));
+                }
+                return new ObjectNode(keys, children);
+            } else if (maskPart instanceof JSONArray) {
+                JSONArray jsonArray = (JSONArray) maskPart;
+                Node[] elements = new Node[jsonArray.length()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = compile(jsonArray.get(i));
+                }
+                return new ArrayNode(elements);
+            } else if (maskPart instanceof String) {
+                Matcher matcher = JSON_VALUE_PARAM_PATTERN.matcher((String) maskPart);
+                if (matcher.find()) {
+                    paramsFound = true;
+                    return new ParamNode(matcher.group(1));
+                }
+            }
+            return new LiteralNode(maskPart);
+        }
+    }
+
+    private static final class ObjectNode implements Node {
+        private final Map<String, Integer> keyIndexes = new HashMap<>();
+        private final Node[] children;
+
+        private ObjectNode(String[] keys, Node[] children) {
+            for (int i = 0; i < keys.length; i++) {
+                keyIndexes.put(keys[i], i);
+            }
+            this.children = children;
+        }
+
+        @Override
+        public boolean matches(Match match) throws IOException {
+            JsonParser parser = match.parser;
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            boolean[] found = new boolean[children.length];
+            int foundCount = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer index = keyIndexes.get(parser.getCurrentName());
+                parser.nextToken();
+                if (index == null) {
+                    if (match.strict) {
+                        return false;
+                    }
+                    parser.skipChildren();
+                } else {
+                    if (!children[index].matches(match)) {
+                        return false;
+                    }
+                    if (!found[index]) {
+                        found[index] = true;
+                        foundCount++;
+                    }
+                }
+            }
+            return foundCount == children.length;
+        }
+    }
+
+    private static final class ArrayNode implements Node {
+        private final Node[] elements;
+
+        private ArrayNode(Node[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public boolean matches(Match match) throws IOException {
+            JsonParser parser = match.parser;
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                return false;
+            }
+            int length = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (length < elements.length) {
+                    if (!elements[length].matches(match)) {
+                        return false;
+                    }
+                } else if (match.strict) {
+                    return false;
+                } else {
+                    parser.skipChildren();
+                }
+                length++;
+            }
+            return length >= elements.length;
+        }
+    }
+
+    private static final class ParamNode implements Node {
+        private final String name;
+
+        private ParamNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean matches(Match match) throws IOException {
+            JsonParser parser = match.parser;
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                StringWriter value = new StringWriter();
+                try (JsonGenerator generator = JSON_FACTORY.createGenerator(value)) {
+                    generator.copyCurrentStructure(parser);
+                }
+                match.params.put(name, new JsonValue(
+                        token == JsonToken.START_OBJECT ? JsonValueType.OBJECT : JsonValueType.ARRAY, value.toString()));
+            } else {
+                match.params.put(name, new JsonValue(typeOf(token), parser.getText()));
+            }
+            return true;
+        }
+
+        private static JsonValueType typeOf(JsonToken token) {
+            switch (token) {
+                case VALUE_STRING:
+                    return JsonValueType.STRING;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return JsonValueType.NUMBER;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    return JsonValueType.BOOLEAN;
+                case VALUE_NULL:
+                    return JsonValueType.NULL;
+                default:
+                    throw new IllegalArgumentException("Can't recognise the Json value type of the token " + token);
+            }
+        }
+    }
+
+    private static final class LiteralNode implements Node {
+        private final Object literal;
+        private final BigDecimal numericLiteral;
+        private final boolean integralLiteral;
+
+        private LiteralNode(Object literal) {
+            this.literal = literal;
+            this.numericLiteral = literal instanceof Number ? new BigDecimal(literal.toString()) : null;
+            this.integralLiteral = literal instanceof Integer || literal instanceof Long;
+        }
+
+        @Override
+        public boolean matches(Match match) throws IOException {
+            JsonParser parser = match.parser;
+            switch (parser.currentToken()) {
+                case VALUE_STRING:
+                    return literal instanceof String && textEquals(parser, (String) literal);
+                case VALUE_NUMBER_INT:
+                    if (integralLiteral && isIntegral(parser.getNumberType())) {
+                        return ((Number) literal).longValue() == parser.getLongValue();
+                    }
+                    return numericLiteral != null && numericLiteral.compareTo(parser.getDecimalValue()) == 0;
+                case VALUE_NUMBER_FLOAT:
+                    return numericLiteral != null && numericLiteral.compareTo(parser.getDecimalValue()) == 0;
+                case VALUE_TRUE:
+                    return Boolean.TRUE.equals(literal);
+                case VALUE_FALSE:
+                    return Boolean.FALSE.equals(literal);
+                case VALUE_NULL:
+                    return JSONObject.NULL.equals(literal);
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean isIntegral(JsonParser.NumberType numberType) {
+            return numberType == JsonParser.NumberType.INT || numberType == JsonParser.NumberType.LONG;
+        }
+
+        /**
+         * Compares the string value in the parser buffer, so mismatching strings are not materialized.
+         */
+        private static boolean textEquals(JsonParser parser, String text) throws IOException {
+            if (parser.getTextLength() != text.length()) {
+                return false;
+            }
+            char[] characters = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            for (int i = 0; i < text.length(); i++) {
+                if (characters[offset + i] != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
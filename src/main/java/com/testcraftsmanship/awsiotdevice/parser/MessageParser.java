@@ -10,14 +10,9 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static com.testcraftsmanship.awsiotdevice.utils.StringOperations.minimize;
-
 public class MessageParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageParser.class);
     private static final String JSON_VALUE_PARAM_REGEXP = "^\\{(.*?)\\}$";
-    private static final String MASK_IN_JSON_REGEXP = ":\"\\{.*?\\}\"";
-    private static final String ANY_CHARS_FROM_BEGINNING_REGEXP = "^.*";
-    private static final String ANY_CHARS_TO_THE_END_REGEXP = ".*$";
 
     private final Map<String, JsonValue> jsonParamsWithValues;
 
@@ -27,62 +22,31 @@ public class MessageParser {
                 new JSONObject(jsonSubscribedMessage), new JSONObject(jsonParserMask), strict);
     }
 
+    /**
+     * Creates parser with params values already extracted from the subscribed message e.g. by {@link MessageMatcher}.
+     *
+     * @param jsonParamsWithValues values of the params found in subscribed message
+     */
+    public MessageParser(Map<String, JsonValue> jsonParamsWithValues) {
+        this.jsonParamsWithValues = jsonParamsWithValues;
+    }
+
     public JSONObject updateJsonParamsWithValues(String jsonPublishMessage) {
         return updateJsonParamsWithValues(new JSONObject(jsonPublishMessage));
     }
 
     public JSONObject updateJsonParamsWithValues(JSONObject jsonPublishMessage) {
-        String payload = minimize(jsonPublishMessage.toString());
-        LOGGER.info("Publish json message to be updated: {}", payload);
-        for (Map.Entry<String, JsonValue> paramValue : jsonParamsWithValues.entrySet()) {
-            if (doesStringContainsRegexp(payload, getParamRegexp(paramValue.getKey()))) {
-                payload = payload.replaceAll(getParamRegexp(paramValue.getKey()), getParamValue(paramValue.getValue()));
-                LOGGER.info("Param {} has been found and updated to {}",
-                        getParamRegexp(paramValue.getKey()), getParamValue(paramValue.getValue()));
-            } else {
-                LOGGER.info("Param {} has not been found in publish message so will not be updated",
-                        getParamRegexp(paramValue.getKey()));
-            }
-        }
+        String payload = PublicationTemplate.compile(jsonPublishMessage).render(jsonParamsWithValues);
         LOGGER.info("Updated json message: {}", payload);
         return new JSONObject(payload);
     }
 
     public static boolean containsMaskParams(String jsonMessage) {
-        String standardizedMessage = new JSONObject(jsonMessage).toString();
-        return doesStringContainsRegexp(standardizedMessage, MASK_IN_JSON_REGEXP);
-    }
-
-    private static boolean doesStringContainsRegexp(String text, String regexp) {
-        return text.matches(ANY_CHARS_FROM_BEGINNING_REGEXP + regexp + ANY_CHARS_TO_THE_END_REGEXP);
-    }
-
-    private static String getParamValue(JsonValue jsonValue) {
-        if (jsonValue.getType().equals(JsonValueType.STRING)) {
-            return "\"" + jsonValue.getValue() + "\"";
-        } else {
-            return jsonValue.getValue();
-        }
-    }
-
-    private static String getParamRegexp(String param) {
-        return "\"\\{" + param + "\\}\"";
+        return PublicationTemplate.compile(jsonMessage).containsPlaceholders();
     }
 
     private static JsonValueType getValueType(Object object) {
-        if (object instanceof String) {
-            return JsonValueType.STRING;
-        } else if (object instanceof Integer) {
-            return JsonValueType.NUMBER;
-        } else if (object instanceof Boolean) {
-            return JsonValueType.BOOLEAN;
-        } else if (object instanceof JSONObject) {
-            return JsonValueType.OBJECT;
-        } else if (object instanceof JSONArray) {
-            return JsonValueType.ARRAY;
-        } else {
-            throw new IllegalArgumentException("Can't recognise the Json value type in the passed object");
-        }
+        return JsonValueType.of(object);
     }
 
     private boolean isArray(Object object) {
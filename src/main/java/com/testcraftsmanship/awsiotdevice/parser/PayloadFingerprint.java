@@ -0,0 +1,170 @@
+package com.testcraftsmanship.awsiotdevice.parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Structural hash of the json value which doesn't depend on the order of object keys, on whitespace or on the notation
+ * of numbers, e.g. 1 and 1.0 have the same fingerprint. Together with the number of tokens it allows to reject the
+ * payload which differs from the expected one after reading at most one token more than the expected payload has.
+ * Equal fingerprints don't guarantee equal payloads, so they have to be compared structurally.
+ */
+final class PayloadFingerprint {
+    private static final long OBJECT_SEED = 0x9E3779B97F4A7C15L;
+    private static final long ARRAY_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final long STRING_SEED = 0x165667B19E3779F9L;
+    private static final long TRUE_HASH = 0x27D4EB2F165667C5L;
+    private static final long FALSE_HASH = 0x85EBCA77C2B2AE63L;
+    private static final long NULL_HASH = 0xFF51AFD7ED558CCDL;
+    private static final long MIX_MULTIPLIER = 0xC4CEB9FE1A85EC53L;
+    private static final long PRIME = 31;
+    private static final int MIX_SHIFT = 33;
+    private static final int DECIMAL_RADIX = 10;
+    private final long hash;
+    private final int tokens;
+
+    private PayloadFingerprint(long hash, int tokens) {
+        this.hash = hash;
+        this.tokens = tokens;
+    }
+
+    /**
+     * @param parser parser positioned at the first token of the expected value
+     * @return fingerprint of the expected value
+     */
+    static PayloadFingerprint of(JsonParser parser) throws IOException {
+        Hasher hasher = new Hasher(parser, Integer.MAX_VALUE);
+        long hash = hasher.valueHash();
+        return new PayloadFingerprint(hash, hasher.tokens);
+    }
+
+    /**
+     * @param parser parser positioned at the first token of the value
+     * @return false when the value surely differs from the expected one
+     */
+    boolean isMatchedBy(JsonParser parser) throws IOException {
+        Hasher hasher = new Hasher(parser, tokens);
+        long valueHash = hasher.valueHash();
+        return hasher.tokens == tokens && valueHash == hash;
+    }
+
+    private static long mix(long value) {
+        long mixed = (value ^ (value >>> MIX_SHIFT)) * MIX_MULTIPLIER;
+        return mixed ^ (mixed >>> MIX_SHIFT);
+    }
+
+    /**
+     * Hashes the value token by token and gives up once it has more tokens than the limit.
+     */
+    private static final class Hasher {
+        private final JsonParser parser;
+        private final int maxTokens;
+        private int tokens = 1;
+
+        private Hasher(JsonParser parser, int maxTokens) {
+            this.parser = parser;
+            this.maxTokens = maxTokens;
+        }
+
+        private JsonToken next() throws IOException {
+            if (tokens > maxTokens) {
+                return null;
+            }
+            tokens++;
+            return parser.nextToken();
+        }
+
+        private long valueHash() throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == null) {
+                return 0;
+            }
+            switch (token) {
+                case START_OBJECT:
+                    return objectHash();
+                case START_ARRAY:
+                    return arrayHash();
+                case VALUE_STRING:
+                    return stringHash();
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return numberHash();
+                case VALUE_TRUE:
+                    return TRUE_HASH;
+                case VALUE_FALSE:
+                    return FALSE_HASH;
+                case VALUE_NULL:
+                    return NULL_HASH;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Members are summed up, so the order of the keys doesn't matter.
+         */
+        private long objectHash() throws IOException {
+            long members = OBJECT_SEED;
+            while (next() == JsonToken.FIELD_NAME) {
+                long keyHash = parser.getCurrentName().hashCode();
+                if (next() == null) {
+                    break;
+                }
+                members += mix(keyHash * PRIME + valueHash());
+            }
+            return mix(members);
+        }
+
+        private long arrayHash() throws IOException {
+            long elements = ARRAY_SEED;
+            JsonToken token = next();
+            while (token != null && token != JsonToken.END_ARRAY) {
+                elements = elements * PRIME + valueHash();
+                token = next();
+            }
+            return mix(elements);
+        }
+
+        private long stringHash() throws IOException {
+            char[] characters = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            long text = STRING_SEED;
+            for (int i = offset; i < offset + length; i++) {
+                text = text * PRIME + characters[i];
+            }
+            return mix(text);
+        }
+
+        /**
+         * Numbers are hashed by the unscaled value and scale of their canonical form without trailing zeros, so every
+         * notation of the same value, e.g. 1e18, 1000000000000000000 and 1000000000000000000.0, has the same hash.
+         * Integers fitting in long are stripped without allocation.
+         */
+        private long numberHash() throws IOException {
+            if (parser.getNumberType() == JsonParser.NumberType.INT || parser.getNumberType() == JsonParser.NumberType.LONG) {
+                long unscaled = parser.getLongValue();
+                int scale = 0;
+                while (unscaled != 0 && unscaled % DECIMAL_RADIX == 0) {
+                    unscaled /= DECIMAL_RADIX;
+                    scale--;
+                }
+                return canonicalHash(unscaled, scale);
+            }
+            BigDecimal number = parser.getDecimalValue().stripTrailingZeros();
+            BigInteger unscaled = number.unscaledValue();
+            if (unscaled.bitLength() < Long.SIZE) {
+                return canonicalHash(unscaled.longValue(), number.scale());
+            }
+            return mix(unscaled.hashCode() * PRIME + number.scale());
+        }
+
+        private static long canonicalHash(long unscaled, int scale) {
+            return mix(mix(unscaled) * PRIME + scale);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.testcraftsmanship.awsiotdevice.parser;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Publication message compiled once into a list of segments: literal chunks of the minimized json and placeholder slots.
+ * Rendering appends the chunks and the values extracted from subscribed message into reusable buffer, so there is
+ * no regular expression nor json parsing involved when response is published.
+ */
+public final class PublicationTemplate {
+    private static final Pattern JSON_VALUE_PARAM_PATTERN = Pattern.compile("^\\{(.*?)\\}$");
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_SIZE));
+
+    private final Segment[] segments;
+    private final boolean placeholders;
+    private final Set<String> placeholderNames;
+
+    private PublicationTemplate(Segment[] segments, boolean placeholders, Set<String> placeholderNames) {
+        this.segments = segments;
+        this.placeholders = placeholders;
+        this.placeholderNames = Collections.unmodifiableSet(placeholderNames);
+    }
+
+    /**
+     * Compiles json message into the template. String values in form of {name} are treated as placeholders.
+     *
+     * @param jsonMessage json message which can contain placeholders
+     * @return compiled template
+     */
+    public static PublicationTemplate compile(String jsonMessage) {
+        return compile(new JSONObject(jsonMessage));
+    }
+
+    /**
+     * Compiles json message into the template. String values in form of {name} are treated as placeholders.
+     *
+     * @param jsonMessage json message which can contain placeholders
+     * @return compiled template
+     */
+    public static PublicationTemplate compile(JSONObject jsonMessage) {
+        Compiler compiler = new Compiler();
+        compiler.append(jsonMessage);
+        compiler.flushLiteral();
+        return new PublicationTemplate(compiler.segments.toArray(new Segment[0]), compiler.placeholdersFound,
+                compiler.placeholderNames);
+    }
+
+    /**
+     * @return true when template contains at least one placeholder
+     */
+    public boolean containsPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * @return names of the placeholders in order of their first occurrence
+     */
+    public Set<String> getPlaceholderNames() {
+        return placeholderNames;
+    }
+
+    /**
+     * Renders the message filling placeholders with passed values. Placeholders without value are left untouched.
+     *
+     * @param params values of the placeholders
+     * @return rendered json message
+     */
+    public String render(Map<String, JsonValue> params) {
+        if (!placeholders) {
+            return ((LiteralSegment) segments[0]).chunk;
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        for (Segment segment : segments) {
+            segment.appendTo(buffer, params);
+        }
+        return buffer.toString();
+    }
+
+    private static void appendQuoted(StringBuilder buffer, String text) {
+        buffer.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            switch (character) {
+                case '"':
+                case '\\':
+                    buffer.append('\\').append(character);
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (character < ' ') {
+                        buffer.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        buffer.append(character);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+
+    private interface Segment {
+        void appendTo(StringBuilder buffer, Map<String, JsonValue> params);
+    }
+
+    private static final class Compiler {
+        private final List<Segment> segments = new ArrayList<>();
+        private final StringBuilder literal = new StringBuilder();
+        private final Set<String> placeholderNames = new LinkedHashSet<>();
+        private boolean placeholdersFound;
+
+        private void append(Object part) {
+            if (part instanceof JSONObject) {
+                JSONObject jsonObject = (JSONObject) part;
+                literal.append('{');
+                boolean first = true;
+                for (String key : jsonObject.keySet()) {
+                    if (!first) {
+                        literal.append(',');
+                    }
+                    first = false;
+                    appendQuoted(literal, key);
+                    literal.append(':');
+                    append(jsonObject.get(key));
+                }
+                literal.append('}');
+            } else if (part instanceof JSONArray) {
+                JSONArray jsonArray = (JSONArray) part;
+                literal.append('[');
+                for (int i = 0; i < jsonArray.length(); i++) {
+                    if (i > 0) {
+                        literal.append(',');
+                    }
+                    append(jsonArray.get(i));
+                }
+                literal.append(']');
+            } else if (part instanceof String) {
+                Matcher matcher = JSON_VALUE_PARAM_PATTERN.matcher((String) part);
+                if (matcher.find()) {
+                    flushLiteral();
+                    placeholdersFound = true;
+                    placeholderNames.add(matcher.group(1));
+                    segments.add(new PlaceholderSegment(matcher.group(1), (String) part));
+                } else {
+                    appendQuoted(literal, (String) part);
+                }
+            } else {
+                literal.append(JSONObject.valueToString(part));
+            }
+        }
+
+        private void flushLiteral() {
+            if (literal.length() > 0) {
+                segments.add(new LiteralSegment(literal.toString()));
+                literal.setLength(0);
+            }
+        }
+    }
+
+    private static final class LiteralSegment implements Segment {
+        private final String chunk;
+
+        private LiteralSegment(String chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void appendTo(StringBuilder buffer, Map<String, JsonValue> params) {
+            buffer.append(chunk);
+        }
+    }
+
+    private static final class PlaceholderSegment implements Segment {
+        private final String name;
+        private final String unresolved;
+
+        private PlaceholderSegment(String name, String placeholder) {
+            this.name = name;
+            this.unresolved = placeholder;
+        }
+
+        @Override
+        public void appendTo(StringBuilder buffer, Map<String, JsonValue> params) {
+            JsonValue value = params.get(name);
+            if (value == null) {
+                appendQuoted(buffer, unresolved);
+            } else if (value.getType() == JsonValueType.STRING) {
+                appendQuoted(buffer, value.getValue());
+            } else {
+                buffer.append(value.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message read from the traffic log.
+ */
+@Getter
+public final class RecordedMessage {
+    private final long timeNanos;
+    private final TrafficDirection direction;
+    private final String topic;
+    @Getter(lombok.AccessLevel.NONE)
+    private final byte[] payload;
+
+    RecordedMessage(long timeNanos, TrafficDirection direction, String topic, byte[] payload) {
+        this.timeNanos = timeNanos;
+        this.direction = direction;
+        this.topic = topic;
+        this.payload = payload;
+    }
+
+    /**
+     * @return recorded payload, which must not be modified
+     */
+    public byte[] getPayloadBytes() {
+        return payload;
+    }
+
+    public String getPayload() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttMessageHandler;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport which records messages received and published through the wrapped transport. Published messages are
+ * recorded when they are handed over to the transport, whether the publication is synchronous or not.
+ */
+public class RecordingTransport implements MqttTransport {
+    private final MqttTransport transport;
+    private final TrafficRecorder recorder;
+
+    public RecordingTransport(MqttTransport transport, TrafficRecorder recorder) {
+        this.transport = transport;
+        this.recorder = recorder;
+    }
+
+    /**
+     * @param transportFactory factory of the recorded transports
+     * @param recorder recorder of the traffic
+     * @return factory of the transports recording their traffic
+     */
+    public static MqttTransportFactory factory(MqttTransportFactory transportFactory, TrafficRecorder recorder) {
+        return () -> new RecordingTransport(transportFactory.create(), recorder);
+    }
+
+    @Override
+    public String getClientId() {
+        return transport.getClientId();
+    }
+
+    @Override
+    public void connect() {
+        transport.connect();
+    }
+
+    @Override
+    public void disconnect() {
+        transport.disconnect();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return transport.isConnected();
+    }
+
+    @Override
+    public void subscribe(String topicFilter, MqttMessageHandler handler) {
+        transport.subscribe(topicFilter, (topic, payload) -> {
+            recorder.record(TrafficDirection.RECEIVED, topic, payload);
+            handler.onMessage(topic, payload);
+        });
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+        transport.unsubscribe(topicFilter);
+    }
+
+    @Override
+    public Set<String> getSubscribedTopics() {
+        return transport.getSubscribedTopics();
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, MqttQos qos) {
+        recorder.record(TrafficDirection.PUBLISHED, topic, payload);
+        transport.publish(topic, payload, qos);
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return transport.getMaxInFlight();
+    }
+
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, byte[] payload, MqttQos qos) {
+        recorder.record(TrafficDirection.PUBLISHED, topic, payload);
+        return transport.publishAsync(topic, payload, qos);
+    }
+}
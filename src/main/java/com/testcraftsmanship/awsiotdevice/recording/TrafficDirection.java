@@ -0,0 +1,9 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+/**
+ * Direction of the recorded message from the point of view of the simulated device.
+ */
+public enum TrafficDirection {
+    RECEIVED,
+    PUBLISHED
+}
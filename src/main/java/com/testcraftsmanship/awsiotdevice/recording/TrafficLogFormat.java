@@ -0,0 +1,35 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+import java.nio.file.Path;
+
+/**
+ * Layout of the traffic log. Log starts with the header: magic number, version and wall clock time of the recording
+ * start in epoch millis. Records follow one by one: length of the rest of the record, nanoseconds since the recording
+ * start, direction, length of the topic, UTF-8 topic and the payload. Zero length marks the end of the log. Sparse
+ * index of the log is kept in the file with .idx suffix as pairs of record time and record position.
+ */
+final class TrafficLogFormat {
+    static final int MAGIC = 0x494F5452;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES;
+    static final int LENGTH_SIZE = Integer.BYTES;
+    static final int RECORD_HEADER_SIZE = Long.BYTES + Byte.BYTES + Short.BYTES;
+    static final int DIRECTION_OFFSET = Long.BYTES;
+    static final int TOPIC_LENGTH_OFFSET = Long.BYTES + Byte.BYTES;
+    private static final long INDEX_INTERVAL_NANOS = 1_000_000_000L;
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private TrafficLogFormat() {
+    }
+
+    static Path indexOf(Path log) {
+        return log.resolveSibling(log.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return time since which the next record is added to the index
+     */
+    static long nextIndexTime(long timeNanos) {
+        return timeNanos - timeNanos % INDEX_INTERVAL_NANOS + INDEX_INTERVAL_NANOS;
+    }
+}
@@ -0,0 +1,234 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends messages to the log file through memory mapped segments, so recording is a copy into the page cache without
+ * system calls. When the segment is full, the next one is mapped at the end of the last record. Encoded topics are
+ * cached and payloads are copied as they are, so recording doesn't allocate memory.
+ */
+public final class TrafficRecorder implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficRecorder.class);
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int INITIAL_INDEX_SIZE = 64;
+    private static final int MAX_TOPIC_LENGTH = 0xFFFF;
+    private static final int LOGGED_TOPIC_PREFIX_LENGTH = 64;
+    private static final int MAX_CACHED_TOPICS = 100_000;
+    private final Path file;
+    private final FileChannel channel;
+    private final long segmentSize;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, byte[]> encodedTopics = new HashMap<>();
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long messagesCount;
+    private long nextIndexNanos;
+    private long[] indexTimes = new long[INITIAL_INDEX_SIZE];
+    private long[] indexPositions = new long[INITIAL_INDEX_SIZE];
+    private int indexSize;
+    private boolean closed;
+
+    private TrafficRecorder(Path file, FileChannel channel, long segmentSize) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.segmentSize = segmentSize;
+        this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(TrafficLogFormat.MAGIC).putShort(TrafficLogFormat.VERSION).putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates new log file, or replaces the existing one, mapped in 64 MB segments.
+     *
+     * @param file path of the log
+     * @return recorder appending to the log
+     */
+    public static TrafficRecorder create(Path file) {
+        return create(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates new log file like {@link #create(Path)}, but keeps the existing log and its index under the first free name
+     * with the number suffix, e.g. heater.log.1, so the log of the previous session is not lost.
+     *
+     * @param file path of the log
+     * @return recorder appending to the log
+     */
+    public static TrafficRecorder createKeepingPrevious(Path file) {
+        if (Files.exists(file)) {
+            int number = 1;
+            while (Files.exists(file.resolveSibling(file.getFileName() + "." + number))) {
+                number++;
+            }
+            Path previous = file.resolveSibling(file.getFileName() + "." + number);
+            try {
+                Files.move(file, previous);
+                if (Files.exists(TrafficLogFormat.indexOf(file))) {
+                    Files.move(TrafficLogFormat.indexOf(file), TrafficLogFormat.indexOf(previous));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to keep previous traffic log " + file, e);
+            }
+            LOGGER.info("Previous traffic log {} kept as {}", file, previous);
+        }
+        return create(file);
+    }
+
+    /**
+     * @param file path of the log
+     * @param segmentSize size of the memory mapped segments of the log
+     * @return recorder appending to the log
+     */
+    public static TrafficRecorder create(Path file, long segmentSize) {
+        if (segmentSize < TrafficLogFormat.HEADER_SIZE + TrafficLogFormat.LENGTH_SIZE) {
+            throw new IllegalArgumentException("Segment of the traffic log is too small.");
+        }
+        try {
+            Files.deleteIfExists(TrafficLogFormat.indexOf(file));
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new TrafficRecorder(file, channel, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create traffic log " + file, e);
+        }
+    }
+
+    /**
+     * Appends the message to the log. Messages recorded after the recorder is closed are ignored, and messages with
+     * topic longer than 65535 bytes are logged as error and skipped, as it's called from the MQTT callback.
+     *
+     * @param direction direction of the message
+     * @param topic topic of the message
+     * @param payload payload of the message
+     */
+    public synchronized void record(TrafficDirection direction, String topic, byte[] payload) {
+        if (closed) {
+            return;
+        }
+        long timeNanos = System.nanoTime() - startNanos;
+        byte[] encodedTopic = encode(topic);
+        if (encodedTopic.length > MAX_TOPIC_LENGTH) {
+            LOGGER.error("Skipped recording of message as its topic of {} bytes is too long: {}...",
+                    encodedTopic.length, topic.substring(0, LOGGED_TOPIC_PREFIX_LENGTH));
+            return;
+        }
+        int recordLength = TrafficLogFormat.RECORD_HEADER_SIZE + encodedTopic.length + payload.length;
+        ensureCapacity(TrafficLogFormat.LENGTH_SIZE + recordLength + TrafficLogFormat.LENGTH_SIZE);
+        if (timeNanos >= nextIndexNanos) {
+            addToIndex(timeNanos, segmentStart + segment.position());
+            nextIndexNanos = TrafficLogFormat.nextIndexTime(timeNanos);
+        }
+        segment.putInt(recordLength)
+                .putLong(timeNanos)
+                .put((byte) direction.ordinal())
+                .putShort((short) encodedTopic.length)
+                .put(encodedTopic)
+                .put(payload);
+        messagesCount++;
+    }
+
+    public synchronized long getMessagesCount() {
+        return messagesCount;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the index, cuts the log to its content and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long end = segmentStart + segment.position();
+        try {
+            segment.force();
+            writeIndex();
+            truncate(end);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close traffic log " + file, e);
+        } finally {
+            segment = null;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close channel of traffic log {}", file, e);
+            }
+        }
+        LOGGER.info("Recorded {} messages to {}", messagesCount, file);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (segment.remaining() >= bytes) {
+            return;
+        }
+        segment.force();
+        segmentStart += segment.position();
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, Math.max(segmentSize, bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to extend traffic log " + file, e);
+        }
+    }
+
+    private void addToIndex(long timeNanos, long position) {
+        if (indexSize == indexTimes.length) {
+            indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+        }
+        indexTimes[indexSize] = timeNanos;
+        indexPositions[indexSize] = position;
+        indexSize++;
+    }
+
+    private void writeIndex() throws IOException {
+        try (DataOutputStream index = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(TrafficLogFormat.indexOf(file))))) {
+            for (int i = 0; i < indexSize; i++) {
+                index.writeLong(indexTimes[i]);
+                index.writeLong(indexPositions[i]);
+            }
+        }
+    }
+
+    /**
+     * Mapped tail of the last segment is zero filled, so the log stays readable even when it can't be cut, e.g. when
+     * the operating system doesn't allow to truncate mapped file.
+     */
+    private void truncate(long end) {
+        try {
+            channel.truncate(end + TrafficLogFormat.LENGTH_SIZE);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to cut traffic log {} to its content", file, e);
+        }
+    }
+
+    private byte[] encode(String topic) {
+        byte[] encoded = encodedTopics.get(topic);
+        if (encoded == null) {
+            encoded = topic.getBytes(StandardCharsets.UTF_8);
+            if (encodedTopics.size() < MAX_CACHED_TOPICS) {
+                encodedTopics.put(topic, encoded);
+            }
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,247 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Reads the log written by {@link TrafficRecorder} through memory mapped windows and publishes the recorded messages
+ * again, keeping the original intervals between them scaled by the speed. Replay can start from any moment of the
+ * recording, which is found with the sparse index of the log without reading the messages before it.
+ */
+public final class TrafficReplay implements AutoCloseable {
+    public static final double ORIGINAL_SPEED = 1;
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplay.class);
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final TrafficDirection[] DIRECTIONS = TrafficDirection.values();
+    private final Path file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long startEpochMillis;
+    private long[] indexTimes;
+    private long[] indexPositions;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private TrafficReplay(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        if (!isMapped(0, TrafficLogFormat.HEADER_SIZE) || window.getInt(0) != TrafficLogFormat.MAGIC
+                || window.getShort(Integer.BYTES) != TrafficLogFormat.VERSION) {
+            throw new IllegalArgumentException("File " + file + " is not a traffic log.");
+        }
+        this.startEpochMillis = window.getLong(Integer.BYTES + Short.BYTES);
+        loadIndex();
+    }
+
+    /**
+     * @param file path of the log written by {@link TrafficRecorder}
+     * @return replay of the log
+     */
+    public static TrafficReplay open(Path file) {
+        try {
+            return new TrafficReplay(file, FileChannel.open(file, StandardOpenOption.READ));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open traffic log " + file, e);
+        }
+    }
+
+    /**
+     * @return wall clock time of the recording start in epoch millis
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * @param from moment of the recording since which messages are read
+     * @param consumer consumer of the messages called in the order of recording
+     */
+    public synchronized void forEach(Duration from, Consumer<RecordedMessage> consumer) {
+        long fromNanos = from.toNanos();
+        long position = seek(fromNanos);
+        while (isMapped(position, TrafficLogFormat.LENGTH_SIZE)) {
+            int recordLength = window.getInt(offsetOf(position));
+            if (recordLength <= 0 || !isMapped(position, TrafficLogFormat.LENGTH_SIZE + recordLength)) {
+                break;
+            }
+            int offset = offsetOf(position) + TrafficLogFormat.LENGTH_SIZE;
+            long timeNanos = window.getLong(offset);
+            if (timeNanos >= fromNanos) {
+                consumer.accept(readMessage(offset, recordLength, timeNanos));
+            }
+            position += TrafficLogFormat.LENGTH_SIZE + recordLength;
+        }
+    }
+
+    /**
+     * Publishes recorded messages of the given direction from the beginning of the recording.
+     *
+     * @param transport connected transport publishing the messages
+     * @param direction direction of the replayed messages, e.g. RECEIVED to replay commands sent to the device
+     * @param speed speed of the replay, e.g. ORIGINAL_SPEED, 10 for ten times faster replay or MAX_SPEED
+     * @return number of published messages
+     */
+    public long replay(MqttTransport transport, TrafficDirection direction, double speed) {
+        return replay(transport, direction, speed, Duration.ZERO);
+    }
+
+    /**
+     * Publishes recorded messages of the given direction starting from the given moment of the recording.
+     *
+     * @param transport connected transport publishing the messages
+     * @param direction direction of the replayed messages
+     * @param speed speed of the replay, e.g. ORIGINAL_SPEED, 10 for ten times faster replay or MAX_SPEED
+     * @param from moment of the recording since which messages are replayed
+     * @return number of published messages
+     */
+    public long replay(MqttTransport transport, TrafficDirection direction, double speed, Duration from) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Replay speed has to be positive.");
+        }
+        long fromNanos = from.toNanos();
+        long replayStartNanos = System.nanoTime();
+        long[] published = new long[1];
+        forEach(from, message -> {
+            if (message.getDirection() != direction) {
+                return;
+            }
+            if (speed != MAX_SPEED) {
+                waitUntil(replayStartNanos + (long) ((message.getTimeNanos() - fromNanos) / speed));
+            }
+            transport.publish(message.getTopic(), message.getPayloadBytes(), MqttQos.AT_MOST_ONCE);
+            published[0]++;
+        });
+        LOGGER.info("Replayed {} messages of {} in {} ms", published[0], file,
+                Duration.ofNanos(System.nanoTime() - replayStartNanos).toMillis());
+        return published[0];
+    }
+
+    @Override
+    public synchronized void close() {
+        window = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close traffic log " + file, e);
+        }
+    }
+
+    private RecordedMessage readMessage(int offset, int recordLength, long timeNanos) {
+        TrafficDirection direction = DIRECTIONS[window.get(offset + TrafficLogFormat.DIRECTION_OFFSET)];
+        int topicLength = Short.toUnsignedInt(window.getShort(offset + TrafficLogFormat.TOPIC_LENGTH_OFFSET));
+        byte[] topic = new byte[topicLength];
+        byte[] payload = new byte[recordLength - TrafficLogFormat.RECORD_HEADER_SIZE - topicLength];
+        window.position(offset + TrafficLogFormat.RECORD_HEADER_SIZE);
+        window.get(topic).get(payload);
+        return new RecordedMessage(timeNanos, direction, new String(topic, StandardCharsets.UTF_8), payload);
+    }
+
+    /**
+     * @return position of the last indexed record which is not later than the given time
+     */
+    private long seek(long fromNanos) {
+        int index = Arrays.binarySearch(indexTimes, fromNanos);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? TrafficLogFormat.HEADER_SIZE : indexPositions[index];
+    }
+
+    private void loadIndex() throws IOException {
+        Path indexFile = TrafficLogFormat.indexOf(file);
+        if (Files.exists(indexFile)) {
+            int entries = (int) (Files.size(indexFile) / (2 * Long.BYTES));
+            indexTimes = new long[entries];
+            indexPositions = new long[entries];
+            try (DataInputStream index = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                for (int i = 0; i < entries; i++) {
+                    indexTimes[i] = index.readLong();
+                    indexPositions[i] = index.readLong();
+                }
+            }
+        } else {
+            LOGGER.info("Index of traffic log {} not found, it is rebuilt from the log", file);
+            rebuildIndex();
+        }
+    }
+
+    private void rebuildIndex() {
+        long[] times = new long[0];
+        long[] positions = new long[0];
+        int entries = 0;
+        long nextIndexNanos = 0;
+        long position = TrafficLogFormat.HEADER_SIZE;
+        while (isMapped(position, TrafficLogFormat.LENGTH_SIZE + Long.BYTES)) {
+            int recordLength = window.getInt(offsetOf(position));
+            if (recordLength <= 0) {
+                break;
+            }
+            long timeNanos = window.getLong(offsetOf(position) + TrafficLogFormat.LENGTH_SIZE);
+            if (timeNanos >= nextIndexNanos) {
+                if (entries == times.length) {
+                    times = Arrays.copyOf(times, Math.max(1, entries * 2));
+                    positions = Arrays.copyOf(positions, times.length);
+                }
+                times[entries] = timeNanos;
+                positions[entries] = position;
+                entries++;
+                nextIndexNanos = TrafficLogFormat.nextIndexTime(timeNanos);
+            }
+            position += TrafficLogFormat.LENGTH_SIZE + recordLength;
+        }
+        indexTimes = Arrays.copyOf(times, entries);
+        indexPositions = Arrays.copyOf(positions, entries);
+    }
+
+    /**
+     * Maps the window of the log which contains the given range, unless the current window already does.
+     *
+     * @return false when the range exceeds the log
+     */
+    private boolean isMapped(long position, int bytes) {
+        if (position + bytes > fileSize) {
+            return false;
+        }
+        if (window == null || position < windowStart || position + bytes > windowStart + window.capacity()) {
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(Math.max(WINDOW_SIZE, bytes), fileSize - position));
+                windowStart = position;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read traffic log " + file, e);
+            }
+        }
+        return true;
+    }
+
+    private int offsetOf(long position) {
+        return (int) (position - windowStart);
+    }
+
+    private static void waitUntil(long dueNanos) {
+        long delay = dueNanos - System.nanoTime();
+        while (delay > 0) {
+            LockSupport.parkNanos(delay);
+            delay = dueNanos - System.nanoTime();
+        }
+    }
+}
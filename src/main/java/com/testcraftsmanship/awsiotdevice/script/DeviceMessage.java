@@ -0,0 +1,31 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message received by the scripted device.
+ */
+@Getter
+public final class DeviceMessage {
+    private final String topic;
+    @Getter(lombok.AccessLevel.NONE)
+    private final byte[] payload;
+
+    DeviceMessage(String topic, byte[] payload) {
+        this.topic = topic;
+        this.payload = payload;
+    }
+
+    /**
+     * @return received payload, which must not be modified
+     */
+    public byte[] getPayloadBytes() {
+        return payload;
+    }
+
+    public String getPayload() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,14 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+/**
+ * Behavior of the simulated device written as straight-line blocking code, e.g. receive the command, wait, respond and
+ * loop while the device is running. Each device runs its script on its own thread.
+ */
+@FunctionalInterface
+public interface DeviceScript {
+    /**
+     * @param device device running the script
+     * @throws InterruptedException when the device is stopped while the script is blocked
+     */
+    void run(ScriptedDevice device) throws InterruptedException;
+}
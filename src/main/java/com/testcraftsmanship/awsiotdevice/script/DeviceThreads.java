@@ -0,0 +1,36 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads running the device scripts. On Java 21 and later the multi-release jar replaces this class with the one
+ * creating virtual threads, so blocked scripts don't hold platform threads. Here every script gets a platform daemon
+ * thread with small stack.
+ */
+public final class DeviceThreads {
+    private static final long STACK_SIZE = 256L * 1024;
+
+    private DeviceThreads() {
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names followed by the thread number
+     * @return factory of the script threads
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(null, runnable, namePrefix + threadNumber.incrementAndGet(), STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return true when scripts run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return false;
+    }
+}
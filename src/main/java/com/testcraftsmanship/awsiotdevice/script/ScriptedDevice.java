@@ -0,0 +1,127 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated device as seen by its script. Messages received on the subscribed topics are queued in the mailbox of the
+ * device, so the transport thread is never blocked by the script, and the script takes them one by one.
+ */
+public final class ScriptedDevice {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptedDevice.class);
+    private final String deviceId;
+    private final MqttTransport transport;
+    private final List<String> subscriptionTopics;
+    private final BlockingQueue<DeviceMessage> mailbox;
+    private volatile boolean running = true;
+
+    ScriptedDevice(String deviceId, MqttTransport transport, List<String> subscriptionTopics, int mailboxSize) {
+        this.deviceId = deviceId;
+        this.transport = transport;
+        this.subscriptionTopics = subscriptionTopics;
+        this.mailbox = new LinkedBlockingQueue<>(mailboxSize);
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * @return true until the device is stopped, so the script can loop while it is true
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Blocks until the next message is received by the device.
+     *
+     * @return received message
+     * @throws InterruptedException when the device is stopped
+     */
+    public DeviceMessage receive() throws InterruptedException {
+        return mailbox.take();
+    }
+
+    /**
+     * @param timeout maximum time of waiting
+     * @return next received message, empty when timeout elapsed
+     * @throws InterruptedException when the device is stopped
+     */
+    public Optional<DeviceMessage> receive(Duration timeout) throws InterruptedException {
+        return Optional.ofNullable(mailbox.poll(timeout.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Publishes the message with QoS 0.
+     *
+     * @param topic topic of the message
+     * @param payload payload of the message
+     * @throws InterruptedException when the device is stopped
+     */
+    public void publish(String topic, String payload) throws InterruptedException {
+        publish(topic, payload.getBytes(StandardCharsets.UTF_8), MqttQos.AT_MOST_ONCE);
+    }
+
+    /**
+     * Publishes the message blocking until it is acknowledged by the broker when QoS 1 is used. The script waits
+     * for the future of the asynchronous publication, so its virtual thread is unmounted instead of pinning the carrier
+     * inside the synchronized blocking publish of the MQTT client, and it is woken up when the device is stopped.
+     *
+     * @param topic topic of the message
+     * @param payload payload of the message
+     * @param qos quality of service
+     * @throws InterruptedException when the device is stopped
+     */
+    public void publish(String topic, byte[] payload, MqttQos qos) throws InterruptedException {
+        try {
+            transport.publishAsync(topic, payload, qos).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Publication to topic " + topic + " failed.", e.getCause());
+        }
+    }
+
+    /**
+     * @param duration time for which the script is suspended
+     * @throws InterruptedException when the device is stopped
+     */
+    public void sleep(Duration duration) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+    }
+
+    void subscribe() {
+        for (String topic : subscriptionTopics) {
+            transport.subscribe(topic, this::deliver);
+        }
+    }
+
+    void unsubscribe() {
+        for (String topic : subscriptionTopics) {
+            transport.unsubscribe(topic);
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    private void deliver(String topic, byte[] payload) {
+        if (!mailbox.offer(new DeviceMessage(topic, payload))) {
+            LOGGER.warn("Mailbox of device {} is full, message received on topic {} is dropped.", deviceId, topic);
+        }
+    }
+}
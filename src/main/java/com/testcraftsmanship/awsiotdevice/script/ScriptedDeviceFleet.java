@@ -0,0 +1,189 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceFleet;
+import com.testcraftsmanship.awsiotdevice.device.MqttConnectionPool;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceIdRange;
+import com.testcraftsmanship.awsiotdevice.startup.FleetConnections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Group of simulated devices which behavior is the blocking {@link DeviceScript} run by every device on its own thread,
+ * virtual one on Java 21 and later. Occurrences of {deviceId} in the subscribed topics are replaced with id of the
+ * device. Devices are multiplexed over bounded number of MQTT connections like in {@link IoTDeviceFleet}.
+ */
+public class ScriptedDeviceFleet {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptedDeviceFleet.class);
+    private static final int DEFAULT_MAILBOX_SIZE = 1000;
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+    private final FleetConnections connections;
+    private final List<String> deviceIds;
+    private final DeviceScript script;
+    private final List<String> subscriptionTopics = new ArrayList<>();
+    private final ThreadFactory threadFactory = DeviceThreads.factory("iot-device-script-");
+    private final AtomicInteger runningScripts = new AtomicInteger();
+    private final AtomicLong failedScripts = new AtomicLong();
+    private final List<ScriptedDevice> devices = new ArrayList<>();
+    private final List<Thread> scriptThreads = new ArrayList<>();
+    private int mailboxSize = DEFAULT_MAILBOX_SIZE;
+
+    /**
+     * Create new fleet of scripted devices which connects with transports created by the given factory.
+     *
+     * @param transportFactory factory of the MQTT transports
+     * @param deviceIds ids of the simulated devices
+     * @param maxConnections maximum number of MQTT connections shared by the devices
+     * @param script behavior of every device
+     */
+    public ScriptedDeviceFleet(MqttTransportFactory transportFactory, DeviceIdRange deviceIds, int maxConnections,
+                               DeviceScript script) {
+        this(new FleetConnections(transportFactory, maxConnections), deviceIds, script);
+    }
+
+    /**
+     * Create new fleet of scripted devices which leases its connections from the pool shared with other simulators.
+     *
+     * @param connectionPool pool of connections to IoT service
+     * @param deviceIds ids of the simulated devices
+     * @param maxConnections maximum number of MQTT connections leased by the fleet
+     * @param script behavior of every device
+     */
+    public ScriptedDeviceFleet(MqttConnectionPool connectionPool, DeviceIdRange deviceIds, int maxConnections,
+                               DeviceScript script) {
+        this(new FleetConnections(connectionPool, maxConnections), deviceIds, script);
+    }
+
+    private ScriptedDeviceFleet(FleetConnections connections, DeviceIdRange deviceIds, DeviceScript script) {
+        this.connections = connections;
+        this.deviceIds = deviceIds.getDeviceIds();
+        this.script = script;
+    }
+
+    /**
+     * @param topicFilter topic filter subscribed by every device, which has to contain {deviceId} when devices share
+     *                    connections
+     * @return this fleet
+     */
+    public ScriptedDeviceFleet subscribeTo(String topicFilter) {
+        subscriptionTopics.add(topicFilter);
+        return this;
+    }
+
+    /**
+     * @param mailboxSize maximum number of received messages waiting for the script of one device, next ones are
+     *                    dropped; it has to be set before the fleet is started
+     */
+    public void setMailboxSize(int mailboxSize) {
+        this.mailboxSize = mailboxSize;
+    }
+
+    /**
+     * Connects the fleet connections, subscribes the topics of all devices and starts their scripts.
+     */
+    public synchronized void start() {
+        if (!devices.isEmpty()) {
+            LOGGER.warn("Scripted Device Fleet is already running. Staring is redundant.");
+            return;
+        }
+        connections.assertUniquePerDevice(deviceIds.size(), "Subscription topic", subscriptionTopics);
+        connections.lease(deviceIds.size(), null);
+        try {
+            for (int i = 0; i < deviceIds.size(); i++) {
+                String deviceId = deviceIds.get(i);
+                ScriptedDevice device = new ScriptedDevice(deviceId, connections.of(i),
+                        subscriptionTopics.stream()
+                                .map(topic -> topic.replace(FleetConnections.DEVICE_ID_PLACEHOLDER, deviceId))
+                                .collect(Collectors.toList()),
+                        mailboxSize);
+                devices.add(device);
+                device.subscribe();
+            }
+        } catch (RuntimeException e) {
+            devices.forEach(ScriptedDevice::unsubscribe);
+            devices.clear();
+            connections.release();
+            throw e;
+        }
+        for (ScriptedDevice device : devices) {
+            Thread thread = threadFactory.newThread(() -> runScript(device));
+            scriptThreads.add(thread);
+            runningScripts.incrementAndGet();
+            thread.start();
+        }
+        LOGGER.info("Started Scripted Device Fleet of {} devices on {} connections and {} threads",
+                devices.size(), connections.size(), DeviceThreads.isVirtual() ? "virtual" : "platform");
+    }
+
+    /**
+     * Interrupts the scripts, waits until they finish and closes the fleet connections.
+     */
+    public synchronized void stop() {
+        if (devices.isEmpty()) {
+            LOGGER.info("Scripted Device Fleet is not running so it can't be stopped.");
+            return;
+        }
+        devices.forEach(ScriptedDevice::stop);
+        scriptThreads.forEach(Thread::interrupt);
+        long deadline = System.nanoTime() + STOP_TIMEOUT.toNanos();
+        for (Thread thread : scriptThreads) {
+            try {
+                TimeUnit.NANOSECONDS.timedJoin(thread, Math.max(1, deadline - System.nanoTime()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (runningScripts.get() > 0) {
+            LOGGER.warn("{} device scripts haven't finished in {} ms.", runningScripts.get(), STOP_TIMEOUT.toMillis());
+        }
+        devices.forEach(ScriptedDevice::unsubscribe);
+        devices.clear();
+        scriptThreads.clear();
+        connections.release();
+        LOGGER.info("Scripted Device Fleet stopped");
+    }
+
+    /**
+     * @return number of device scripts which haven't finished yet
+     */
+    public int getRunningScriptsCount() {
+        return runningScripts.get();
+    }
+
+    /**
+     * @return number of device scripts which have finished with an exception
+     */
+    public long getFailedScriptsCount() {
+        return failedScripts.get();
+    }
+
+    /**
+     * @return true when device scripts run on virtual threads
+     */
+    public static boolean isRunningOnVirtualThreads() {
+        return DeviceThreads.isVirtual();
+    }
+
+    private void runScript(ScriptedDevice device) {
+        try {
+            script.run(device);
+        } catch (InterruptedException e) {
+            LOGGER.debug("Script of device {} interrupted", device.getDeviceId());
+        } catch (RuntimeException e) {
+            failedScripts.incrementAndGet();
+            LOGGER.error("Script of device {} failed", device.getDeviceId(), e);
+        } finally {
+            runningScripts.decrementAndGet();
+        }
+    }
+}
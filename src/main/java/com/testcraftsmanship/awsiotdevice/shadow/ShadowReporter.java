@@ -0,0 +1,112 @@
+package com.testcraftsmanship.awsiotdevice.shadow;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Device side of the classic shadow of the thing, which behaves like the real device: it gets the shadow when it
+ * starts, takes over the desired state from the delta of the get/accepted response and of every delta message, and
+ * reports it back with update request. It works with AWS IoT Device Shadow service as well as with the simulated
+ * {@link ShadowStore}, as it publishes only the requests which AWS IoT allows devices to publish.
+ */
+public final class ShadowReporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShadowReporter.class);
+    private static final byte[] GET_REQUEST = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final String STATE = "state";
+    private static final String REPORTED = "reported";
+    private static final String DELTA = "delta";
+    private final String shadowTopic;
+    private final List<String> responseTopics;
+    private final JSONObject reported = new JSONObject();
+
+    /**
+     * @param thingName name of the thing which shadow is reported by the device
+     */
+    public ShadowReporter(String thingName) {
+        this.shadowTopic = "$aws/things/" + thingName + "/shadow";
+        this.responseTopics = Arrays.asList(shadowTopic + "/update/" + DELTA, shadowTopic + "/get/accepted");
+    }
+
+    /**
+     * @return topics of the delta messages and get responses subscribed by the device
+     */
+    public List<String> getResponseTopics() {
+        return responseTopics;
+    }
+
+    /**
+     * @param topic topic of the received message
+     * @return true when the message is delta or get response of the reported shadow
+     */
+    public boolean isResponseTopic(String topic) {
+        return responseTopics.contains(topic);
+    }
+
+    /**
+     * Passes the get request published when the device starts to the publisher.
+     *
+     * @param publisher publisher of the request
+     */
+    public void requestShadow(BiConsumer<String, byte[]> publisher) {
+        publisher.accept(shadowTopic + "/get", GET_REQUEST);
+    }
+
+    /**
+     * Merges the delta of the message into the reported state and passes the update request reporting it to the
+     * publisher. Messages without delta, e.g. get response of the shadow in sync, are not reported.
+     *
+     * @param topic topic of the delta message or get response
+     * @param payload payload of the message
+     * @param publisher publisher of the update request
+     * @return top level values of the reported state changed by the delta
+     */
+    public synchronized Map<String, Object> handle(String topic, byte[] payload, BiConsumer<String, byte[]> publisher) {
+        JSONObject delta;
+        try {
+            JSONObject message = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+            JSONObject state = message.optJSONObject(STATE);
+            delta = state == null || topic.endsWith(DELTA) ? state : state.optJSONObject(DELTA);
+        } catch (JSONException e) {
+            LOGGER.warn("Shadow message received on topic {} is not valid json: {}", topic, e.getMessage());
+            return Collections.emptyMap();
+        }
+        if (delta == null || delta.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (String name : delta.keySet()) {
+            merge(reported, name, delta.get(name));
+            changed.put(name, reported.get(name));
+        }
+        JSONObject update = new JSONObject().put(STATE, new JSONObject().put(REPORTED, delta));
+        publisher.accept(shadowTopic + "/update", update.toString().getBytes(StandardCharsets.UTF_8));
+        return changed;
+    }
+
+    /**
+     * @return state reported by the device so far
+     */
+    public synchronized String getReportedState() {
+        return reported.toString();
+    }
+
+    private static void merge(JSONObject section, String name, Object value) {
+        Object current = section.opt(name);
+        if (current instanceof JSONObject && value instanceof JSONObject) {
+            JSONObject update = (JSONObject) value;
+            update.keySet().forEach(key -> merge((JSONObject) current, key, update.get(key)));
+        } else {
+            section.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.testcraftsmanship.awsiotdevice.shadow;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message published by the shadow service in response to the request, e.g. accepted or delta.
+ */
+final class ShadowResponse {
+    private final String topicSuffix;
+    private final byte[] payload;
+
+    ShadowResponse(String topicSuffix, String payload) {
+        this.topicSuffix = topicSuffix;
+        this.payload = payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    String getTopicSuffix() {
+        return topicSuffix;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+}
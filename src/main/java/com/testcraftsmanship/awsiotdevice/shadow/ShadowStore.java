@@ -0,0 +1,106 @@
+package com.testcraftsmanship.awsiotdevice.shadow;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory AWS IoT Device Shadow service of the simulated things. It answers update, get and delete requests of the
+ * classic and named shadows published on $aws/things/{thing}/shadow topics with accepted, rejected and delta messages,
+ * so the application can be tested with the shadow protocol without AWS. Shadows are kept until the store is cleared.
+ * It replaces the service, so it can't be used with AWS IoT, where responses on the reserved $aws topics come from the
+ * service only; {@link ShadowReporter} simulates the device side there.
+ */
+public final class ShadowStore {
+    private static final String THINGS_PREFIX = "$aws/things/";
+    private static final String SHADOW = "/shadow";
+    private static final String NAMED_SHADOW = SHADOW + "/name/";
+    private static final String UPDATE = "update";
+    private static final String GET = "get";
+    private static final String DELETE = "delete";
+    private static final List<String> OPERATIONS = Arrays.asList(UPDATE, GET, DELETE);
+    private final Map<String, ThingShadow> shadows = new ConcurrentHashMap<>();
+
+    /**
+     * @param thingName name of the thing
+     * @return topics of the requests to the classic and named shadows of the thing
+     */
+    public static List<String> requestTopicsOf(String thingName) {
+        String shadowTopic = THINGS_PREFIX + thingName + SHADOW;
+        String namedShadowTopic = THINGS_PREFIX + thingName + NAMED_SHADOW + "+";
+        return Arrays.asList(shadowTopic + "/" + UPDATE, shadowTopic + "/" + GET, shadowTopic + "/" + DELETE,
+                namedShadowTopic + "/" + UPDATE, namedShadowTopic + "/" + GET, namedShadowTopic + "/" + DELETE);
+    }
+
+    /**
+     * @param topic topic of the received message
+     * @return true when the message is a request to the shadow service
+     */
+    public static boolean isRequestTopic(String topic) {
+        int operationStart = topic.lastIndexOf('/');
+        return topic.startsWith(THINGS_PREFIX) && operationStart > 0
+                && topic.lastIndexOf(SHADOW, operationStart) > THINGS_PREFIX.length()
+                && OPERATIONS.contains(topic.substring(operationStart + 1));
+    }
+
+    /**
+     * Handles the request and passes the responses to the publisher, e.g. accepted message to the topic of the request
+     * followed by /accepted and delta message of the update to the topic followed by /delta.
+     *
+     * @param topic topic of the request
+     * @param payload payload of the request
+     * @param publisher publisher of the responses
+     */
+    public void handle(String topic, byte[] payload, BiConsumer<String, byte[]> publisher) {
+        int operationStart = topic.lastIndexOf('/');
+        String shadowTopic = topic.substring(0, operationStart);
+        String operation = topic.substring(operationStart + 1);
+        ThingShadow shadow = shadows.computeIfAbsent(shadowTopic, ShadowStore::createShadow);
+        List<ShadowResponse> responses;
+        if (UPDATE.equals(operation)) {
+            responses = shadow.update(payload);
+        } else if (GET.equals(operation)) {
+            responses = shadow.get(payload);
+        } else {
+            responses = shadow.delete(payload);
+        }
+        responses.forEach(response -> publisher.accept(topic + response.getTopicSuffix(), response.getPayload()));
+    }
+
+    /**
+     * @param thingName name of the thing
+     * @return state and version of the classic shadow of the thing, empty when it doesn't exist
+     */
+    public Optional<String> getShadowDocument(String thingName) {
+        return documentOf(THINGS_PREFIX + thingName + SHADOW);
+    }
+
+    /**
+     * @param thingName name of the thing
+     * @param shadowName name of the shadow
+     * @return state and version of the named shadow of the thing, empty when it doesn't exist
+     */
+    public Optional<String> getShadowDocument(String thingName, String shadowName) {
+        return documentOf(THINGS_PREFIX + thingName + NAMED_SHADOW + shadowName);
+    }
+
+    public void clear() {
+        shadows.clear();
+    }
+
+    private Optional<String> documentOf(String shadowTopic) {
+        ThingShadow shadow = shadows.get(shadowTopic);
+        return shadow == null ? Optional.empty() : Optional.ofNullable(shadow.getDocument());
+    }
+
+    private static ThingShadow createShadow(String shadowTopic) {
+        int namedShadow = shadowTopic.indexOf(NAMED_SHADOW);
+        if (namedShadow > 0) {
+            return new ThingShadow(shadowTopic.substring(namedShadow + NAMED_SHADOW.length()));
+        }
+        return new ThingShadow(shadowTopic.substring(THINGS_PREFIX.length(), shadowTopic.length() - SHADOW.length()));
+    }
+}
@@ -0,0 +1,292 @@
+package com.testcraftsmanship.awsiotdevice.shadow;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Versioned shadow document of one thing. Delta is kept together with the desired and reported state and updated only
+ * on the paths changed by the update, so updates cost as much as their own size, not the size of the document.
+ */
+final class ThingShadow {
+    static final String ACCEPTED = "/accepted";
+    static final String REJECTED = "/rejected";
+    static final String DELTA = "/delta";
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int CONFLICT = 409;
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final String STATE = "state";
+    private static final String DESIRED = "desired";
+    private static final String REPORTED = "reported";
+    private static final String VERSION = "version";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String CLIENT_TOKEN = "clientToken";
+    private final String shadowName;
+    private JSONObject desired = new JSONObject();
+    private JSONObject reported = new JSONObject();
+    private JSONObject delta = new JSONObject();
+    private long version;
+    private boolean exists;
+
+    ThingShadow(String shadowName) {
+        this.shadowName = shadowName;
+    }
+
+    synchronized List<ShadowResponse> update(byte[] payload) {
+        JSONObject request;
+        try {
+            request = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            return rejected(BAD_REQUEST, "Invalid JSON", null);
+        }
+        String clientToken = request.optString(CLIENT_TOKEN, null);
+        JSONObject state = request.optJSONObject(STATE);
+        if (state == null) {
+            return rejected(BAD_REQUEST, "Missing required node: state", clientToken);
+        }
+        Object desiredUpdate = state.opt(DESIRED);
+        Object reportedUpdate = state.opt(REPORTED);
+        if (!isSection(desiredUpdate) || !isSection(reportedUpdate)) {
+            return rejected(BAD_REQUEST, "State node must be an object or null", clientToken);
+        }
+        if (request.has(VERSION) && request.optLong(VERSION, -1) != version) {
+            return rejected(CONFLICT, "Version conflict", clientToken);
+        }
+        List<List<String>> changedDesiredPaths = new ArrayList<>();
+        if (desiredUpdate == JSONObject.NULL) {
+            desired = new JSONObject();
+            delta = new JSONObject();
+        } else if (desiredUpdate != null) {
+            merge(desired, (JSONObject) desiredUpdate, new ArrayList<>(), changedDesiredPaths);
+        }
+        if (reportedUpdate == JSONObject.NULL) {
+            reported = new JSONObject();
+            delta = new JSONObject();
+            recomputeDelta(Collections.emptyList(), desired);
+        } else if (reportedUpdate != null) {
+            merge(reported, (JSONObject) reportedUpdate, new ArrayList<>(), null);
+        }
+        version++;
+        exists = true;
+        long timestamp = System.currentTimeMillis() / MILLIS_PER_SECOND;
+        List<ShadowResponse> responses = new ArrayList<>();
+        JSONObject accepted = new JSONObject().put(STATE, state).put(VERSION, version).put(TIMESTAMP, timestamp);
+        responses.add(new ShadowResponse(ACCEPTED, withClientToken(accepted, clientToken).toString()));
+        JSONObject changedDelta = changedDelta(changedDesiredPaths);
+        if (!changedDelta.isEmpty()) {
+            JSONObject deltaMessage = new JSONObject().put(STATE, changedDelta).put(VERSION, version).put(TIMESTAMP, timestamp);
+            responses.add(new ShadowResponse(DELTA, deltaMessage.toString()));
+        }
+        return responses;
+    }
+
+    synchronized List<ShadowResponse> get(byte[] payload) {
+        String clientToken = clientTokenOf(payload);
+        if (!exists) {
+            return rejected(NOT_FOUND, "No shadow exists with name: '" + shadowName + "'", clientToken);
+        }
+        JSONObject document = document().put(TIMESTAMP, System.currentTimeMillis() / MILLIS_PER_SECOND);
+        return Collections.singletonList(new ShadowResponse(ACCEPTED, withClientToken(document, clientToken).toString()));
+    }
+
+    synchronized List<ShadowResponse> delete(byte[] payload) {
+        String clientToken = clientTokenOf(payload);
+        if (!exists) {
+            return rejected(NOT_FOUND, "No shadow exists with name: '" + shadowName + "'", clientToken);
+        }
+        exists = false;
+        desired = new JSONObject();
+        reported = new JSONObject();
+        delta = new JSONObject();
+        JSONObject accepted = new JSONObject().put(VERSION, version)
+                .put(TIMESTAMP, System.currentTimeMillis() / MILLIS_PER_SECOND);
+        return Collections.singletonList(new ShadowResponse(ACCEPTED, withClientToken(accepted, clientToken).toString()));
+    }
+
+    /**
+     * @return state with desired, reported and delta sections and version of the shadow, null when it doesn't exist
+     */
+    synchronized String getDocument() {
+        return exists ? document().toString() : null;
+    }
+
+    private JSONObject document() {
+        JSONObject state = new JSONObject();
+        if (!desired.isEmpty()) {
+            state.put(DESIRED, desired);
+        }
+        if (!reported.isEmpty()) {
+            state.put(REPORTED, reported);
+        }
+        if (!delta.isEmpty()) {
+            state.put("delta", delta);
+        }
+        return new JSONObject().put(STATE, state).put(VERSION, version);
+    }
+
+    /**
+     * Merges the update into the section, null values remove the keys, and refreshes delta on every changed path.
+     */
+    private void merge(JSONObject section, JSONObject update, List<String> path, List<List<String>> changedPaths) {
+        for (String key : update.keySet()) {
+            Object value = update.get(key);
+            path.add(key);
+            if (value instanceof JSONObject) {
+                JSONObject child = section.optJSONObject(key);
+                if (child == null) {
+                    child = new JSONObject();
+                    section.put(key, child);
+                    refreshDelta(path);
+                }
+                merge(child, (JSONObject) value, path, changedPaths);
+            } else {
+                if (value == JSONObject.NULL) {
+                    section.remove(key);
+                } else {
+                    section.put(key, value);
+                }
+                refreshDelta(path);
+                if (changedPaths != null) {
+                    changedPaths.add(new ArrayList<>(path));
+                }
+            }
+            path.remove(path.size() - 1);
+        }
+    }
+
+    /**
+     * Recomputes delta of the desired value which contains the path: the leaf on the path or the whole desired
+     * subtree under it.
+     */
+    private void refreshDelta(List<String> path) {
+        JSONObject node = desired;
+        for (int i = 0; i < path.size(); i++) {
+            Object value = node.opt(path.get(i));
+            List<String> prefix = path.subList(0, i + 1);
+            if (value == null) {
+                removeAt(delta, prefix);
+                return;
+            }
+            if (!(value instanceof JSONObject) || i == path.size() - 1) {
+                recomputeDelta(prefix, value);
+                return;
+            }
+            node = (JSONObject) value;
+        }
+    }
+
+    private void recomputeDelta(List<String> path, Object desiredValue) {
+        if (desiredValue instanceof JSONObject) {
+            if (!path.isEmpty() && !(valueAt(delta, path) instanceof JSONObject)) {
+                removeAt(delta, path);
+            }
+            JSONObject desiredObject = (JSONObject) desiredValue;
+            List<String> childPath = new ArrayList<>(path);
+            for (String key : desiredObject.keySet()) {
+                childPath.add(key);
+                recomputeDelta(childPath, desiredObject.get(key));
+                childPath.remove(childPath.size() - 1);
+            }
+        } else if (isSameValue(desiredValue, valueAt(reported, path))) {
+            removeAt(delta, path);
+        } else {
+            putAt(delta, path, desiredValue);
+        }
+    }
+
+    private JSONObject changedDelta(List<List<String>> changedPaths) {
+        JSONObject changed = new JSONObject();
+        for (List<String> path : changedPaths) {
+            Object value = valueAt(delta, path);
+            if (value != null) {
+                putAt(changed, path, value);
+            }
+        }
+        return changed;
+    }
+
+    private static Object valueAt(JSONObject root, List<String> path) {
+        Object value = root;
+        for (String key : path) {
+            if (!(value instanceof JSONObject)) {
+                return null;
+            }
+            value = ((JSONObject) value).opt(key);
+        }
+        return value;
+    }
+
+    private static void putAt(JSONObject root, List<String> path, Object value) {
+        JSONObject node = root;
+        for (String key : path.subList(0, path.size() - 1)) {
+            JSONObject child = node.optJSONObject(key);
+            if (child == null) {
+                child = new JSONObject();
+                node.put(key, child);
+            }
+            node = child;
+        }
+        node.put(path.get(path.size() - 1), value);
+    }
+
+    /**
+     * Removes the value on the path together with the objects which became empty.
+     */
+    private static void removeAt(JSONObject root, List<String> path) {
+        List<JSONObject> nodes = new ArrayList<>(path.size());
+        JSONObject node = root;
+        for (String key : path.subList(0, path.size() - 1)) {
+            nodes.add(node);
+            node = node.optJSONObject(key);
+            if (node == null) {
+                return;
+            }
+        }
+        node.remove(path.get(path.size() - 1));
+        for (int i = nodes.size() - 1; i >= 0 && node.isEmpty(); i--) {
+            node = nodes.get(i);
+            node.remove(path.get(i));
+        }
+    }
+
+    private static boolean isSameValue(Object first, Object second) {
+        if (first instanceof Number && second instanceof Number) {
+            return new BigDecimal(first.toString()).compareTo(new BigDecimal(second.toString())) == 0;
+        }
+        if (first instanceof JSONArray) {
+            return ((JSONArray) first).similar(second);
+        }
+        return Objects.equals(first, second);
+    }
+
+    private static boolean isSection(Object section) {
+        return section == null || section instanceof JSONObject || section == JSONObject.NULL;
+    }
+
+    private static String clientTokenOf(byte[] payload) {
+        try {
+            return payload.length == 0 ? null
+                    : new JSONObject(new String(payload, StandardCharsets.UTF_8)).optString(CLIENT_TOKEN, null);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static JSONObject withClientToken(JSONObject message, String clientToken) {
+        return clientToken == null ? message : message.put(CLIENT_TOKEN, clientToken);
+    }
+
+    private static List<ShadowResponse> rejected(int code, String message, String clientToken) {
+        JSONObject rejection = new JSONObject().put("code", code).put("message", message)
+                .put(TIMESTAMP, System.currentTimeMillis() / MILLIS_PER_SECOND);
+        return Collections.singletonList(new ShadowResponse(REJECTED, withClientToken(rejection, clientToken).toString()));
+    }
+}
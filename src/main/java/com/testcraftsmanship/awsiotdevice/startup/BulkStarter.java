@@ -0,0 +1,236 @@
+package com.testcraftsmanship.awsiotdevice.startup;
+
+import com.testcraftsmanship.awsiotdevice.device.LatencyRecorder;
+import com.testcraftsmanship.awsiotdevice.device.LatencyStage;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Starts many simulators, fleets or connections concurrently within the connects per second budget of
+ * {@link StartupPolicy}. Attempts are spread evenly in time, so the broker never sees a burst bigger than the budget,
+ * and failed attempts are retried after exponential backoff with jitter, so throttled devices don't retry in lockstep.
+ */
+public final class BulkStarter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkStarter.class);
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private static final int LOGGED_PROGRESS_STEPS = 10;
+    private final StartupPolicy policy;
+    private Predicate<RuntimeException> retryable = failure -> true;
+    private StartupProgressListener progressListener;
+
+    public BulkStarter(StartupPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @param retryableFailure condition of the failures which are retried, e.g. throttling errors only; by default all
+     *                         failures are retried
+     * @return this starter
+     */
+    public BulkStarter retryOn(Predicate<RuntimeException> retryableFailure) {
+        this.retryable = retryableFailure;
+        return this;
+    }
+
+    /**
+     * @param listener listener of the progress replacing the default one, which logs every tenth part of the devices
+     * @return this starter
+     */
+    public BulkStarter onProgress(StartupProgressListener listener) {
+        this.progressListener = listener;
+        return this;
+    }
+
+    /**
+     * Starts the devices blocking until all of them are started or failed.
+     *
+     * @param devices simulators or fleets to be started
+     * @return report of the startup
+     */
+    public StartupReport start(Collection<? extends DeviceRunnable> devices) {
+        return startAll(devices, DeviceRunnable::start);
+    }
+
+    /**
+     * Starts the items with the given action under the policy, e.g. leases connections from the pool.
+     *
+     * @param items   items to be started
+     * @param starter action starting one item, which reports failure with unchecked exception
+     * @param <T>     type of the items
+     * @return report of the startup
+     */
+    public <T> StartupReport startAll(Collection<T> items, Consumer<? super T> starter) {
+        return new Run<>(items, starter, "start", LatencyStage.STARTUP).execute();
+    }
+
+    /**
+     * Stops the devices concurrently without connect budget and retries. Times of the report are recorded under
+     * {@link LatencyStage#SHUTDOWN}.
+     *
+     * @param devices simulators or fleets to be stopped
+     * @return report of the shutdown
+     */
+    public StartupReport stop(Collection<? extends DeviceRunnable> devices) {
+        return new Run<DeviceRunnable>(devices, DeviceRunnable::stop, "stop", LatencyStage.SHUTDOWN).execute();
+    }
+
+    private final class Run<T> {
+        private final List<T> items;
+        private final Consumer<? super T> action;
+        private final String actionName;
+        private final LatencyStage stage;
+        private final boolean throttled;
+        private final long attemptIntervalNanos = (long) (NANOS_PER_SECOND / policy.getConnectsPerSecond());
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong nextAttemptNanos = new AtomicLong(startNanos);
+        private final AtomicInteger nextItem = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final LongAdder retries = new LongAdder();
+        private final LatencyRecorder completionTimes = new LatencyRecorder();
+        private final int loggedProgressStep;
+
+        private Run(Collection<? extends T> items, Consumer<? super T> action, String actionName, LatencyStage stage) {
+            this.items = new ArrayList<>(items);
+            this.action = action;
+            this.actionName = actionName;
+            this.stage = stage;
+            this.throttled = stage == LatencyStage.STARTUP;
+            this.loggedProgressStep = Math.max(1, this.items.size() / LOGGED_PROGRESS_STEPS);
+        }
+
+        private StartupReport execute() {
+            int threads = Math.max(1, Math.min(policy.getConcurrency(), items.size()));
+            ExecutorService workers = Executors.newFixedThreadPool(threads, new StartupThreadFactory());
+            LOGGER.info("Bulk {} of {} devices on {} threads", actionName, items.size(), threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(workers.submit(this::work));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Bulk {} interrupted after {} devices", actionName, completed.get() + failed.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Bulk " + actionName + " failed", e.getCause());
+            } finally {
+                workers.shutdownNow();
+            }
+            StartupReport report = new StartupReport(items.size(), completed.get(), failed.get(), retries.sum(),
+                    Duration.ofNanos(System.nanoTime() - startNanos), completionTimes.snapshot(stage));
+            LOGGER.info("Bulk {} finished: {}", actionName, report);
+            return report;
+        }
+
+        private void work() {
+            int index = nextItem.getAndIncrement();
+            while (index < items.size() && !Thread.currentThread().isInterrupted()) {
+                startItem(items.get(index));
+                index = nextItem.getAndIncrement();
+            }
+        }
+
+        private void startItem(T item) {
+            int maxAttempts = throttled ? policy.getMaxAttempts() : 1;
+            long firstAttemptNanos = 0;
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                if (throttled && !waitUntil(reserveAttempt())) {
+                    return;
+                }
+                if (attempt == 1) {
+                    firstAttemptNanos = System.nanoTime();
+                }
+                try {
+                    action.accept(item);
+                    completionTimes.record(stage, System.nanoTime() - firstAttemptNanos);
+                    reportProgress(completed.incrementAndGet(), failed.get());
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt == maxAttempts || !retryable.test(e)) {
+                        LOGGER.warn("Unable to {} device after {} attempts", actionName, attempt, e);
+                        break;
+                    }
+                    retries.increment();
+                    LOGGER.debug("Attempt {} to {} device failed", attempt, actionName, e);
+                    if (!waitUntil(System.nanoTime() + jittered(policy.backoffAfter(attempt)))) {
+                        return;
+                    }
+                }
+            }
+            reportProgress(completed.get(), failed.incrementAndGet());
+        }
+
+        /**
+         * @return time of the attempt, which is the interval of the budget after the previous one, or now when the
+         *         budget hasn't been used recently
+         */
+        private long reserveAttempt() {
+            long now = System.nanoTime();
+            long previous = nextAttemptNanos.getAndAccumulate(now, (next, time) -> Math.max(next, time) + attemptIntervalNanos);
+            return Math.max(previous, now);
+        }
+
+        /**
+         * Equal jitter keeps at least half of the backoff and spreads the rest randomly.
+         */
+        private long jittered(Duration backoff) {
+            long half = backoff.toNanos() / 2;
+            return half + ThreadLocalRandom.current().nextLong(half + 1);
+        }
+
+        private void reportProgress(int completedCount, int failedCount) {
+            if (progressListener != null) {
+                progressListener.progress(completedCount, failedCount, items.size());
+                return;
+            }
+            int done = completedCount + failedCount;
+            if (done % loggedProgressStep == 0 || done == items.size()) {
+                LOGGER.info("Bulk {}: {} of {} devices done, {} failed", actionName, done, items.size(), failedCount);
+            }
+        }
+
+        private boolean waitUntil(long dueNanos) {
+            long remaining = dueNanos - System.nanoTime();
+            while (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                remaining = dueNanos - System.nanoTime();
+            }
+            return true;
+        }
+    }
+
+    private static final class StartupThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "iot-device-startup-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.testcraftsmanship.awsiotdevice.startup;
+
+import com.testcraftsmanship.awsiotdevice.device.MqttConnectionPool;
+import com.testcraftsmanship.awsiotdevice.device.PublicationWindow;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bounded set of MQTT connections over which devices of a fleet are multiplexed. Connections are leased from the pool
+ * shared with other simulators, or from the own pool of the fleet which is closed when connections are released.
+ * Device of the given index is assigned to the connections round robin, and every connection has one publication window
+ * shared by all its devices.
+ */
+public final class FleetConnections {
+    public static final String DEVICE_ID_PLACEHOLDER = "{deviceId}";
+    private static final Logger LOGGER = LoggerFactory.getLogger(FleetConnections.class);
+    private static final Duration IN_FLIGHT_DRAIN_TIMEOUT = Duration.ofSeconds(5);
+    private final MqttTransportFactory transportFactory;
+    private final MqttConnectionPool sharedConnectionPool;
+    private final int maxConnections;
+    private final List<MqttTransport> connections = new ArrayList<>();
+    private final List<PublicationWindow> windows = new ArrayList<>();
+    private MqttConnectionPool connectionPool;
+
+    /**
+     * @param transportFactory factory of the MQTT transports of the own pool
+     * @param maxConnections maximum number of MQTT connections shared by the devices
+     */
+    public FleetConnections(MqttTransportFactory transportFactory, int maxConnections) {
+        this(transportFactory, null, maxConnections);
+    }
+
+    /**
+     * @param connectionPool pool of connections shared with other simulators
+     * @param maxConnections maximum number of MQTT connections leased by the fleet
+     */
+    public FleetConnections(MqttConnectionPool connectionPool, int maxConnections) {
+        this(null, connectionPool, Math.min(maxConnections, connectionPool.getMaxSize()));
+    }
+
+    private FleetConnections(MqttTransportFactory transportFactory, MqttConnectionPool connectionPool,
+                             int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Fleet needs at least one connection.");
+        }
+        this.transportFactory = transportFactory;
+        this.sharedConnectionPool = connectionPool;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @param devicesCount number of the devices of the fleet
+     * @return number of the connections leased for the devices
+     */
+    public int countFor(int devicesCount) {
+        return Math.min(maxConnections, devicesCount);
+    }
+
+    /**
+     * Devices sharing one connection can't subscribe the same topic as MQTT client keeps one listener per topic.
+     *
+     * @param devicesCount number of the devices of the fleet
+     * @param description  description of the checked names, e.g. "Subscription topic"
+     * @param names        topics or other names of the device which have to be unique, null ones are skipped
+     */
+    public void assertUniquePerDevice(int devicesCount, String description, Collection<String> names) {
+        if (countFor(devicesCount) == devicesCount) {
+            return;
+        }
+        for (String name : names) {
+            if (name != null && !name.contains(DEVICE_ID_PLACEHOLDER)) {
+                throw new IllegalStateException(description + " " + name + " has to contain "
+                        + DEVICE_ID_PLACEHOLDER + " when devices share connections.");
+            }
+        }
+    }
+
+    /**
+     * Leases the connections for the devices, one by one or concurrently within the connects per second budget of the
+     * policy. Connections leased so far are released when any of them can't be leased.
+     *
+     * @param devicesCount number of the devices of the fleet
+     * @param startupPolicy policy of connecting the connections, null to connect them one by one
+     */
+    public synchronized void lease(int devicesCount, StartupPolicy startupPolicy) {
+        int connectionsCount = countFor(devicesCount);
+        connectionPool = sharedConnectionPool != null ? sharedConnectionPool
+                : new MqttConnectionPool(transportFactory, connectionsCount);
+        if (startupPolicy == null) {
+            try {
+                for (int i = 0; i < connectionsCount; i++) {
+                    connections.add(connectionPool.lease());
+                }
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+            return;
+        }
+        List<MqttTransport> leased = Collections.synchronizedList(new ArrayList<>());
+        StartupReport report = new BulkStarter(startupPolicy)
+                .startAll(Collections.nCopies(connectionsCount, connectionPool), pool -> leased.add(pool.lease()));
+        connections.addAll(leased);
+        if (report.getCompleted() < connectionsCount) {
+            release();
+            throw new IllegalStateException("Only " + report.getCompleted() + " of " + connectionsCount
+                    + " fleet connections have been connected.");
+        }
+    }
+
+    /**
+     * @param deviceIndex index of the device in the fleet
+     * @return connection assigned to the device
+     */
+    public synchronized MqttTransport of(int deviceIndex) {
+        return connections.get(deviceIndex % connections.size());
+    }
+
+    /**
+     * @param deviceIndex index of the device in the fleet
+     * @param size size of the window, used when it's created by the first device of the connection
+     * @return publication window of the connection assigned to the device
+     */
+    public synchronized PublicationWindow windowOf(int deviceIndex, int size) {
+        int connectionIndex = deviceIndex % connections.size();
+        while (windows.size() <= connectionIndex) {
+            windows.add(null);
+        }
+        if (windows.get(connectionIndex) == null) {
+            windows.set(connectionIndex, new PublicationWindow(connections.get(connectionIndex), size));
+        }
+        return windows.get(connectionIndex);
+    }
+
+    /**
+     * @return number of the leased connections
+     */
+    public synchronized int size() {
+        return connections.size();
+    }
+
+    /**
+     * Waits for the publications of the connections to finish and returns the connections to the shared pool, or closes
+     * the own pool of the fleet.
+     */
+    public synchronized void release() {
+        if (connectionPool == null) {
+            return;
+        }
+        for (PublicationWindow window : windows) {
+            if (window != null && !window.drain(IN_FLIGHT_DRAIN_TIMEOUT)) {
+                LOGGER.warn("{} publications are still in flight when fleet connection is released.",
+                        window.getInFlightCount());
+            }
+        }
+        connections.forEach(connectionPool::release);
+        connections.clear();
+        windows.clear();
+        if (sharedConnectionPool == null) {
+            connectionPool.close();
+        }
+        connectionPool = null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.testcraftsmanship.awsiotdevice.startup;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Limits of the bulk startup: connects per second budget shared by all starting threads, number of the threads and
+ * exponential backoff of the failed attempts. Every attempt, retried one too, uses the connect budget.
+ */
+@Getter
+public final class StartupPolicy {
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+    private final double connectsPerSecond;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    /**
+     * Creates policy retrying each device up to 5 times with backoff growing from 1 to 30 seconds.
+     *
+     * @param connectsPerSecond maximum rate of the start attempts
+     * @param concurrency       number of threads starting the devices
+     */
+    public StartupPolicy(double connectsPerSecond, int concurrency) {
+        this(connectsPerSecond, concurrency, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * @param connectsPerSecond maximum rate of the start attempts
+     * @param concurrency       number of threads starting the devices
+     * @param maxAttempts       number of attempts to start one device
+     * @param initialBackoff    backoff after the first failed attempt, doubled after every next one
+     * @param maxBackoff        upper limit of the backoff
+     */
+    public StartupPolicy(double connectsPerSecond, int concurrency, int maxAttempts, Duration initialBackoff,
+                         Duration maxBackoff) {
+        if (connectsPerSecond <= 0) {
+            throw new IllegalArgumentException("Connects per second have to be positive.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Startup needs at least one thread.");
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Device has to be started at least once.");
+        }
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("Maximum backoff can't be shorter than the initial one.");
+        }
+        this.connectsPerSecond = connectsPerSecond;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @param failedAttempts number of failed attempts, at least one
+     * @return backoff before the next attempt without jitter
+     */
+    Duration backoffAfter(int failedAttempts) {
+        Duration backoff = initialBackoff;
+        for (int i = 1; i < failedAttempts && backoff.compareTo(maxBackoff) < 0; i++) {
+            backoff = backoff.multipliedBy(2);
+        }
+        return backoff.compareTo(maxBackoff) < 0 ? backoff : maxBackoff;
+    }
+}
@@ -0,0 +1,14 @@
+package com.testcraftsmanship.awsiotdevice.startup;
+
+/**
+ * Listener of the bulk startup progress, called by the starting threads after every device.
+ */
+@FunctionalInterface
+public interface StartupProgressListener {
+    /**
+     * @param completed number of devices started, or stopped, so far
+     * @param failed    number of devices which couldn't be started, or stopped, so far
+     * @param total     number of all the devices
+     */
+    void progress(int completed, int failed, int total);
+}
@@ -0,0 +1,36 @@
+package com.testcraftsmanship.awsiotdevice.startup;
+
+import com.testcraftsmanship.awsiotdevice.device.LatencySnapshot;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Outcome of the bulk startup, or shutdown, with distribution of the times in which devices were started, or stopped
+ * in case of shutdown.
+ */
+@Getter
+public final class StartupReport {
+    private final int requested;
+    private final int completed;
+    private final int failed;
+    private final long retries;
+    private final Duration elapsed;
+    private final LatencySnapshot startupTimes;
+
+    StartupReport(int requested, int completed, int failed, long retries, Duration elapsed,
+                  LatencySnapshot startupTimes) {
+        this.requested = requested;
+        this.completed = completed;
+        this.failed = failed;
+        this.retries = retries;
+        this.elapsed = elapsed;
+        this.startupTimes = startupTimes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("completed %d of %d devices, %d failed, %d retries, elapsed %d ms, startup time %s",
+                completed, requested, failed, retries, elapsed.toMillis(), startupTimes);
+    }
+}
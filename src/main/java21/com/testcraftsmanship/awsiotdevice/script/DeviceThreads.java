@@ -0,0 +1,27 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads running the device scripts. Every script gets a virtual thread, so tens of thousands of devices blocked in
+ * their scripts are carried by a few platform threads.
+ */
+public final class DeviceThreads {
+    private DeviceThreads() {
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names followed by the thread number
+     * @return factory of the script threads
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        return Thread.ofVirtual().name(namePrefix, 1).factory();
+    }
+
+    /**
+     * @return true when scripts run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return true;
+    }
+}
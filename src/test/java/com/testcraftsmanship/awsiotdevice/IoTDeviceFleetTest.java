@@ -0,0 +1,147 @@
+package com.testcraftsmanship.awsiotdevice;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import com.testcraftsmanship.awsiotdevice.device.transport.ObservedTransport;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceIdRange;
+import com.testcraftsmanship.awsiotdevice.startup.StartupPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IoTDeviceFleetTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+    private final List<MqttTransport> connections = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void devicesShouldRespondOnTheirOwnTopicsSpreadOverConnections() throws InterruptedException {
+        BlockingQueue<String> reportTopics = new LinkedBlockingQueue<>();
+        loopback.getTestedApplication().subscribe("things/+/report", (topic, payload) -> reportTopics.add(topic));
+        IoTDeviceFleet fleet = heaterFleet("things/{deviceId}/cmd", 3);
+
+        fleet.start();
+        for (int i = 1; i <= 6; i++) {
+            loopback.publish("things/flat" + i + "/cmd", "{\"state\": \"on\"}");
+        }
+        Set<String> reports = new HashSet<>();
+        for (int i = 1; i <= 6; i++) {
+            reports.add(reportTopics.poll(1, TimeUnit.SECONDS));
+        }
+        int runningDevices = fleet.getRunningDevicesCount();
+        fleet.stop();
+
+        assertThat(runningDevices).isEqualTo(6);
+        assertThat(reports).hasSize(6).contains("things/flat1/report", "things/flat6/report");
+        assertThat(connections).hasSize(3).noneMatch(MqttTransport::isConnected);
+        assertThat(fleet.getRunningDevicesCount()).isZero();
+    }
+
+    @Test
+    public void devicesShouldBeAssignedToConnectionsRoundRobin() {
+        IoTDeviceFleet fleet = heaterFleet("things/{deviceId}/cmd", 3);
+
+        fleet.start();
+        List<Set<String>> subscribedTopics = new CopyOnWriteArrayList<>();
+        connections.forEach(connection -> subscribedTopics.add(new HashSet<>(connection.getSubscribedTopics())));
+        fleet.stop();
+
+        assertThat(subscribedTopics).containsExactly(
+                Set.of("things/flat1/cmd", "things/flat4/cmd"),
+                Set.of("things/flat2/cmd", "things/flat5/cmd"),
+                Set.of("things/flat3/cmd", "things/flat6/cmd"));
+    }
+
+    @Test
+    public void devicesSharingConnectionsShouldSubscribeTopicsWithDeviceId() {
+        IoTDeviceFleet sharingFleet = heaterFleet("things/cmd", 3);
+        IoTDeviceFleet notSharingFleet = heaterFleet("things/cmd", 6);
+
+        assertThatThrownBy(sharingFleet::start)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("{deviceId}");
+        notSharingFleet.start();
+        loopback.afterTest(notSharingFleet::stop);
+
+        assertThat(notSharingFleet.getRunningDevicesCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void fleetShouldConnectWithinStartupPolicyRetryingThrottledConnects() {
+        IoTDeviceFleet fleet = heaterFleet(throttledFactory(connect -> connect > 2), "things/{deviceId}/cmd", 3);
+        fleet.setStartupPolicy(new StartupPolicy(1000, 3, 3, Duration.ofMillis(1), Duration.ofMillis(1)));
+
+        fleet.start();
+        loopback.afterTest(fleet::stop);
+
+        assertThat(fleet.getConnectionsCount()).isEqualTo(3);
+        assertThat(fleet.getRunningDevicesCount()).isEqualTo(6);
+        assertThat(connections).hasSize(5).filteredOn(MqttTransport::isConnected).hasSize(3);
+    }
+
+    @Test
+    public void fleetShouldReleaseConnectionsWhenStartupPolicyCannotConnectAll() {
+        IoTDeviceFleet fleet = heaterFleet(throttledFactory(connect -> connect == 1), "things/{deviceId}/cmd", 3);
+        fleet.setStartupPolicy(new StartupPolicy(1000, 3, 2, Duration.ofMillis(1), Duration.ofMillis(1)));
+
+        assertThatThrownBy(fleet::start)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Only 1 of 3");
+
+        assertThat(fleet.getConnectionsCount()).isZero();
+        assertThat(fleet.getRunningDevicesCount()).isZero();
+        assertThat(connections).noneMatch(MqttTransport::isConnected);
+    }
+
+    /**
+     * @param allowedConnect condition of the number of the connect attempt which succeeds, counted from one
+     */
+    private MqttTransportFactory throttledFactory(IntPredicate allowedConnect) {
+        MqttTransportFactory loopbackFactory = loopback.transportFactory();
+        AtomicInteger connects = new AtomicInteger();
+        return () -> new ObservedTransport(loopbackFactory.create()) {
+            @Override
+            public void connect() {
+                if (!allowedConnect.test(connects.incrementAndGet())) {
+                    throw new IllegalStateException("Throttled");
+                }
+                super.connect();
+            }
+        };
+    }
+
+    private IoTDeviceFleet heaterFleet(String commandTopic, int maxConnections) {
+        return heaterFleet(loopback.transportFactory(), commandTopic, maxConnections);
+    }
+
+    private IoTDeviceFleet heaterFleet(MqttTransportFactory transportFactory, String commandTopic, int maxConnections) {
+        MqttTransportFactory countingFactory = () -> {
+            MqttTransport connection = transportFactory.create();
+            connections.add(connection);
+            return connection;
+        };
+        IoTDeviceFleet fleet = new IoTDeviceFleet(countingFactory, DeviceIdRange.of("flat", 1, 6), maxConnections);
+        fleet
+                .when()
+                .messageTopic(commandTopic)
+                .subscribeMessageBody("{'state': '{state}'}")
+                .then()
+                .publishTo("things/{deviceId}/report")
+                .publishMessageBody("{'state': '{state}'}");
+        return fleet;
+    }
+}
@@ -0,0 +1,158 @@
+package com.testcraftsmanship.awsiotdevice.aws;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParameterResolverTest {
+    @Test
+    public void resolverShouldFetchMissingParametersWithSingleRequest() {
+        RecordingSource source = new RecordingSource("accessKey", "key", "secretKey", "secret");
+        ParameterResolver resolver = new ParameterResolver(Duration.ofMinutes(1), source);
+
+        Map<String, String> values = resolver.resolveAll("accessKey", "secretKey");
+
+        assertThat(values).containsEntry("accessKey", "key").containsEntry("secretKey", "secret");
+        assertThat(source.requests).hasSize(1);
+    }
+
+    @Test
+    public void resolverShouldServeCachedParameters() {
+        RecordingSource source = new RecordingSource("accessKey", "key");
+        ParameterResolver resolver = new ParameterResolver(Duration.ofMinutes(1), source);
+
+        resolver.resolve("accessKey");
+        resolver.resolve("accessKey");
+
+        assertThat(source.requests).hasSize(1);
+    }
+
+    @Test
+    public void resolverShouldFetchAgainWhenCachedValueExpired() {
+        RecordingSource source = new RecordingSource("accessKey", "key");
+        ParameterResolver resolver = new ParameterResolver(Duration.ZERO, source);
+
+        resolver.resolve("accessKey");
+        resolver.resolve("accessKey");
+
+        assertThat(source.requests).hasSize(2);
+    }
+
+    @Test
+    public void concurrentResolutionsShouldShareOneLookup() throws Exception {
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch fetchReleased = new CountDownLatch(1);
+        RecordingSource parameterStore = new RecordingSource("accessKey", "key") {
+            @Override
+            public Map<String, String> fetch(Set<String> names) {
+                fetchStarted.countDown();
+                awaitUninterruptibly(fetchReleased);
+                return super.fetch(names);
+            }
+        };
+        ParameterResolver resolver = new ParameterResolver(Duration.ofMinutes(1), parameterStore);
+        ExecutorService simulators = Executors.newFixedThreadPool(8);
+
+        List<Future<String>> values = new ArrayList<>();
+        values.add(simulators.submit(() -> resolver.resolve("accessKey")));
+        assertThat(fetchStarted.await(1, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < 8; i++) {
+            values.add(simulators.submit(() -> resolver.resolve("accessKey")));
+        }
+        Thread.sleep(50);
+        fetchReleased.countDown();
+        for (Future<String> value : values) {
+            assertThat(value.get(1, TimeUnit.SECONDS)).isEqualTo("key");
+        }
+        simulators.shutdown();
+
+        assertThat(parameterStore.requests).hasSize(1);
+    }
+
+    @Test
+    public void failedLookupShouldBeRetriedByNextResolution() {
+        AtomicInteger attempts = new AtomicInteger();
+        ParameterResolver resolver = new ParameterResolver(Duration.ofMinutes(1), names -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Rate exceeded");
+            }
+            return Map.of("accessKey", "key");
+        });
+
+        assertThatThrownBy(() -> resolver.resolve("accessKey")).isInstanceOf(IllegalStateException.class);
+        assertThat(resolver.resolve("accessKey")).isEqualTo("key");
+    }
+
+    @Test
+    public void resolverShouldAskNextSourceOnlyForMissingParameters() {
+        RecordingSource environment = new RecordingSource("accessKey", "local");
+        RecordingSource parameterStore = new RecordingSource("accessKey", "remote", "secretKey", "secret");
+        ParameterResolver resolver = new ParameterResolver(Duration.ofMinutes(1), environment, parameterStore);
+
+        Map<String, String> values = resolver.resolveAll("accessKey", "secretKey");
+
+        assertThat(values).containsEntry("accessKey", "local").containsEntry("secretKey", "secret");
+        assertThat(parameterStore.requests).containsExactly(Set.of("secretKey"));
+    }
+
+    @Test
+    public void resolverShouldFailWhenParameterIsUnknown() {
+        ParameterResolver resolver = new ParameterResolver(Duration.ofMinutes(1), new RecordingSource());
+
+        assertThatThrownBy(() -> resolver.resolve("endpoint"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("endpoint");
+    }
+
+    @Test
+    public void environmentSourceShouldFindParameterInUpperCaseVariable() {
+        Map<String, String> environment = Map.of("TEST_ACCESS_KEY_ID", "key", "IOT_ENDPOINT", "localhost");
+
+        Map<String, String> values = new EnvironmentParameterSource(environment)
+                .fetch(Set.of("testAccessKeyId", "/iot/endpoint"));
+
+        assertThat(values).containsEntry("testAccessKeyId", "key").containsEntry("/iot/endpoint", "localhost");
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingSource implements ParameterSource {
+        private final Map<String, String> parameters = new HashMap<>();
+        private final List<Set<String>> requests = new CopyOnWriteArrayList<>();
+
+        private RecordingSource(String... namesAndValues) {
+            for (int i = 0; i < namesAndValues.length; i += 2) {
+                parameters.put(namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+
+        @Override
+        public Map<String, String> fetch(Set<String> names) {
+            requests.add(Set.copyOf(names));
+            Map<String, String> values = new HashMap<>();
+            names.stream().filter(parameters::containsKey).forEach(name -> values.put(name, parameters.get(name)));
+            return values;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValueType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DeviceStateTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void concurrentIncrementsShouldReturnUniqueValues() throws Exception {
+        DeviceState state = new DeviceState();
+        Set<String> sequenceIds = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            executor.execute(() -> sequenceIds.add(state.increment("seq", 1).getValue()));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(sequenceIds).hasSize(8000).contains("1", "8000");
+        assertThat(state.get("seq").map(value -> value.getValue())).contains("8000");
+    }
+
+    @Test
+    public void stateUpdateShouldAcceptSingleJsonValueOnly() {
+        DeviceState state = new DeviceState();
+        StateUpdate.set("fan", "{'speed': 2}").apply(state, Collections.emptyMap());
+        StateUpdate.set("mode", "eco").apply(state, Collections.emptyMap());
+
+        assertThat(state.get("fan").map(JsonValue::getType)).contains(JsonValueType.OBJECT);
+        assertThat(state.get("mode").map(JsonValue::getValue)).contains("eco");
+        assertThatThrownBy(() -> StateUpdate.set("mode", "a,b")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StateUpdate.set("mode", "")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StateUpdate.set("mode", null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void responsesShouldReferenceUpdatedDeviceState() throws Exception {
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .given()
+                .withState("mode", "eco")
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'mode': '{mode}'}")
+                .then()
+                .setState("mode", "{mode}")
+                .incrementState("seq")
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'seq': '{state.seq}', 'mode': '{state.mode}'}")
+                .when()
+                .messageTopic("tc/heater/get")
+                .then()
+                .incrementState("seq")
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'seq': '{state.seq}', 'mode': '{state.mode}'}");
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/get", "{}");
+        String initial = responses.poll(1, TimeUnit.SECONDS);
+        loopback.publish("tc/heater/set", "{\"mode\": \"comfort\"}");
+        String updated = responses.poll(1, TimeUnit.SECONDS);
+        deviceSimulator.stop();
+
+        JSONAssert.assertEquals("{'seq': 1, 'mode': 'eco'}", initial, true);
+        JSONAssert.assertEquals("{'seq': 2, 'mode': 'comfort'}", updated, true);
+    }
+}
@@ -0,0 +1,141 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.ObservedTransport;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IoTDeviceListenerTest {
+    private static final Duration RESPONSE_DELAY = Duration.ofMillis(300);
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void delayedResponsesShouldNotBlockCallbackNorEachOther() throws InterruptedException {
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = delayedSimulator();
+        deviceSimulator.start();
+
+        long publishNanos = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            loopback.publish("tc/heater/set", "{\"id\": " + i + "}");
+        }
+        long callbacksMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - publishNanos);
+        for (int i = 0; i < 5; i++) {
+            assertThat(responses.poll(2, TimeUnit.SECONDS)).isNotNull();
+        }
+        long responsesMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - publishNanos);
+
+        assertThat(callbacksMillis).isLessThan(RESPONSE_DELAY.toMillis());
+        assertThat(responsesMillis).isGreaterThanOrEqualTo(RESPONSE_DELAY.toMillis()).isLessThan(2 * RESPONSE_DELAY.toMillis());
+    }
+
+    @Test
+    public void pendingResponsesShouldBeDroppedWhenDeviceStops() throws InterruptedException {
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = delayedSimulator();
+        deviceSimulator.start();
+
+        loopback.publish("tc/heater/set", "{\"id\": 1}");
+        deviceSimulator.stop();
+
+        assertThat(responses.poll(2 * RESPONSE_DELAY.toMillis(), TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void saturatedPublicationWindowShouldNotDelayResponsesOfOtherDevices() throws InterruptedException {
+        int triggersCount = 2 * Runtime.getRuntime().availableProcessors() + 2;
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        BlockingQueue<String> heaterResponses = loopback.subscribe("tc/heater/report");
+        BlockingQueue<String> fanResponses = loopback.subscribe("tc/fan/report");
+        IoTDeviceSimulator heater = new IoTDeviceSimulator(ObservedTransport.factory(loopback.transportFactory(), connections));
+        loopback.afterTest(heater::stop);
+        heater.given()
+                .withMaxInFlightPublications(1)
+                .when()
+                .messageTopic("tc/heater/set")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': 'on'}");
+        IoTDeviceSimulator fan = loopback.newSimulator();
+        fan.when()
+                .messageTopic("tc/fan/set")
+                .then()
+                .publishTo("tc/fan/report")
+                .publishMessageBody("{'speed': 2}");
+        heater.start();
+        fan.start();
+        connections.get(0).holdAcknowledgements();
+
+        for (int i = 0; i < triggersCount; i++) {
+            loopback.publish("tc/heater/set", "{}");
+        }
+        assertThat(heaterResponses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        long publishNanos = System.nanoTime();
+        loopback.publish("tc/fan/set", "{}");
+        assertThat(fanResponses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        long fanResponseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - publishNanos);
+        connections.get(0).releaseAcknowledgements();
+        for (int i = 1; i < triggersCount; i++) {
+            assertThat(heaterResponses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        }
+
+        assertThat(fanResponseMillis).isLessThan(RESPONSE_DELAY.toMillis());
+    }
+
+    @Test
+    public void publishLatencyShouldBeRecordedOnlyForAcknowledgedResponses() throws InterruptedException {
+        BlockingQueue<String> heaterResponses = loopback.subscribe("tc/heater/report");
+        BlockingQueue<String> fanResponses = loopback.subscribe("tc/fan/report");
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': 'on'}")
+                .publishWithQos(MqttQos.AT_MOST_ONCE)
+                .when()
+                .messageTopic("tc/fan/set")
+                .then()
+                .publishTo("tc/fan/report")
+                .publishMessageBody("{'speed': 2}")
+                .publishWithQos(MqttQos.AT_LEAST_ONCE);
+        deviceSimulator.start();
+
+        loopback.publish("tc/heater/set", "{}");
+        loopback.publish("tc/fan/set", "{}");
+        assertThat(heaterResponses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(fanResponses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (deviceSimulator.getLatency(LatencyStage.TRIGGER_TO_RESPONSE).getCount() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(deviceSimulator.getLatency(LatencyStage.TRIGGER_TO_RESPONSE).getCount()).isEqualTo(2);
+        assertThat(deviceSimulator.getLatency(LatencyStage.PUBLISH).getCount()).isEqualTo(1);
+    }
+
+    private IoTDeviceSimulator delayedSimulator() {
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .given()
+                .withResponseDelay(RESPONSE_DELAY)
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'id': '{id}'}");
+        return deviceSimulator;
+    }
+}
@@ -0,0 +1,36 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyRecorderTest {
+    @Test
+    public void snapshotShouldContainAllRecordedLatencies() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int millis = 1; millis <= 100; millis++) {
+            recorder.record(LatencyStage.TRIGGER_TO_RESPONSE, Duration.ofMillis(millis).toNanos());
+        }
+        recorder.snapshot(LatencyStage.TRIGGER_TO_RESPONSE);
+        recorder.record(LatencyStage.TRIGGER_TO_RESPONSE, Duration.ofSeconds(1).toNanos());
+
+        LatencySnapshot snapshot = recorder.snapshot(LatencyStage.TRIGGER_TO_RESPONSE);
+
+        assertThat(snapshot.getCount()).isEqualTo(101);
+        assertThat(snapshot.getPercentile(50).toMillis()).isEqualTo(51);
+        assertThat(snapshot.getMax().toMillis()).isEqualTo(1000);
+        assertThat(recorder.snapshot(LatencyStage.PUBLISH).getCount()).isZero();
+    }
+
+    @Test
+    public void resetShouldDropRecordedLatencies() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(LatencyStage.MATCHING, 1000);
+
+        recorder.reset();
+
+        assertThat(recorder.snapshot(LatencyStage.MATCHING).getCount()).isZero();
+    }
+}
@@ -0,0 +1,84 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MatchAwaiterTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void consecutiveAwaitsShouldClaimConsecutiveMatches() {
+        MatchAwaiter awaiter = new MatchAwaiter();
+        awaiter.matched();
+
+        CompletableFuture<Void> first = awaiter.awaitAsync(1);
+        CompletableFuture<Void> next = awaiter.awaitAsync(2);
+        awaiter.matched();
+
+        assertThat(first).isDone();
+        assertThat(next).isNotDone();
+        awaiter.matched();
+        assertThat(next).isDone();
+    }
+
+    @Test
+    public void timedOutAwaitShouldGiveBackItsMatches() {
+        MatchAwaiter awaiter = new MatchAwaiter();
+
+        assertThat(awaiter.await(1, Duration.ofMillis(10))).isFalse();
+        awaiter.matched();
+
+        assertThat(awaiter.await(1, Duration.ZERO)).isTrue();
+        assertThat(awaiter.getMatchedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void matchesOfPreviousRunShouldNotCompleteAwaitAfterRestart() {
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/report")
+                .subscribeMessageBody("{'id': '{id}'}");
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/report", "{\"id\": 1}");
+        loopback.publish("tc/heater/report", "{\"id\": 2}");
+        deviceSimulator.stop();
+        deviceSimulator.start();
+        boolean staleMatchAwaited = deviceSimulator.awaitExpectedMessage(Duration.ofMillis(10));
+        loopback.publish("tc/heater/report", "{\"id\": 3}");
+        boolean nextMatchAwaited = deviceSimulator.awaitExpectedMessage(Duration.ofMillis(10));
+        deviceSimulator.stop();
+
+        assertThat(staleMatchAwaited).isFalse();
+        assertThat(nextMatchAwaited).isTrue();
+    }
+
+    @Test
+    public void simulatorShouldCompleteAwaitWhenExpectedMessageArrives() {
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/report")
+                .subscribeMessageBody("{'id': '{id}'}");
+
+        deviceSimulator.start();
+        CompletableFuture<Void> reports = deviceSimulator.awaitExpectedMessagesAsync(2);
+        loopback.publish("tc/heater/report", "{\"id\": 1}");
+        boolean firstReceived = reports.isDone();
+        loopback.publish("tc/heater/report", "{\"id\": 2}");
+        deviceSimulator.stop();
+
+        assertThat(firstReceived).isFalse();
+        assertThat(reports).isDone();
+        assertThat(deviceSimulator.awaitExpectedMessage(Duration.ofMillis(10))).isFalse();
+    }
+}
@@ -0,0 +1,88 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageJournalTest {
+    private static final DeviceRule RULE = new DeviceRule("tc/heater/report", null, null, null, null);
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void journalShouldKeepLastMessagesInOrderOfArrival() {
+        MessageJournal journal = new MessageJournal(3, true);
+        for (int i = 0; i < 6; i++) {
+            journal.record("tc/heater/report", ("{\"id\": " + i + "}").getBytes(StandardCharsets.UTF_8), i, RULE);
+        }
+
+        assertThat(journal.getCapacity()).isEqualTo(4);
+        assertThat(journal.getReceivedCount()).isEqualTo(6);
+        assertThat(journal.getOverwrittenCount()).isEqualTo(2);
+        assertThat(journal.size()).isEqualTo(4);
+        assertThat(payloadsOf(journal.last(2))).containsExactly("{\"id\": 4}", "{\"id\": 5}");
+        assertThat(payloadsOf(journal.filter(ReceivedMessage::isMatched)))
+                .containsExactly("{\"id\": 2}", "{\"id\": 3}", "{\"id\": 4}", "{\"id\": 5}");
+    }
+
+    @Test
+    public void clearedJournalShouldBeEmpty() {
+        MessageJournal journal = new MessageJournal(4, false);
+        journal.record("tc/heater/report", new byte[1], 0, null);
+        journal.clear();
+        journal.record("tc/heater/set", new byte[1], 1, null);
+
+        assertThat(journal.size()).isEqualTo(1);
+        assertThat(journal.count(message -> message.getTopic().equals("tc/heater/report"))).isZero();
+        assertThat(journal.last(1).get(0).getPayload()).isNull();
+        assertThat(journal.last(1).get(0).isMatched()).isFalse();
+    }
+
+    @Test
+    public void concurrentRecordsShouldKeepNewestMessageOfEachSlot() throws InterruptedException {
+        MessageJournal journal = new MessageJournal(16, false);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 80_000; i++) {
+            executor.execute(() -> journal.record("tc/heater/report", null, 0, null));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(journal.last(16).stream().map(ReceivedMessage::getSequence))
+                .containsExactlyElementsOf(LongStream.range(80_000 - 16, 80_000).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void simulatorShouldJournalAllReceivedReports() {
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/report")
+                .subscribeMessageBody("{'id': '{id}'}");
+
+        deviceSimulator.start();
+        IntStream.range(0, 300).forEach(i -> loopback.publish("tc/heater/report", "{\"id\": " + i + "}"));
+        deviceSimulator.stop();
+
+        List<String> reports = payloadsOf(deviceSimulator.getMessageJournal().filter(ReceivedMessage::isMatched));
+        assertThat(reports).hasSize(300);
+        assertThat(reports).isEqualTo(IntStream.range(0, 300).mapToObj(i -> "{\"id\": " + i + "}")
+                .collect(Collectors.toList()));
+    }
+
+    private static List<String> payloadsOf(List<ReceivedMessage> messages) {
+        return messages.stream().map(ReceivedMessage::getPayload).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,110 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.ObservedTransport;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MqttConnectionPoolTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+    private MqttConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new MqttConnectionPool(loopback.transportFactory(), 2);
+        loopback.afterTest(pool::close);
+    }
+
+    @Test
+    public void warmedUpConnectionsShouldBeReusedWithoutSubscriptions() {
+        pool.warmUp(5);
+        assertThat(pool.getIdleCount()).isEqualTo(2);
+
+        MqttTransport connection = pool.lease();
+        connection.subscribe("tc/heater/set", (topic, payload) -> { });
+        pool.release(connection);
+        MqttTransport reused = pool.lease(Duration.ZERO);
+
+        assertThat(reused.isConnected()).isTrue();
+        assertThat(reused.getSubscribedTopics()).isEmpty();
+        assertThat(pool.getLeasedCount()).isEqualTo(1);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void leaseShouldTimeOutWhenAllConnectionsAreInUse() {
+        pool.lease();
+        MqttTransport second = pool.lease();
+
+        assertThatThrownBy(() -> pool.lease(Duration.ofMillis(10)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("in use");
+        pool.release(second);
+        assertThat(pool.lease(Duration.ZERO)).isSameAs(second);
+    }
+
+    @Test
+    public void simulatorShouldReturnConnectionToPoolAfterItsPublicationsFinish() throws Exception {
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        MqttConnectionPool observedPool = new MqttConnectionPool(
+                ObservedTransport.factory(loopback.transportFactory(), connections), 1);
+        loopback.afterTest(observedPool::close);
+        IoTDeviceSimulator deviceSimulator = new IoTDeviceSimulator(observedPool);
+        loopback.afterTest(deviceSimulator::stop);
+        deviceSimulator
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': 'on'}");
+        deviceSimulator.start();
+        connections.get(0).holdAcknowledgements();
+
+        CompletableFuture<Void> publication = deviceSimulator.publishAsync();
+        CompletableFuture<Void> stop = CompletableFuture.runAsync(deviceSimulator::stop);
+        Thread.sleep(100);
+        boolean stoppedBeforeAcknowledgement = stop.isDone();
+        int idleBeforeAcknowledgement = observedPool.getIdleCount();
+        connections.get(0).releaseAcknowledgements();
+        stop.get(1, TimeUnit.SECONDS);
+
+        assertThat(stoppedBeforeAcknowledgement).isFalse();
+        assertThat(idleBeforeAcknowledgement).isZero();
+        assertThat(publication).isCompleted();
+        assertThat(observedPool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void releaseOfConnectionNotLeasedFromPoolShouldBeRejected() {
+        MqttTransport foreign = loopback.transportFactory().create();
+
+        assertThatThrownBy(() -> pool.release(foreign)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void closedPoolShouldDisconnectConnections() {
+        pool.warmUp(1);
+        MqttTransport idle = pool.lease();
+        MqttTransport leased = pool.lease();
+        pool.release(idle);
+
+        pool.close();
+        assertThat(idle.isConnected()).isFalse();
+        assertThat(leased.isConnected()).isTrue();
+        pool.release(leased);
+
+        assertThat(leased.isConnected()).isFalse();
+        assertThat(pool.getIdleCount()).isZero();
+        assertThatThrownBy(pool::lease).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,174 @@
+package com.testcraftsmanship.awsiotdevice.device;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttMessageHandler;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportException;
+import com.testcraftsmanship.awsiotdevice.metrics.Gauge;
+import com.testcraftsmanship.awsiotdevice.metrics.InMemoryMetricsRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PublicationWindowTest {
+    @Test
+    public void publicationShouldBeQueuedUntilWindowHasFreeSlot() {
+        PendingTransport transport = new PendingTransport(Integer.MAX_VALUE);
+        PublicationWindow window = new PublicationWindow(transport, 2);
+        window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+        window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+
+        CompletableFuture<Void> third = window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+        assertThat(third).isNotDone();
+        assertThat(window.getInFlightCount()).isEqualTo(2);
+        assertThat(window.getQueuedCount()).isEqualTo(1);
+
+        transport.pending.poll().complete(null);
+        assertThat(window.getQueuedCount()).isZero();
+        assertThat(transport.pending).hasSize(2);
+        assertThat(window.drain(Duration.ofMillis(10))).isFalse();
+        transport.pending.forEach(publication -> publication.complete(null));
+        assertThat(third).isCompleted();
+        assertThat(window.drain(Duration.ofMillis(10))).isTrue();
+    }
+
+    @Test
+    public void windowShouldNotExceedInFlightLimitOfTransport() {
+        PendingTransport transport = new PendingTransport(3);
+        PublicationWindow window = new PublicationWindow(transport, 100);
+        for (int i = 0; i < 5; i++) {
+            window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+        }
+
+        assertThat(window.getSize()).isEqualTo(3);
+        assertThat(transport.pending).hasSize(3);
+        assertThat(window.getQueuedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void failedPublicationShouldFreeItsSlot() {
+        PendingTransport transport = new PendingTransport(Integer.MAX_VALUE);
+        PublicationWindow window = new PublicationWindow(transport, 1);
+        CompletableFuture<Void> failed = window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+        CompletableFuture<Void> queued = window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+
+        transport.pending.poll().completeExceptionally(new MqttTransportException("Connection lost", null));
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(queued).isNotDone();
+        assertThat(transport.pending).hasSize(1);
+    }
+
+    @Test
+    public void queuedPublicationsShouldBeSentInOrderWhenTransportCompletesThemSynchronously() {
+        PendingTransport transport = new PendingTransport(Integer.MAX_VALUE);
+        PublicationWindow window = new PublicationWindow(transport, 1, 100_000);
+        List<CompletableFuture<Void>> publications = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            publications.add(window.publish("tc/heater/" + i, new byte[0], MqttQos.AT_MOST_ONCE));
+        }
+
+        transport.completingImmediately = true;
+        transport.pending.poll().complete(null);
+
+        assertThat(publications).allMatch(CompletableFuture::isDone);
+        assertThat(transport.sentTopics).hasSize(100_000).startsWith("tc/heater/0", "tc/heater/1").endsWith("tc/heater/99999");
+        assertThat(window.drain(Duration.ZERO)).isTrue();
+    }
+
+    @Test
+    public void publicationShouldBeRejectedWhenQueueIsFull() {
+        PendingTransport transport = new PendingTransport(Integer.MAX_VALUE);
+        PublicationWindow window = new PublicationWindow(transport, 1, 2);
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        Gauge queuedGauge = metrics.gauge(DeviceMetrics.PUBLICATIONS_QUEUED);
+        for (int i = 0; i < 3; i++) {
+            window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE, queuedGauge);
+        }
+
+        CompletableFuture<Void> rejected = window.publish("tc/heater/report", new byte[0], MqttQos.AT_LEAST_ONCE, queuedGauge);
+
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(IllegalStateException.class).hasMessageContaining("rejected");
+        assertThat(window.getQueuedCount()).isEqualTo(2);
+        assertThat(metrics.getValue(DeviceMetrics.PUBLICATIONS_QUEUED)).isEqualTo(2);
+        transport.pending.poll().complete(null);
+        assertThat(metrics.getValue(DeviceMetrics.PUBLICATIONS_QUEUED)).isEqualTo(1);
+        transport.pending.poll().complete(null);
+        transport.pending.poll().complete(null);
+        assertThat(metrics.getValue(DeviceMetrics.PUBLICATIONS_QUEUED)).isZero();
+        assertThat(window.drain(Duration.ZERO)).isTrue();
+    }
+
+    private static final class PendingTransport implements MqttTransport {
+        private final Queue<CompletableFuture<Void>> pending = new ConcurrentLinkedQueue<>();
+        private final List<String> sentTopics = new ArrayList<>();
+        private final int maxInFlight;
+        private volatile boolean completingImmediately;
+
+        private PendingTransport(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        @Override
+        public String getClientId() {
+            return "pending";
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void subscribe(String topicFilter, MqttMessageHandler handler) {
+        }
+
+        @Override
+        public void unsubscribe(String topicFilter) {
+        }
+
+        @Override
+        public Set<String> getSubscribedTopics() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void publish(String topic, byte[] payload, MqttQos qos) {
+            publishAsync(topic, payload, qos).join();
+        }
+
+        @Override
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        @Override
+        public CompletableFuture<Void> publishAsync(String topic, byte[] payload, MqttQos qos) {
+            sentTopics.add(topic);
+            if (completingImmediately) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> publication = new CompletableFuture<>();
+            pending.add(publication);
+            return publication;
+        }
+    }
+}
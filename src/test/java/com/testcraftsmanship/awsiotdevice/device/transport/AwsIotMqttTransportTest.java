@@ -0,0 +1,90 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotMqttClient;
+import com.testcraftsmanship.awsiotdevice.aws.AwsException;
+import com.testcraftsmanship.awsiotdevice.device.PublicationWindow;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AwsIotMqttTransportTest {
+    private static final byte[] PAYLOAD = "{}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void acknowledgedPublicationShouldCompleteFuture() {
+        CompletableFuture<Void> publication = publishAsync(AWSIotMessage::onSuccess);
+
+        assertThat(publication).isCompleted();
+    }
+
+    @Test
+    public void failedPublicationShouldFailFuture() {
+        CompletableFuture<Void> publication = publishAsync(AWSIotMessage::onFailure);
+
+        assertThatThrownBy(publication::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(AwsException.class)
+                .hasMessageContaining("tc/heater/report");
+    }
+
+    @Test
+    public void timedOutPublicationShouldFailFuture() {
+        CompletableFuture<Void> publication = publishAsync(AWSIotMessage::onTimeout);
+
+        assertThatThrownBy(publication::join)
+                .hasCauseInstanceOf(AwsException.class)
+                .hasMessageContaining("timed out");
+    }
+
+    @Test
+    public void rejectedPublicationShouldFailFuture() {
+        CompletableFuture<Void> publication = publishAsync(message -> {
+            throw new IllegalStateException("Client is not connected");
+        });
+
+        assertThatThrownBy(publication::join)
+                .hasCauseInstanceOf(AwsException.class)
+                .hasMessageContaining("Unable to publish message to topic: tc/heater/report");
+    }
+
+    @Test
+    public void windowShouldNotExceedInFlightLimitOfSdkClient() {
+        AwsIotMqttTransport transport = new AwsIotMqttTransport(new CallbackClient(message -> { }));
+
+        assertThat(new PublicationWindow(transport, 100).getSize()).isEqualTo(AwsIotMqttTransport.MAX_IN_FLIGHT);
+    }
+
+    private static CompletableFuture<Void> publishAsync(Consumer<AWSIotMessage> callback) {
+        AwsIotMqttTransport transport = new AwsIotMqttTransport(new CallbackClient(callback));
+        return transport.publishAsync("tc/heater/report", PAYLOAD, MqttQos.AT_LEAST_ONCE);
+    }
+
+    /**
+     * Client which reports result of the publication with the given callback instead of sending the message.
+     */
+    private static final class CallbackClient extends AWSIotMqttClient {
+        private final Consumer<AWSIotMessage> callback;
+
+        private CallbackClient(Consumer<AWSIotMessage> callback) {
+            super("example.iot.eu-west-1.amazonaws.com", "client", "key", "secret");
+            this.callback = callback;
+        }
+
+        @Override
+        public void publish(AWSIotMessage message, long timeout) throws AWSIotException {
+            try {
+                callback.accept(message);
+            } catch (IllegalStateException e) {
+                throw new AWSIotException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmbeddedMqttBrokerTest {
+    private EmbeddedMqttBroker broker;
+    private MqttTransport testedApplication;
+
+    @Before
+    public void setUp() throws IOException {
+        broker = new EmbeddedMqttBroker(freePort());
+        broker.start();
+        testedApplication = broker.transportFactory().create();
+        testedApplication.connect();
+    }
+
+    @After
+    public void tearDown() {
+        testedApplication.disconnect();
+        broker.stop();
+    }
+
+    @Test
+    public void simulatorShouldRespondThroughEmbeddedBroker() throws InterruptedException, JSONException {
+        BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        testedApplication.subscribe("tc/heater/report",
+                (topic, payload) -> responses.add(new String(payload, StandardCharsets.UTF_8)));
+        IoTDeviceSimulator deviceSimulator = new IoTDeviceSimulator(broker.transportFactory());
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}', 'state': 'on'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'id': '{id}', 'running': true}");
+
+        deviceSimulator.start();
+        try {
+            testedApplication.publish("tc/heater/set", "{\"id\": 7, \"state\": \"on\"}".getBytes(StandardCharsets.UTF_8));
+            String response = responses.poll(5, TimeUnit.SECONDS);
+
+            assertThat(response).isNotNull();
+            JSONAssert.assertEquals("{'id': 7, 'running': true}", response, true);
+            assertThat(deviceSimulator.doesExpectedMessageReachedSubscribedTopic()).isTrue();
+        } finally {
+            deviceSimulator.stop();
+        }
+    }
+
+    @Test
+    public void simulatorShouldPipelineAllPublications() throws Exception {
+        BlockingQueue<String> reports = new LinkedBlockingQueue<>();
+        testedApplication.subscribe("tc/heater/report",
+                (topic, payload) -> reports.add(new String(payload, StandardCharsets.UTF_8)));
+        IoTDeviceSimulator deviceSimulator = new IoTDeviceSimulator(broker.transportFactory());
+        deviceSimulator
+                .given()
+                .withPublicationQos(MqttQos.AT_LEAST_ONCE)
+                .withMaxInFlightPublications(50)
+                .when()
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'id': 0}");
+        List<String> messages = IntStream.range(0, 300).mapToObj(i -> "{\"id\":" + i + "}").collect(Collectors.toList());
+
+        deviceSimulator.start();
+        try {
+            deviceSimulator.publishAll(messages).get(10, TimeUnit.SECONDS);
+            for (String message : messages) {
+                assertThat(reports.poll(5, TimeUnit.SECONDS)).isEqualTo(message);
+            }
+        } finally {
+            deviceSimulator.stop();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import org.junit.rules.ExternalResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Loopback broker of one test together with connected client of the tested application. Simulators created by the rule
+ * are stopped and all the transports created by its factory are disconnected after the test.
+ */
+public class LoopbackBrokerRule extends ExternalResource {
+    private final List<MqttTransport> transports = new CopyOnWriteArrayList<>();
+    private final Deque<Runnable> cleanups = new ArrayDeque<>();
+    private LoopbackBroker broker;
+    private MqttTransport testedApplication;
+
+    @Override
+    protected void before() {
+        broker = new LoopbackBroker();
+        testedApplication = transportFactory().create();
+        testedApplication.connect();
+    }
+
+    @Override
+    protected void after() {
+        while (!cleanups.isEmpty()) {
+            cleanups.pop().run();
+        }
+        transports.stream().filter(MqttTransport::isConnected).forEach(MqttTransport::disconnect);
+        transports.clear();
+    }
+
+    /**
+     * @return factory of the transports which are disconnected after the test
+     */
+    public MqttTransportFactory transportFactory() {
+        return () -> {
+            MqttTransport transport = broker.transportFactory().create();
+            transports.add(transport);
+            return transport;
+        };
+    }
+
+    /**
+     * @return connected transport of the tested application
+     */
+    public MqttTransport getTestedApplication() {
+        return testedApplication;
+    }
+
+    /**
+     * @return simulator connected through the broker, stopped after the test
+     */
+    public IoTDeviceSimulator newSimulator() {
+        IoTDeviceSimulator simulator = new IoTDeviceSimulator(transportFactory());
+        afterTest(simulator::stop);
+        return simulator;
+    }
+
+    /**
+     * @param cleanup action run after the test, before the transports are disconnected
+     */
+    public void afterTest(Runnable cleanup) {
+        cleanups.push(cleanup);
+    }
+
+    /**
+     * @param topicFilter topic filter subscribed by the tested application
+     * @return queue of the payloads received on the topic filter
+     */
+    public BlockingQueue<String> subscribe(String topicFilter) {
+        BlockingQueue<String> payloads = new LinkedBlockingQueue<>();
+        testedApplication.subscribe(topicFilter, (topic, payload) -> payloads.add(new String(payload, StandardCharsets.UTF_8)));
+        return payloads;
+    }
+
+    /**
+     * Publishes the message from the tested application.
+     *
+     * @param topic   topic of the message
+     * @param payload payload of the message
+     */
+    public void publish(String topic, String payload) {
+        testedApplication.publish(topic, payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,110 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoopbackTransportTest {
+    private LoopbackBroker broker;
+    private MqttTransport testedApplication;
+
+    @Before
+    public void setUp() {
+        broker = new LoopbackBroker();
+        testedApplication = broker.transportFactory().create();
+        testedApplication.connect();
+    }
+
+    @Test
+    public void messageShouldBeDeliveredToMatchingSubscriptionsOnly() {
+        List<String> received = new ArrayList<>();
+        MqttTransport device = broker.transportFactory().create();
+        device.connect();
+        device.subscribe("things/+/cmd", (topic, payload) -> received.add(topic));
+
+        testedApplication.publish("things/flat1/cmd", new byte[0]);
+        testedApplication.publish("things/flat1/report", new byte[0]);
+        device.unsubscribe("things/+/cmd");
+        testedApplication.publish("things/flat2/cmd", new byte[0]);
+
+        assertThat(received).containsExactly("things/flat1/cmd");
+    }
+
+    @Test
+    public void sharedTransportShouldDispatchMessageToHandlersOfMatchingFiltersOnly() {
+        List<String> received = new ArrayList<>();
+        MqttTransport fleetConnection = broker.transportFactory().create();
+        fleetConnection.connect();
+        for (int i = 0; i < 1000; i++) {
+            String filter = "things/device" + i + "/cmd";
+            fleetConnection.subscribe(filter, (topic, payload) -> received.add(filter));
+        }
+        fleetConnection.subscribe("things/+/cmd", (topic, payload) -> received.add("things/+/cmd"));
+        fleetConnection.subscribe("things/#", (topic, payload) -> received.add("things/#"));
+
+        testedApplication.publish("things/device7/cmd", new byte[0]);
+        fleetConnection.unsubscribe("things/+/cmd");
+        testedApplication.publish("things/device8/cmd", new byte[0]);
+        fleetConnection.disconnect();
+        testedApplication.publish("things/device9/cmd", new byte[0]);
+
+        assertThat(received).containsExactlyInAnyOrder("things/device7/cmd", "things/+/cmd", "things/#",
+                "things/device8/cmd", "things/#");
+        assertThat(fleetConnection.getSubscribedTopics()).isEmpty();
+    }
+
+    @Test
+    public void simulatorShouldRespondThroughLoopback() throws InterruptedException, JSONException {
+        BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        testedApplication.subscribe("tc/heater/report",
+                (topic, payload) -> responses.add(new String(payload, StandardCharsets.UTF_8)));
+        IoTDeviceSimulator deviceSimulator = new IoTDeviceSimulator(broker.transportFactory());
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'id': '{id}', 'running': true}");
+
+        deviceSimulator.start();
+        testedApplication.publish("tc/heater/set", "{\"id\": 7}".getBytes(StandardCharsets.UTF_8));
+        String response = responses.poll(1, TimeUnit.SECONDS);
+        deviceSimulator.stop();
+
+        JSONAssert.assertEquals("{'id': 7, 'running': true}", response, true);
+    }
+
+    @Test
+    public void simulatorShouldRespondToMessageOnWildcardTopic() throws InterruptedException, JSONException {
+        BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        testedApplication.subscribe("tc/heater/report",
+                (topic, payload) -> responses.add(new String(payload, StandardCharsets.UTF_8)));
+        IoTDeviceSimulator deviceSimulator = new IoTDeviceSimulator(broker.transportFactory());
+        deviceSimulator
+                .when()
+                .messageTopic("tc/+/set")
+                .subscribeMessageBody("{'power': '{power}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': '{power}'}");
+
+        deviceSimulator.start();
+        testedApplication.publish("tc/flat1/set", "{\"power\": 2}".getBytes(StandardCharsets.UTF_8));
+        String response = responses.poll(1, TimeUnit.SECONDS);
+        deviceSimulator.stop();
+
+        JSONAssert.assertEquals("{'power': 2}", response, true);
+    }
+}
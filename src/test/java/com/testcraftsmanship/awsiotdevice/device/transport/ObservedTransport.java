@@ -0,0 +1,137 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport which counts the messages published through it, so tests can tell which connection published them. It can
+ * also hold acknowledgements of the asynchronous publications to simulate slow broker.
+ */
+public class ObservedTransport implements MqttTransport {
+    private final MqttTransport delegate;
+    private final AtomicInteger publications = new AtomicInteger();
+    private final Map<String, MqttQos> publicationQos = new ConcurrentHashMap<>();
+    private final Queue<CompletableFuture<Void>> heldAcknowledgements = new ConcurrentLinkedQueue<>();
+    private volatile boolean holdingAcknowledgements;
+
+    public ObservedTransport(MqttTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param transportFactory factory of the observed transports
+     * @param created          list the created transports are added to
+     * @return factory of the observed transports
+     */
+    public static MqttTransportFactory factory(MqttTransportFactory transportFactory, List<ObservedTransport> created) {
+        return () -> {
+            ObservedTransport transport = new ObservedTransport(transportFactory.create());
+            created.add(transport);
+            return transport;
+        };
+    }
+
+    /**
+     * @return new list for the transports created by {@link #factory(MqttTransportFactory, List)}
+     */
+    public static List<ObservedTransport> createdTransports() {
+        return new CopyOnWriteArrayList<>();
+    }
+
+    public int getPublicationsCount() {
+        return publications.get();
+    }
+
+    /**
+     * @param topic topic of the publications
+     * @return QoS of the last message published to the topic
+     */
+    public MqttQos getPublicationQos(String topic) {
+        return publicationQos.get(topic);
+    }
+
+    /**
+     * Asynchronous publications are delivered right away, but their futures are completed only when the
+     * acknowledgements are released.
+     */
+    public void holdAcknowledgements() {
+        holdingAcknowledgements = true;
+    }
+
+    /**
+     * Completes futures of the held publications and stops holding the next ones.
+     */
+    public void releaseAcknowledgements() {
+        holdingAcknowledgements = false;
+        CompletableFuture<Void> acknowledgement = heldAcknowledgements.poll();
+        while (acknowledgement != null) {
+            acknowledgement.complete(null);
+            acknowledgement = heldAcknowledgements.poll();
+        }
+    }
+
+    @Override
+    public String getClientId() {
+        return delegate.getClientId();
+    }
+
+    @Override
+    public void connect() {
+        delegate.connect();
+    }
+
+    @Override
+    public void disconnect() {
+        delegate.disconnect();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return delegate.isConnected();
+    }
+
+    @Override
+    public void subscribe(String topicFilter, MqttMessageHandler handler) {
+        delegate.subscribe(topicFilter, handler);
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+        delegate.unsubscribe(topicFilter);
+    }
+
+    @Override
+    public Set<String> getSubscribedTopics() {
+        return delegate.getSubscribedTopics();
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, MqttQos qos) {
+        publications.incrementAndGet();
+        publicationQos.put(topic, qos);
+        delegate.publish(topic, payload, qos);
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return delegate.getMaxInFlight();
+    }
+
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, byte[] payload, MqttQos qos) {
+        CompletableFuture<Void> publication = MqttTransport.super.publishAsync(topic, payload, qos);
+        if (!holdingAcknowledgements) {
+            return publication;
+        }
+        CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+        heldAcknowledgements.add(acknowledgement);
+        return acknowledgement;
+    }
+}
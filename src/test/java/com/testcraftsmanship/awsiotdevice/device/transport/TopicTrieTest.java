@@ -0,0 +1,56 @@
+package com.testcraftsmanship.awsiotdevice.device.transport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopicTrieTest {
+    @Test
+    public void topicFilterShouldSupportWildcards() {
+        assertThat(TopicTrie.matches("things/+/cmd", "things/flat1/cmd")).isTrue();
+        assertThat(TopicTrie.matches("things/+/cmd", "things/flat1/report")).isFalse();
+        assertThat(TopicTrie.matches("things/#", "things/flat1/cmd")).isTrue();
+        assertThat(TopicTrie.matches("things/#", "things")).isTrue();
+        assertThat(TopicTrie.matches("things/+", "things/flat1/cmd")).isFalse();
+        assertThat(TopicTrie.matches("things/flat", "things/flat1")).isFalse();
+        assertThat(TopicTrie.matches("#", "$aws/things/flat1/shadow/update")).isFalse();
+    }
+
+    @Test
+    public void trieShouldFindValuesOfAllMatchingFilters() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("things/flat1/cmd", "exact");
+        trie.add("things/+/cmd", "single");
+        trie.add("things/#", "multi");
+        trie.add("things/+", "other");
+        trie.add("#", "any");
+        trie.add("$aws/things/+/shadow/update", "shadow");
+
+        assertThat(matchesOf(trie, "things/flat1/cmd")).containsExactlyInAnyOrder("exact", "single", "multi", "any");
+        assertThat(matchesOf(trie, "things")).containsExactlyInAnyOrder("multi", "any");
+        assertThat(matchesOf(trie, "$aws/things/flat1/shadow/update")).containsExactly("shadow");
+    }
+
+    @Test
+    public void removedValueShouldNotBeFound() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("things/+/cmd", "first");
+        trie.add("things/+/cmd", "second");
+
+        assertThat(trie.remove("things/+/cmd", "first")).isTrue();
+        assertThat(trie.remove("things/+/report", "first")).isFalse();
+        assertThat(matchesOf(trie, "things/flat1/cmd")).containsExactly("second");
+
+        trie.remove("things/+/cmd", "second");
+        assertThat(trie.isEmpty()).isTrue();
+    }
+
+    private static List<String> matchesOf(TopicTrie<String> trie, String topic) {
+        List<String> matches = new ArrayList<>();
+        trie.forEachMatch(topic, matches::add);
+        return matches;
+    }
+}
@@ -0,0 +1,17 @@
+package com.testcraftsmanship.awsiotdevice.iotsettings;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DeviceIdRangeTest {
+    @Test
+    public void rangeShouldContainConsecutiveIdsWithBothEnds() {
+        DeviceIdRange range = DeviceIdRange.of("flat", 9, 11);
+
+        assertThat(range.size()).isEqualTo(3);
+        assertThat(range.getDeviceIds()).containsExactly("flat9", "flat10", "flat11");
+        assertThatThrownBy(() -> DeviceIdRange.of("flat", 2, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.testcraftsmanship.awsiotdevice.iotsettings;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.ObservedTransport;
+import org.json.JSONException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IoTDeviceBehaviorTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void responsesShouldBePublishedThroughSubscribingConnectionByDefault() throws InterruptedException {
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = heaterSimulator(connections);
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/set", "{\"id\": 1}");
+        assertThat(responses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        deviceSimulator.stop();
+
+        assertThat(connections).hasSize(1);
+        assertThat(connections.get(0).getPublicationsCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void responsesShouldBePublishedThroughSeparateConnectionWhenItIsRequested() throws InterruptedException {
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = heaterSimulator(connections);
+        deviceSimulator.given().withSeparatePublisherConnection();
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/set", "{\"id\": 1}");
+        assertThat(responses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        deviceSimulator.stop();
+
+        assertThat(connections).hasSize(2);
+        assertThat(connections.get(0).getPublicationsCount()).isZero();
+        assertThat(connections.get(1).getPublicationsCount()).isEqualTo(1);
+        assertThat(connections).noneMatch(ObservedTransport::isConnected);
+    }
+
+    @Test
+    public void simulatorShouldRespondWithRuleOfCommandTopic() throws InterruptedException, JSONException {
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'power': '{power}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': '{power}'}")
+                .when()
+                .messageTopic("tc/heater/reboot")
+                .subscribeMessageBody("{'delay': '{delay}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'rebooted': true}")
+                .respondAfter(Duration.ofMillis(10));
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/reboot", "{\"delay\": 0}");
+        String rebootResponse = responses.poll(1, TimeUnit.SECONDS);
+        loopback.publish("tc/heater/set", "{\"power\": 3}");
+        String powerResponse = responses.poll(1, TimeUnit.SECONDS);
+        deviceSimulator.stop();
+
+        assertThat(deviceSimulator.getDeviceSubscriptionTopics()).containsExactly("tc/heater/set", "tc/heater/reboot");
+        JSONAssert.assertEquals("{'rebooted': true}", rebootResponse, true);
+        JSONAssert.assertEquals("{'power': 3}", powerResponse, true);
+    }
+
+    @Test
+    public void responsesShouldBePublishedWithQosOfTheirRule() throws InterruptedException {
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        BlockingQueue<String> reports = loopback.subscribe("tc/heater/report");
+        BlockingQueue<String> alarms = loopback.subscribe("tc/heater/alarm");
+        IoTDeviceSimulator deviceSimulator = heaterSimulator(connections);
+        deviceSimulator
+                .given()
+                .withPublicationQos(MqttQos.AT_LEAST_ONCE)
+                .when()
+                .messageTopic("tc/heater/overheat")
+                .then()
+                .publishTo("tc/heater/alarm")
+                .publishMessageBody("{'alarm': 'overheat'}")
+                .publishWithQos(MqttQos.AT_MOST_ONCE);
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/set", "{\"id\": 1}");
+        loopback.publish("tc/heater/overheat", "{}");
+        assertThat(reports.poll(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(alarms.poll(1, TimeUnit.SECONDS)).isNotNull();
+        deviceSimulator.stop();
+
+        assertThat(connections.get(0).getPublicationQos("tc/heater/report")).isEqualTo(MqttQos.AT_LEAST_ONCE);
+        assertThat(connections.get(0).getPublicationQos("tc/heater/alarm")).isEqualTo(MqttQos.AT_MOST_ONCE);
+    }
+
+    private IoTDeviceSimulator heaterSimulator(List<ObservedTransport> connections) {
+        IoTDeviceSimulator deviceSimulator = new IoTDeviceSimulator(
+                ObservedTransport.factory(loopback.transportFactory(), connections));
+        loopback.afterTest(deviceSimulator::stop);
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'id': '{id}'}");
+        return deviceSimulator;
+    }
+}
@@ -0,0 +1,101 @@
+package com.testcraftsmanship.awsiotdevice.load;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LoadGeneratorTest {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    @Test
+    public void profileShouldPlanConstantRateAfterRampUp() {
+        LoadProfile profile = new LoadProfile(100, Duration.ofSeconds(2), Duration.ofSeconds(10), 1);
+
+        assertThat(profile.getMessagesCount()).isEqualTo(900);
+        assertThat(profile.sendOffsetNanos(0)).isZero();
+        assertThat(profile.sendOffsetNanos(25)).isEqualTo(NANOS_PER_SECOND);
+        assertThat(profile.sendOffsetNanos(100)).isEqualTo(2 * NANOS_PER_SECOND);
+        assertThat(profile.sendOffsetNanos(200)).isEqualTo(3 * NANOS_PER_SECOND);
+        assertThat(profile.getRequestedRate()).isCloseTo(90, within(0.001));
+    }
+
+    @Test
+    public void generatorShouldSendAllPlannedMessages() {
+        LoadProfile profile = new LoadProfile(500, Duration.ZERO, Duration.ofMillis(200), 2);
+        AtomicLong sent = new AtomicLong();
+
+        LoadReport report = new LoadGenerator(profile).run(sequence -> {
+            sent.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(sent.get()).isEqualTo(100);
+        assertThat(report.getSentMessages()).isEqualTo(100);
+        assertThat(report.getFailedMessages()).isZero();
+        assertThat(report.getElapsed()).isGreaterThanOrEqualTo(Duration.ofNanos(profile.sendOffsetNanos(99)));
+    }
+
+    @Test
+    public void slowPublicationShouldNotDelayNextOnes() {
+        LoadProfile profile = new LoadProfile(200, Duration.ZERO, Duration.ofMillis(100), 1);
+        CompletableFuture<Void> slowPublication = new CompletableFuture<>();
+        Executor acknowledgement = CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS);
+        acknowledgement.execute(() -> slowPublication.complete(null));
+        List<Long> startOffsetsNanos = new CopyOnWriteArrayList<>();
+
+        long startNanos = System.nanoTime();
+        LoadReport report = new LoadGenerator(profile).run(sequence -> {
+            startOffsetsNanos.add(System.nanoTime() - startNanos);
+            return sequence == 0 ? slowPublication : CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(report.getSentMessages()).isEqualTo(20);
+        assertThat(report.getElapsed()).isGreaterThanOrEqualTo(Duration.ofMillis(150));
+        assertThat(startOffsetsNanos.get(19)).isLessThan(TimeUnit.MILLISECONDS.toNanos(150));
+        assertThat(report.getMaxScheduleLag()).isLessThan(Duration.ofMillis(40));
+    }
+
+    @Test
+    public void blockingSenderShouldBeReportedAsScheduleLag() {
+        LoadProfile profile = new LoadProfile(200, Duration.ZERO, Duration.ofMillis(100), 1);
+
+        LoadReport report = new LoadGenerator(profile).run(sequence -> {
+            if (sequence == 0) {
+                sleep(50);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(report.getSentMessages()).isEqualTo(20);
+        assertThat(report.getMaxScheduleLag()).isGreaterThanOrEqualTo(Duration.ofMillis(40));
+    }
+
+    @Test
+    public void failedPublicationsShouldBeCounted() {
+        LoadProfile profile = new LoadProfile(500, Duration.ZERO, Duration.ofMillis(20), 1);
+
+        LoadReport report = new LoadGenerator(profile).run(sequence -> sequence % 2 == 0
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.failedFuture(new IllegalStateException("Publication window is full")));
+
+        assertThat(report.getSentMessages()).isEqualTo(5);
+        assertThat(report.getFailedMessages()).isEqualTo(5);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.testcraftsmanship.awsiotdevice.metrics;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryMetricsRegistryTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void countersShouldBeIdentifiedByNameAndTags() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+
+        registry.counter("messages", "topic", "a").increment();
+        registry.counter("messages", "topic", "a").increment();
+        registry.counter("messages", "topic", "b").increment();
+        Gauge gauge = registry.gauge("in.flight");
+        gauge.increment();
+        gauge.increment();
+        gauge.decrement();
+
+        assertThat(registry.getCount("messages", "topic", "a")).isEqualTo(2);
+        assertThat(registry.getCount("messages", "topic", "c")).isZero();
+        assertThat(registry.getValue("in.flight")).isEqualTo(1);
+        assertThat(registry.snapshot()).containsKeys("messages{topic=a}", "messages{topic=b}", "in.flight");
+    }
+
+    @Test
+    public void simulatorShouldCountHandledAndNotHandledMessages() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator.setMetricsRegistry(registry);
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}'}");
+        deviceSimulator.start();
+
+        loopback.publish("tc/heater/set", "{\"id\": 7}");
+        loopback.publish("tc/heater/set", "{\"uuid\": 7}");
+        loopback.publish("tc/heater/set", "on");
+        deviceSimulator.stop();
+
+        assertThat(registry.getCount("iot.device.messages.received", "topic", "tc/heater/set")).isEqualTo(3);
+        assertThat(registry.getCount("iot.device.messages.matched")).isEqualTo(1);
+        assertThat(registry.getCount("iot.device.messages.not.handled")).isEqualTo(2);
+        assertThat(registry.getCount("iot.device.payload.mapping.failures")).isEqualTo(1);
+        assertThat(registry.getCount("iot.device.connection.transitions", "state", "disconnected")).isEqualTo(1);
+        assertThat(registry.getValue("iot.device.connections")).isZero();
+    }
+}
@@ -0,0 +1,109 @@
+package com.testcraftsmanship.awsiotdevice.parser;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageMatcherTest {
+    @Test
+    public void matcherShouldExtractParamsFromNestedMessage() {
+        final String mask = "{'uuid':'{uuid}', 'data':{'id': '{id}', 'state': '{running}'}}";
+        final String message = "{'uuid':'e788e700', 'data': {'id': 22, 'state': true}}";
+
+        Optional<Map<String, JsonValue>> params = MessageMatcher.compile(mask, true).match(message);
+
+        assertThat(params).isPresent();
+        assertThat(params.get()).containsOnlyKeys("uuid", "id", "running");
+        assertThat(params.get().get("uuid").getType()).isEqualTo(JsonValueType.STRING);
+        assertThat(params.get().get("id").getValue()).isEqualTo("22");
+        assertThat(params.get().get("running").getType()).isEqualTo(JsonValueType.BOOLEAN);
+    }
+
+    @Test
+    public void matcherShouldMatchMessageWithoutParams() {
+        final String mask = "{'id': 2, 'fan': 1}";
+
+        MessageMatcher matcher = MessageMatcher.compile(mask, true);
+
+        assertThat(matcher.containsMaskParams()).isFalse();
+        assertThat(matcher.match("{\"fan\": 1, \"id\": 2}")).hasValueSatisfying(params -> assertThat(params).isEmpty());
+    }
+
+    @Test
+    public void matcherShouldNotMatchWhenLiteralDiffers() {
+        final String mask = "{'id': 2, 'state': '{fan_state}'}";
+
+        assertThat(MessageMatcher.compile(mask, true).match("{'id': 1, 'state': 1}")).isEmpty();
+    }
+
+    @Test
+    public void matcherShouldNotMatchWhenKeySetsDifferInStrictMode() {
+        final String mask = "{'uuid':'{id}'}";
+        final String message = "{'uuid':'e788e700', 'data': {'id': 10}}";
+
+        assertThat(MessageMatcher.compile(mask, true).match(message)).isEmpty();
+        assertThat(MessageMatcher.compile(mask, false).match(message)).isPresent();
+    }
+
+    @Test
+    public void matcherShouldCompareArraysElementByElement() {
+        final String mask = "{'heater':[{'uuid':'{id}'}, 5]}";
+
+        MessageMatcher matcher = MessageMatcher.compile(mask, true);
+
+        assertThat(matcher.match("{'heater':[{'uuid':'abc'}, 5]}")).isPresent();
+        assertThat(matcher.match("{'heater':[{'uuid':'abc'}, 6]}")).isEmpty();
+        assertThat(matcher.match("{'heater':[{'uuid':'abc'}]}")).isEmpty();
+    }
+
+    @Test
+    public void matcherShouldNotMatchInvalidJson() {
+        assertThat(MessageMatcher.compile("{'id': 2}", true).match("not a json")).isEmpty();
+    }
+
+    @Test
+    public void matcherShouldExtractStructuredParamsAsJson() {
+        final String mask = "{'id': '{id}', 'diagnostics': '{diagnostics}'}";
+        final byte[] message = "{'id': 7, 'diagnostics': {'errors': [1, 2], 'uptime': 3600}}".getBytes(StandardCharsets.UTF_8);
+
+        Optional<Map<String, JsonValue>> params = MessageMatcher.compile(mask, true).match(message);
+
+        assertThat(params).isPresent();
+        assertThat(params.get().get("diagnostics").getType()).isEqualTo(JsonValueType.OBJECT);
+        assertThat(params.get().get("diagnostics").getValue()).isEqualTo("{\"errors\":[1,2],\"uptime\":3600}");
+    }
+
+    @Test
+    public void matcherShouldStopReadingMessageAtFirstMismatch() throws PayloadMappingException {
+        final byte[] truncatedMessage = "{'id': 1, 'blob': [1, 2, 3".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(MessageMatcher.compile("{'id': 2}", false).matchPayload(truncatedMessage)).isEmpty();
+    }
+
+    @Test
+    public void matcherWithoutParamsShouldIgnoreKeyOrderAndNumberNotation() {
+        MessageMatcher matcher = MessageMatcher.compile("{'id': 2, 'data': {'fan': 1, 'modes': ['eco', 'night']}}", true);
+
+        assertThat(matcher.match("{\"data\": {\"modes\": [\"eco\", \"night\"], \"fan\": 1.0}, \"id\": 2}")).isPresent();
+        assertThat(matcher.match("{'data': {'modes': ['night', 'eco'], 'fan': 1}, 'id': 2}")).isEmpty();
+        assertThat(matcher.match("{'id': 2, 'data': {'fan': 1, 'modes': ['eco', 'night'], 'blob': [1, 2, 3")).isEmpty();
+    }
+
+    @Test
+    public void matcherWithoutParamsShouldMatchEveryNotationOfLargeNumbers() {
+        MessageMatcher exponent = MessageMatcher.compile("{'limit': 1e18}", true);
+        MessageMatcher integer = MessageMatcher.compile("{'serial': 1234567890123456789}", true);
+
+        assertThat(exponent.match("{\"limit\": 1000000000000000000}")).isPresent();
+        assertThat(exponent.match("{\"limit\": 1000000000000000000.00}")).isPresent();
+        assertThat(exponent.match("{\"limit\": 10e17}")).isPresent();
+        assertThat(exponent.match("{\"limit\": 1000000000000000001}")).isEmpty();
+        assertThat(integer.match("{\"serial\": 1234567890123456789.0}")).isPresent();
+        assertThat(integer.match("{\"serial\": 12345678901234567890e-1}")).isPresent();
+        assertThat(integer.match("{\"serial\": 1234567890123456788}")).isEmpty();
+    }
+}
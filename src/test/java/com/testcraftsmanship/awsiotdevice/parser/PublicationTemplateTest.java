@@ -0,0 +1,51 @@
+package com.testcraftsmanship.awsiotdevice.parser;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PublicationTemplateTest {
+    @Test
+    public void templateShouldRenderTypedValues() throws JSONException {
+        final String publishMessage = "{'uuid': '{uuid}', 'data': {'running': '{state}', 'id': '{id}'}, 'list': ['{id}']}";
+        Map<String, JsonValue> params = new HashMap<>();
+        params.put("uuid", new JsonValue(JsonValueType.STRING, "e788e700"));
+        params.put("state", new JsonValue(JsonValueType.BOOLEAN, "true"));
+        params.put("id", new JsonValue(JsonValueType.NUMBER, "17"));
+
+        String rendered = PublicationTemplate.compile(publishMessage).render(params);
+
+        JSONAssert.assertEquals("{'uuid': 'e788e700', 'data': {'running': true, 'id': 17}, 'list': [17]}", rendered, true);
+    }
+
+    @Test
+    public void templateShouldLeaveUnknownPlaceholdersUntouched() throws JSONException {
+        final String publishMessage = "{'device_state': '{state}', 'response': 'ok'}";
+
+        String rendered = PublicationTemplate.compile(publishMessage).render(Collections.emptyMap());
+
+        JSONAssert.assertEquals("{'device_state': '{state}', 'response': 'ok'}", rendered, true);
+    }
+
+    @Test
+    public void templateShouldEscapeStringValues() throws JSONException {
+        final String publishMessage = "{'name': '{name}'}";
+        Map<String, JsonValue> params = Collections.singletonMap("name", new JsonValue(JsonValueType.STRING, "a\"b"));
+
+        String rendered = PublicationTemplate.compile(publishMessage).render(params);
+
+        JSONAssert.assertEquals("{'name': 'a\\\"b'}", rendered, true);
+    }
+
+    @Test
+    public void templateShouldRecognisePlaceholders() {
+        assertThat(PublicationTemplate.compile("{'id': 2, 'fan': '{fan}'}").containsPlaceholders()).isTrue();
+        assertThat(PublicationTemplate.compile("{'id': 2, 'fan': 1}").containsPlaceholders()).isFalse();
+    }
+}
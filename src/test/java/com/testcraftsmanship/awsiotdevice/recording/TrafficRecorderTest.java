@@ -0,0 +1,122 @@
+package com.testcraftsmanship.awsiotdevice.recording;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrafficRecorderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void recordedMessagesShouldBeReadAcrossSegments() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("traffic.log");
+        try (TrafficRecorder recorder = TrafficRecorder.create(log, 128)) {
+            for (int i = 0; i < 100; i++) {
+                recorder.record(TrafficDirection.PUBLISHED, "tc/heater/report",
+                        ("{\"id\": " + i + "}").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Files.delete(log.resolveSibling("traffic.log.idx"));
+
+        List<String> payloads = new ArrayList<>();
+        try (TrafficReplay replay = TrafficReplay.open(log)) {
+            replay.forEach(Duration.ZERO, message -> payloads.add(message.getPayload()));
+        }
+
+        assertThat(payloads).hasSize(100).startsWith("{\"id\": 0}").endsWith("{\"id\": 99}");
+    }
+
+    @Test
+    public void messageWithTooLongTopicShouldBeSkipped() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("traffic.log");
+        String tooLongTopic = "tc/" + "a".repeat(0xFFFF);
+        try (TrafficRecorder recorder = TrafficRecorder.create(log, 128)) {
+            recorder.record(TrafficDirection.RECEIVED, tooLongTopic, new byte[1]);
+            recorder.record(TrafficDirection.RECEIVED, "tc/heater/set", "{}".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(recorder.getMessagesCount()).isEqualTo(1);
+        }
+
+        List<String> topics = new ArrayList<>();
+        try (TrafficReplay replay = TrafficReplay.open(log)) {
+            replay.forEach(Duration.ZERO, message -> topics.add(message.getTopic()));
+        }
+        assertThat(topics).containsExactly("tc/heater/set");
+    }
+
+    @Test
+    public void restartedSimulatorShouldKeepLogOfPreviousStart() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("traffic.log");
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}'}");
+        deviceSimulator.recordTrafficTo(log);
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/set", "{\"id\": 1}");
+        deviceSimulator.stop();
+        deviceSimulator.start();
+        loopback.publish("tc/heater/set", "{\"id\": 2}");
+        deviceSimulator.stop();
+
+        assertThat(receivedPayloads(log.resolveSibling("traffic.log.1"))).containsExactly("{\"id\": 1}");
+        assertThat(log.resolveSibling("traffic.log.1.idx")).exists();
+        assertThat(receivedPayloads(log)).containsExactly("{\"id\": 2}");
+    }
+
+    @Test
+    public void recordedCommandsShouldBeReplayedToSimulator() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("traffic.log");
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator
+                .when()
+                .messageTopic("tc/heater/set")
+                .subscribeMessageBody("{'id': '{id}'}")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'id': '{id}'}");
+        deviceSimulator.recordTrafficTo(log);
+
+        deviceSimulator.start();
+        loopback.publish("tc/heater/set", "{\"id\": 7}");
+        assertThat(responses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        deviceSimulator.stop();
+
+        deviceSimulator.recordTrafficTo(null);
+        deviceSimulator.start();
+        try (TrafficReplay replay = TrafficReplay.open(log)) {
+            assertThat(replay.replay(loopback.getTestedApplication(), TrafficDirection.RECEIVED, TrafficReplay.MAX_SPEED)).isEqualTo(1);
+        }
+        String response = responses.poll(1, TimeUnit.SECONDS);
+        deviceSimulator.stop();
+
+        assertThat(response).contains("7");
+    }
+
+    private static List<String> receivedPayloads(Path log) {
+        List<String> payloads = new ArrayList<>();
+        try (TrafficReplay replay = TrafficReplay.open(log)) {
+            replay.forEach(Duration.ZERO, message -> payloads.add(message.getPayload()));
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,165 @@
+package com.testcraftsmanship.awsiotdevice.script;
+
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttMessageHandler;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttQos;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import com.testcraftsmanship.awsiotdevice.device.transport.ObservedTransport;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceIdRange;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ScriptedDeviceFleetTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void everyDeviceShouldRespondFromItsScript() throws InterruptedException {
+        Set<String> reports = ConcurrentHashMap.newKeySet();
+        loopback.getTestedApplication().subscribe("things/+/report",
+                (topic, payload) -> reports.add(new String(payload, StandardCharsets.UTF_8)));
+        ScriptedDeviceFleet fleet = new ScriptedDeviceFleet(loopback.transportFactory(), DeviceIdRange.of("flat", 1, 200), 4,
+                device -> {
+                    while (device.isRunning()) {
+                        DeviceMessage command = device.receive();
+                        device.sleep(Duration.ofMillis(10));
+                        device.publish("things/" + device.getDeviceId() + "/report", device.getDeviceId() + ":"
+                                + command.getPayload());
+                    }
+                })
+                .subscribeTo("things/{deviceId}/cmd");
+
+        fleet.start();
+        loopback.afterTest(fleet::stop);
+        for (int i = 1; i <= 200; i++) {
+            loopback.publish("things/flat" + i + "/cmd", "on");
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (reports.size() < 200 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        fleet.stop();
+
+        assertThat(reports).hasSize(200).contains("flat1:on", "flat200:on");
+        assertThat(fleet.getRunningScriptsCount()).isZero();
+        assertThat(fleet.getFailedScriptsCount()).isZero();
+    }
+
+    @Test
+    public void scriptWaitingForAcknowledgementShouldBeInterruptedWhenFleetStops() throws InterruptedException {
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        CountDownLatch publishing = new CountDownLatch(1);
+        ScriptedDeviceFleet fleet = new ScriptedDeviceFleet(ObservedTransport.factory(loopback.transportFactory(), connections),
+                DeviceIdRange.of("flat", 1, 1), 1,
+                device -> {
+                    device.receive();
+                    publishing.countDown();
+                    device.publish("things/flat1/report", new byte[0], MqttQos.AT_LEAST_ONCE);
+                })
+                .subscribeTo("things/{deviceId}/cmd");
+
+        fleet.start();
+        loopback.afterTest(fleet::stop);
+        connections.get(0).holdAcknowledgements();
+        loopback.publish("things/flat1/cmd", "report");
+        assertThat(publishing.await(1, TimeUnit.SECONDS)).isTrue();
+        long stopNanos = System.nanoTime();
+        fleet.stop();
+        long stopMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopNanos);
+        connections.get(0).releaseAcknowledgements();
+
+        assertThat(stopMillis).isLessThan(1000);
+        assertThat(fleet.getRunningScriptsCount()).isZero();
+        assertThat(fleet.getFailedScriptsCount()).isZero();
+    }
+
+    @Test
+    public void messagesOverflowingMailboxShouldBeDropped() throws InterruptedException {
+        CountDownLatch mailboxFilled = new CountDownLatch(1);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        ScriptedDeviceFleet fleet = new ScriptedDeviceFleet(loopback.transportFactory(), DeviceIdRange.of("flat", 1, 1), 1,
+                device -> {
+                    mailboxFilled.await();
+                    Optional<DeviceMessage> message = device.receive(Duration.ofMillis(100));
+                    while (message.isPresent()) {
+                        received.add(message.get().getPayload());
+                        message = device.receive(Duration.ofMillis(100));
+                    }
+                })
+                .subscribeTo("things/{deviceId}/cmd");
+        fleet.setMailboxSize(2);
+
+        fleet.start();
+        loopback.afterTest(fleet::stop);
+        for (int i = 1; i <= 5; i++) {
+            loopback.publish("things/flat1/cmd", "cmd" + i);
+        }
+        mailboxFilled.countDown();
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (fleet.getRunningScriptsCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(received).containsExactly("cmd1", "cmd2");
+    }
+
+    @Test
+    public void devicesSharingConnectionsShouldSubscribeTopicsWithDeviceId() {
+        DeviceScript idle = device -> device.receive();
+        ScriptedDeviceFleet sharingFleet = new ScriptedDeviceFleet(loopback.transportFactory(), DeviceIdRange.of("flat", 1, 4), 2,
+                idle)
+                .subscribeTo("things/cmd");
+        ScriptedDeviceFleet fleetOfOwnConnections = new ScriptedDeviceFleet(loopback.transportFactory(),
+                DeviceIdRange.of("flat", 1, 2), 2, idle)
+                .subscribeTo("things/cmd");
+
+        assertThatThrownBy(sharingFleet::start)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("{deviceId}");
+        fleetOfOwnConnections.start();
+        loopback.afterTest(fleetOfOwnConnections::stop);
+        assertThat(fleetOfOwnConnections.getRunningScriptsCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void connectionsShouldBeReleasedWhenDeviceCannotSubscribe() {
+        List<MqttTransport> connections = new CopyOnWriteArrayList<>();
+        MqttTransportFactory failingFactory = () -> {
+            MqttTransport connection = new ObservedTransport(loopback.transportFactory().create()) {
+                @Override
+                public void subscribe(String topicFilter, MqttMessageHandler handler) {
+                    if (topicFilter.contains("flat3")) {
+                        throw new IllegalStateException("Subscription of " + topicFilter + " refused.");
+                    }
+                    super.subscribe(topicFilter, handler);
+                }
+            };
+            connections.add(connection);
+            return connection;
+        };
+        ScriptedDeviceFleet fleet = new ScriptedDeviceFleet(failingFactory, DeviceIdRange.of("flat", 1, 4), 2,
+                device -> device.receive())
+                .subscribeTo("things/{deviceId}/cmd");
+
+        assertThatThrownBy(fleet::start).hasMessageContaining("flat3");
+
+        assertThat(connections).hasSize(2).noneMatch(MqttTransport::isConnected);
+        assertThat(fleet.getRunningScriptsCount()).isZero();
+    }
+}
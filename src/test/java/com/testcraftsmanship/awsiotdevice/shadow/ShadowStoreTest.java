@@ -0,0 +1,128 @@
+package com.testcraftsmanship.awsiotdevice.shadow;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.IoTDevice;
+import com.testcraftsmanship.awsiotdevice.device.transport.AwsIotMqttTransport;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.parser.JsonValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShadowStoreTest {
+    private static final String UPDATE_TOPIC = "$aws/things/heater/shadow/update";
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void deltaShouldContainOnlyChangedDesiredStateDifferentFromReported() throws Exception {
+        ShadowStore store = new ShadowStore();
+
+        Map<String, String> responses = update(store, "{'state': {'reported': {'power': 'off', 'mode': {'fan': 2}}}}");
+        assertThat(responses).containsOnlyKeys(UPDATE_TOPIC + "/accepted");
+
+        responses = update(store, "{'state': {'desired': {'power': 'on', 'mode': {'fan': 2.0, 'heat': 21}}}}");
+        JSONAssert.assertEquals("{'state': {'power': 'on', 'mode': {'heat': 21}}, 'version': 2}",
+                responses.get(UPDATE_TOPIC + "/delta"), false);
+
+        responses = update(store, "{'state': {'reported': {'power': 'on'}}}");
+        assertThat(responses).containsOnlyKeys(UPDATE_TOPIC + "/accepted");
+        JSONAssert.assertEquals("{'state': {'delta': {'mode': {'heat': 21}}}, 'version': 3}",
+                store.getShadowDocument("heater").orElse(null), false);
+
+        responses = update(store, "{'state': {'reported': {'mode': {'heat': 21}}}, 'version': 1}");
+        JSONAssert.assertEquals("{'code': 409}", responses.get(UPDATE_TOPIC + "/rejected"), false);
+        assertThat(store.getShadowDocument("heater").orElse("")).contains("delta");
+    }
+
+    @Test
+    public void simulatorShouldAnswerShadowRequests() throws Exception {
+        BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        loopback.getTestedApplication().subscribe("$aws/things/heater/shadow/name/+/get/+",
+                (topic, payload) -> responses.add(topic + " " + new String(payload, StandardCharsets.UTF_8)));
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator.given().withShadow("heater");
+
+        deviceSimulator.start();
+        loopback.publish("$aws/things/heater/shadow/name/config/get", "");
+        String missing = responses.poll(1, TimeUnit.SECONDS);
+        loopback.publish("$aws/things/heater/shadow/name/config/update", "{\"state\": {\"desired\": {\"target\": 21}}}");
+        loopback.publish("$aws/things/heater/shadow/name/config/get", "");
+        String accepted = responses.poll(1, TimeUnit.SECONDS);
+        deviceSimulator.stop();
+
+        assertThat(missing).startsWith("$aws/things/heater/shadow/name/config/get/rejected").contains("404");
+        assertThat(accepted).startsWith("$aws/things/heater/shadow/name/config/get/accepted").contains("\"target\":21");
+    }
+
+    @Test
+    public void reportedShadowShouldTakeOverDesiredStateFromShadowService() throws Exception {
+        IoTDeviceSimulator shadowService = loopback.newSimulator();
+        shadowService.given().withShadow("heater");
+        IoTDeviceSimulator heater = loopback.newSimulator();
+        heater.given().withReportedShadow("heater");
+
+        shadowService.start();
+        loopback.publish(UPDATE_TOPIC, "{\"state\": {\"desired\": {\"target\": 21, \"mode\": {\"fan\": 1}}}}");
+        heater.start();
+        awaitShadowInSync(shadowService.getShadowStore(), "\"fan\"");
+        loopback.publish(UPDATE_TOPIC, "{\"state\": {\"desired\": {\"mode\": {\"heat\": 2}}}}");
+        String document = awaitShadowInSync(shadowService.getShadowStore(), "\"heat\"");
+
+        JSONAssert.assertEquals("{'state': {'reported': {'target': 21, 'mode': {'fan': 1, 'heat': 2}}}}", document, false);
+        assertThat(heater.getDeviceState().get("target").map(JsonValue::getValue)).contains("21");
+        JSONAssert.assertEquals("{'fan': 1, 'heat': 2}", heater.getDeviceState().get("mode").get().getValue(), true);
+    }
+
+    @Test
+    public void closedSimulatorShouldForgetShadows() {
+        IoTDeviceSimulator deviceSimulator = loopback.newSimulator();
+        deviceSimulator.given().withShadow("heater");
+
+        deviceSimulator.start();
+        loopback.publish(UPDATE_TOPIC, "{\"state\": {\"reported\": {\"target\": 21}}}");
+        deviceSimulator.close();
+
+        assertThat(deviceSimulator.getShadowStore().getShadowDocument("heater")).isEmpty();
+    }
+
+    @Test
+    public void shadowServiceShouldNotBeSimulatedOnAwsIot() {
+        IoTDevice device = new IoTDevice(AwsIotMqttTransport.factory("example.iot.eu-west-1.amazonaws.com", "key", "secret"));
+
+        assertThatThrownBy(() -> device.simulateShadow("heater", new ShadowStore()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("reportShadow");
+    }
+
+    /**
+     * Shadow is in sync when the desired state has been reported, so it has no delta. Updates are handled by the
+     * simulated service asynchronously, so the document has to contain the updated value as well.
+     */
+    private static String awaitShadowInSync(ShadowStore store, String updatedValue) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        String document = store.getShadowDocument("heater").orElse("");
+        while ((!document.contains(updatedValue) || document.contains("delta")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            document = store.getShadowDocument("heater").orElse("");
+        }
+        return document;
+    }
+
+    private static Map<String, String> update(ShadowStore store, String request) {
+        Map<String, String> responses = new LinkedHashMap<>();
+        store.handle(UPDATE_TOPIC, request.getBytes(StandardCharsets.UTF_8),
+                (topic, payload) -> responses.put(topic, new String(payload, StandardCharsets.UTF_8)));
+        return responses;
+    }
+}
@@ -0,0 +1,125 @@
+package com.testcraftsmanship.awsiotdevice.startup;
+
+import com.testcraftsmanship.awsiotdevice.IoTDeviceSimulator;
+import com.testcraftsmanship.awsiotdevice.device.transport.LoopbackBrokerRule;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttMessageHandler;
+import com.testcraftsmanship.awsiotdevice.device.transport.MqttTransportFactory;
+import com.testcraftsmanship.awsiotdevice.device.transport.ObservedTransport;
+import com.testcraftsmanship.awsiotdevice.iotsettings.DeviceRunnable;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkStarterTest {
+    @Rule
+    public LoopbackBrokerRule loopback = new LoopbackBrokerRule();
+
+    @Test
+    public void devicesShouldBeStartedWithinBudgetAndRetried() {
+        List<Integer> devices = IntStream.range(0, 20).boxed().collect(Collectors.toList());
+        Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+        StartupPolicy policy = new StartupPolicy(200, 8, 3, Duration.ofMillis(1), Duration.ofMillis(5));
+
+        StartupReport report = new BulkStarter(policy).startAll(devices, device -> {
+            int attempt = attempts.merge(device, 1, Integer::sum);
+            if (device == 0 || device % 5 == 1 && attempt == 1) {
+                throw new IllegalStateException("Throttled");
+            }
+        });
+
+        assertThat(report.getCompleted()).isEqualTo(19);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getRetries()).isEqualTo(6);
+        assertThat(report.getStartupTimes().getCount()).isEqualTo(19);
+        assertThat(report.getElapsed()).isGreaterThanOrEqualTo(Duration.ofMillis(120));
+        assertThat(attempts.get(0)).isEqualTo(3);
+    }
+
+    @Test
+    public void devicesShouldBeStoppedWithoutConnectBudget() {
+        List<DeviceRunnable> devices = IntStream.range(0, 5).mapToObj(i -> new DeviceRunnable() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void publish() {
+            }
+        }).collect(Collectors.toList());
+
+        StartupReport report = new BulkStarter(new StartupPolicy(1, 2)).stop(devices);
+
+        assertThat(report.getCompleted()).isEqualTo(5);
+        assertThat(report.getStartupTimes().getCount()).isEqualTo(5);
+        assertThat(report.getElapsed()).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void simulatorShouldBeRolledBackWhenSubscriptionFailsAndStartIsRetried() throws InterruptedException {
+        List<ObservedTransport> connections = ObservedTransport.createdTransports();
+        AtomicInteger subscriptions = new AtomicInteger();
+        MqttTransportFactory loopbackFactory = loopback.transportFactory();
+        MqttTransportFactory throttledFactory = () -> {
+            ObservedTransport connection = new ObservedTransport(loopbackFactory.create()) {
+                @Override
+                public void subscribe(String topicFilter, MqttMessageHandler handler) {
+                    super.subscribe(topicFilter, handler);
+                    if (subscriptions.incrementAndGet() == 2) {
+                        throw new IllegalStateException("Subscription of " + topicFilter + " throttled.");
+                    }
+                }
+            };
+            connections.add(connection);
+            return connection;
+        };
+        BlockingQueue<String> responses = loopback.subscribe("tc/heater/report");
+        IoTDeviceSimulator heater = new IoTDeviceSimulator(throttledFactory);
+        loopback.afterTest(heater::stop);
+        heater.when()
+                .messageTopic("tc/heater/set")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': 'on'}")
+                .when()
+                .messageTopic("tc/heater/get")
+                .then()
+                .publishTo("tc/heater/report")
+                .publishMessageBody("{'power': 'on'}");
+
+        StartupReport report = new BulkStarter(new StartupPolicy(100, 1, 2, Duration.ofMillis(1), Duration.ofMillis(1)))
+                .start(Collections.singletonList(heater));
+        loopback.publish("tc/heater/set", "{}");
+
+        assertThat(report.getCompleted()).isEqualTo(1);
+        assertThat(report.getRetries()).isEqualTo(1);
+        assertThat(connections).hasSize(2);
+        assertThat(connections.get(0).isConnected()).isFalse();
+        assertThat(responses.poll(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(responses.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void backoffShouldBeDoubledUpToMaximum() {
+        StartupPolicy policy = new StartupPolicy(10, 1, 10, Duration.ofSeconds(1), Duration.ofSeconds(5));
+
+        assertThat(policy.backoffAfter(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(policy.backoffAfter(3)).isEqualTo(Duration.ofSeconds(4));
+        assertThat(policy.backoffAfter(9)).isEqualTo(Duration.ofSeconds(5));
+    }
+}